@@ -0,0 +1,296 @@
+package mindustry.benchmarks;
+
+import arc.math.*;
+import arc.struct.*;
+import arc.util.*;
+import arc.util.io.*;
+import mindustry.benchmarks.Scenarios.*;
+import mindustry.core.*;
+import mindustry.core.GameState.*;
+import mindustry.gen.*;
+import mindustry.logic.*;
+import mindustry.world.blocks.power.*;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Runs a scenario for a fixed amount of ticks and measures it.
+ * Every tick advances the game by exactly one frame, and the pathfinder runs on the same thread, so two runs with the same seed simulate the same game.
+ */
+public class Benchmark{
+    static final String[] subsystemNames = {"asyncBegin", "logic", "asyncEnd", "pathfinder", "scenario"};
+    /** Ticks between measured snapshots; same as the default snapshot rate of servers. */
+    static final int syncInterval = 12;
+    static final int topTypes = 15;
+
+    final Scenario scenario;
+    final BenchGraphics graphics;
+    final int warmup, ticks;
+    final long seed;
+
+    final long[] subsystems = new long[subsystemNames.length];
+    final ReusableByteOutStream syncStream = new ReusableByteOutStream();
+    final DataOutputStream dataStream = new DataOutputStream(syncStream);
+
+    public Benchmark(Scenario scenario, BenchGraphics graphics, int warmup, int ticks, long seed){
+        this.scenario = scenario;
+        this.graphics = graphics;
+        this.warmup = warmup;
+        this.ticks = ticks;
+        this.seed = seed;
+    }
+
+    /** Resets the game and loads the scenario. */
+    public void load(){
+        logic.reset();
+        Time.time = 0f;
+        Mathf.rand.setSeed(seed);
+        GlobalConstants.rand.setSeed(seed);
+
+        scenario.load.run();
+        state.set(State.playing);
+    }
+
+    public Report run(){
+        Report report = new Report();
+        report.name = scenario.name;
+        report.description = scenario.description;
+        report.ticks = ticks;
+
+        load();
+
+        for(int i = 0; i < warmup; i++){
+            tick();
+        }
+        Arrays.fill(subsystems, 0);
+
+        //throughput phase, without the overhead of profiling
+        long[] times = new long[ticks];
+        long syncBytes = 0;
+        int syncs = 0;
+        long gcCount = gcCount(), gcTime = gcTime(), allocated = allocated();
+        long start = Time.nanos();
+
+        for(int i = 0; i < ticks; i++){
+            long tickStart = Time.nanos();
+            tick();
+            times[i] = Time.timeSinceNanos(tickStart);
+
+            if(i % syncInterval == 0){
+                syncBytes += syncSize();
+                syncs ++;
+            }
+        }
+
+        long total = Time.timeSinceNanos(start);
+        report.allocatedBytesPerTick = (allocated() - allocated) / ticks;
+        report.gcCount = gcCount() - gcCount;
+        report.gcMillis = gcTime() - gcTime;
+        report.ticksPerSecond = ticks / (total / 1e9f);
+        report.msPerTick = total / 1e6f / ticks;
+
+        Arrays.sort(times);
+        report.p50 = times[ticks / 2] / 1e6f;
+        report.p99 = times[Math.min((int)(ticks * 0.99f), ticks - 1)] / 1e6f;
+        report.max = times[ticks - 1] / 1e6f;
+        for(int i = 0; i < subsystems.length; i++){
+            report.subsystems.put(subsystemNames[i], subsystems[i] / 1e6f / ticks);
+        }
+        report.syncBytes = syncs == 0 ? 0 : syncBytes / syncs;
+
+        report.units = Groups.unit.size();
+        report.buildings = Groups.build.size();
+        report.bullets = Groups.bullet.size();
+        report.checksum = Long.toHexString(checksum());
+
+        //profiled phase, to see where the time goes; slower, so it is measured separately
+        Profile profile = new Profile();
+        int profiled = Math.max(ticks / 4, 1);
+        profiler = profile;
+        try{
+            for(int i = 0; i < profiled; i++){
+                tick();
+            }
+        }finally{
+            profiler = null;
+        }
+
+        for(int i = 0; i < UpdateProfiler.groupNames.length; i++){
+            report.groups.put(UpdateProfiler.groupNames[i], profile.groups[i] / 1e6f / profiled);
+        }
+        report.powerMs = profile.power / 1e6f / profiled;
+        report.powerUpdates = profile.powerUpdates / (float)profiled;
+
+        Seq<TypeReport> types = new Seq<>();
+        profile.types.each((name, stats) -> {
+            TypeReport type = new TypeReport();
+            type.name = name;
+            type.ms = stats[0] / 1e6f / profiled;
+            type.count = stats[1] / (float)profiled;
+            types.add(type);
+        });
+        types.sort(t -> -t.ms);
+        types.truncate(topTypes);
+        report.types = types.toArray(TypeReport.class);
+
+        return report;
+    }
+
+    /** Advances the game by one frame, the way a server does. */
+    void tick(){
+        graphics.frame ++;
+
+        long time = Time.nanos();
+        asyncCore.begin();
+        time = lap(0, time);
+        logic.update();
+        time = lap(1, time);
+        asyncCore.end();
+        time = lap(2, time);
+        pathfinder.step();
+        time = lap(3, time);
+        if(scenario.update != null) scenario.update.run();
+        lap(4, time);
+    }
+
+    long lap(int subsystem, long start){
+        long now = Time.nanos();
+        subsystems[subsystem] += now - start;
+        return now;
+    }
+
+    /** @return the size of one entity and block snapshot, without compression or splitting into packets. */
+    int syncSize(){
+        syncStream.reset();
+        Writes write = Writes.get(dataStream);
+
+        try{
+            for(Syncc entity : Groups.sync){
+                dataStream.writeInt(entity.id());
+                dataStream.writeByte(entity.classId());
+                entity.writeSync(write);
+            }
+
+            for(Building build : Groups.build){
+                if(!build.block.sync) continue;
+                dataStream.writeInt(build.pos());
+                dataStream.writeShort(build.block.id);
+                build.writeAll(write);
+            }
+            dataStream.flush();
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+
+        return syncStream.size();
+    }
+
+    /** @return a hash of the simulated state; the same for two runs that simulated the same game. */
+    public static long checksum(){
+        long hash = 17;
+        for(Unit unit : Groups.unit){
+            hash = hash * 31 + unit.type.id;
+            hash = hash * 31 + Float.floatToIntBits(unit.x);
+            hash = hash * 31 + Float.floatToIntBits(unit.y);
+            hash = hash * 31 + Float.floatToIntBits(unit.health);
+        }
+        for(Building build : Groups.build){
+            hash = hash * 31 + build.pos();
+            hash = hash * 31 + Float.floatToIntBits(build.health);
+            hash = hash * 31 + (build.items == null ? 0 : build.items.total());
+        }
+        return hash * 31 + Groups.bullet.size();
+    }
+
+    static long allocated(){
+        //only available on HotSpot-based VMs
+        if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean) || !bean.isThreadAllocatedMemorySupported()) return 0;
+
+        long total = 0;
+        for(long bytes : bean.getThreadAllocatedBytes(bean.getAllThreadIds())){
+            if(bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    static long gcCount(){
+        long total = 0;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()){
+            total += Math.max(bean.getCollectionCount(), 0);
+        }
+        return total;
+    }
+
+    static long gcTime(){
+        long total = 0;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()){
+            total += Math.max(bean.getCollectionTime(), 0);
+        }
+        return total;
+    }
+
+    /** Sums up update time per entity group and type. */
+    static class Profile implements UpdateProfiler{
+        final long[] groups = new long[groupNames.length];
+        /** Total time and update count per block or unit type. */
+        final ObjectMap<String, long[]> types = new ObjectMap<>();
+        long power, pendingPower;
+        int powerUpdates;
+
+        @Override
+        public void entityUpdated(Entityc entity, long nanos){
+            int group = UpdateProfiler.group(entity);
+            if(group == 0){
+                //power graphs are updated by a building; count that time separately
+                nanos -= pendingPower;
+                pendingPower = 0;
+            }
+            groups[group] += nanos;
+
+            String type = entity instanceof Building build ? build.block.name : entity instanceof Unit unit ? unit.type.name : null;
+            if(type != null){
+                long[] stats = types.get(type, () -> new long[2]);
+                stats[0] += nanos;
+                stats[1] ++;
+            }
+        }
+
+        @Override
+        public void powerGraphUpdated(PowerGraph graph, long nanos){
+            power += nanos;
+            pendingPower += nanos;
+            powerUpdates ++;
+        }
+    }
+
+    /** Results of one scenario. Times are in milliseconds per tick. */
+    public static class Report{
+        public String name, description;
+        public int ticks;
+        public float ticksPerSecond, msPerTick, p50, p99, max;
+        public OrderedMap<String, Float> subsystems = new OrderedMap<>();
+        /** Update time of each entity group, measured in the profiled phase. Excludes power graphs. */
+        public OrderedMap<String, Float> groups = new OrderedMap<>();
+        public float powerMs, powerUpdates;
+        /** Block and unit types that took the most update time. */
+        public TypeReport[] types = {};
+        public long allocatedBytesPerTick, gcCount, gcMillis;
+        /** Average size of a snapshot of all synced entities and blocks, in bytes. */
+        public long syncBytes;
+        public int units, buildings, bullets;
+        public String checksum;
+        /** Whether the scenario was run twice and compared. */
+        public boolean verified;
+        /** Whether both runs ended with the same checksum. Only meaningful if verified. */
+        public boolean deterministic;
+    }
+
+    public static class TypeReport{
+        public String name;
+        public float ms, count;
+    }
+}
@@ -0,0 +1,180 @@
+package mindustry.benchmarks;
+
+import arc.*;
+import arc.backend.headless.*;
+import arc.files.*;
+import arc.struct.*;
+import arc.util.*;
+import arc.util.serialization.*;
+import arc.util.serialization.JsonWriter.*;
+import mindustry.*;
+import mindustry.benchmarks.Benchmark.*;
+import mindustry.benchmarks.Scenarios.*;
+import mindustry.core.*;
+import mindustry.io.*;
+import mindustry.mod.*;
+import mindustry.net.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Runs scenarios headless and writes a JSON report of how long they took to simulate.
+ * <p>
+ * Arguments are names of generated scenarios, or save files and folders of saves to run. Without any, all generated scenarios run.
+ * Options: --ticks, --warmup, --seed, --output (report file), --export (folder to write generated scenarios to as saves)
+ * and --verify (run every scenario twice and compare the end state).
+ */
+public class BenchmarkLauncher{
+    static final Fi dataFolder = new Fi("../../benchmarks/build/data");
+
+    int ticks = 3000, warmup = 600;
+    long seed = 1234;
+    boolean verify;
+    Fi output = new Fi("../../benchmarks/build/benchmark-report.json");
+    @Nullable Fi export;
+    Seq<Scenario> scenarios = new Seq<>();
+
+    public static void main(String[] args){
+        BenchmarkLauncher launcher = new BenchmarkLauncher();
+        try{
+            launcher.parse(args);
+        }catch(IllegalArgumentException e){
+            Log.err(e.getMessage());
+            System.exit(2);
+        }
+
+        Log.useColors = false;
+        BenchGraphics graphics = new BenchGraphics();
+
+        new HeadlessApplication(new ApplicationCore(){
+            @Override
+            public void setup(){
+                Core.settings.setDataDirectory(dataFolder);
+                headless = true;
+                net = new Net(null);
+                tree = new FileTree();
+                Vars.init();
+                pathfinder.lockstep = true;
+
+                content.createBaseContent();
+                mods.loadScripts();
+                content.createModContent();
+
+                add(logic = new Logic());
+                add(netServer = new NetServer());
+
+                content.init();
+                mods.eachClass(Mod::init);
+            }
+
+            @Override
+            public void init(){
+                super.init();
+                Core.graphics = graphics;
+                Time.setDeltaProvider(() -> 1f);
+
+                int code = 0;
+                try{
+                    launcher.run(graphics);
+                }catch(Throwable t){
+                    Log.err(t);
+                    code = 1;
+                }
+                System.exit(code);
+            }
+        }, Log::err);
+    }
+
+    void parse(String[] args){
+        for(int i = 0; i < args.length; i++){
+            String arg = args[i];
+            if(arg.startsWith("--")){
+                if(arg.equals("--verify")){
+                    verify = true;
+                    continue;
+                }
+                if(i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + arg);
+                String value = args[++i];
+
+                switch(arg){
+                    case "--ticks" -> ticks = Math.max(Strings.parseInt(value, ticks), 1);
+                    case "--warmup" -> warmup = Math.max(Strings.parseInt(value, warmup), 0);
+                    case "--seed" -> seed = Strings.parseLong(value, seed);
+                    case "--output" -> output = new Fi(value);
+                    case "--export" -> export = new Fi(value);
+                    default -> throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }else if(Scenarios.get(arg) != null){
+                scenarios.add(Scenarios.get(arg));
+            }else{
+                Fi file = new Fi(arg);
+                if(file.isDirectory()){
+                    for(Fi save : file.list()){
+                        if(save.extEquals(saveExtension) || save.extEquals(mapExtension)){
+                            scenarios.add(Scenarios.file(save));
+                        }
+                    }
+                }else if(file.exists()){
+                    scenarios.add(Scenarios.file(file));
+                }else{
+                    throw new IllegalArgumentException("Not a scenario or file: " + arg);
+                }
+            }
+        }
+
+        if(scenarios.isEmpty()){
+            scenarios.addAll(Scenarios.generated);
+        }
+    }
+
+    void run(BenchGraphics graphics){
+        if(export != null){
+            export.mkdirs();
+            for(Scenario scenario : Scenarios.generated){
+                new Benchmark(scenario, graphics, 0, 1, seed).load();
+                SaveIO.write(export.child(scenario.name + "." + saveExtension));
+                Log.info("Exported @.", scenario.name);
+            }
+        }
+
+        Result result = new Result();
+        result.version = Version.buildString();
+        result.processors = OS.cores;
+        result.seed = seed;
+        result.warmup = warmup;
+
+        Seq<Report> reports = new Seq<>();
+        for(Scenario scenario : scenarios){
+            Log.info("Running @ (@ + @ ticks)...", scenario.name, warmup, ticks);
+            Report report = new Benchmark(scenario, graphics, warmup, ticks, seed).run();
+
+            if(verify){
+                Report second = new Benchmark(scenario, graphics, warmup, ticks, seed).run();
+                report.verified = true;
+                report.deterministic = report.checksum.equals(second.checksum);
+                if(!report.deterministic){
+                    Log.warn("@ is not deterministic: @ != @", scenario.name, report.checksum, second.checksum);
+                }
+            }
+
+            Log.info("@: @ ticks/s, @ ms/tick (p99 @ ms)", scenario.name, (int)report.ticksPerSecond, Strings.fixed(report.msPerTick, 3), Strings.fixed(report.p99, 3));
+            reports.add(report);
+        }
+        result.scenarios = reports.toArray(Report.class);
+
+        Json json = new Json(OutputType.json);
+        json.setUsePrototypes(false);
+        output.writeString(json.prettyPrint(result));
+        Log.info("Wrote report to @.", output.absolutePath());
+
+        logic.reset();
+    }
+
+    public static class Result{
+        public String version;
+        public int processors;
+        public long seed;
+        public int warmup;
+        public Report[] scenarios = {};
+    }
+}
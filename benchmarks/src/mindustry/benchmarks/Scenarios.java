@@ -0,0 +1,347 @@
+package mindustry.benchmarks;
+
+import arc.*;
+import arc.assets.*;
+import arc.files.*;
+import arc.func.*;
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.content.*;
+import mindustry.entities.*;
+import mindustry.game.*;
+import mindustry.game.SectorInfo.*;
+import mindustry.gen.*;
+import mindustry.io.*;
+import mindustry.io.SaveIO.*;
+import mindustry.logic.*;
+import mindustry.type.*;
+import mindustry.world.*;
+import mindustry.world.blocks.environment.*;
+import mindustry.world.blocks.logic.LogicBlock.*;
+
+import java.io.*;
+
+import static mindustry.Vars.*;
+
+/** Worlds the benchmark can run. Generated scenarios are built from fixed layouts, so each run simulates the same game. */
+public class Scenarios{
+    /** Generated stress scenarios. */
+    public static final Seq<Scenario> generated = Seq.with(
+        new Scenario("base", "factory rows of drills, conveyors, menders and power", Scenarios::base),
+        new Scenario("swarm", "two armies of ground and air units fighting", Scenarios::swarm),
+        new Scenario("logic", "thousands of processors running a math loop", Scenarios::logic),
+        new Scenario("programs", "processors running a sort, a unit controller and a math loop, compiled", () -> programs(true)),
+        new Scenario("programs-interpreted", "the programs scenario, without compiling logic", () -> programs(false)),
+        new Scenario("raycast", "thousands of lines cast over a grid of walls every tick", Scenarios::raycast, Scenarios::castLines),
+        new Scenario("raycast-legacy", "the raycast scenario, with the per-tile lambdas that Damage.collideLine used before the building raycaster", Scenarios::raycast, Scenarios::castLinesLegacy),
+        new Scenario("campaign", "a turn of a planet where every sector is captured, every tick", Scenarios::campaign, () -> universe.runTurn())
+    );
+
+    static final BuildingRaycaster raycaster = new BuildingRaycaster();
+    static final Vec2 ray = new Vec2(), seg1 = new Vec2(), seg2 = new Vec2();
+    static final IntSet collided = new IntSet();
+    static int legacyHits;
+
+    /** Needed to create sector save slots, which are what marks a sector as captured. */
+    static @Nullable Saves saves;
+
+    /** @return the generated scenario with this name, or null. */
+    public static @Nullable Scenario get(String name){
+        return generated.find(s -> s.name.equals(name));
+    }
+
+    /** @return a scenario that loads a save, or a map if the file is not a save. */
+    public static Scenario file(Fi file){
+        return new Scenario(file.nameWithoutExtension(), file.path(), () -> {
+            try{
+                SaveIO.load(file);
+            }catch(SaveException e){
+                try{
+                    world.loadMap(MapIO.createMap(file, true));
+                }catch(IOException io){
+                    throw new RuntimeException("Not a save or map: " + file, io);
+                }
+            }
+            //campaign rules would try to simulate the rest of the planet
+            state.rules.sector = null;
+        });
+    }
+
+    static void base(){
+        int width = 320, height = 320;
+        Tiles tiles = begin(width, height);
+        //ore under every row of drills
+        for(Tile tile : tiles){
+            int row = tile.y % 8;
+            if(row == 1 || row == 2) tile.setOverlay(Blocks.oreCopper);
+        }
+        world.endMapLoad();
+
+        for(int y = 0; y + 8 <= height; y += 8){
+            //items flow from a source at the start of each row to a void at the end
+            tiles.getn(0, y).setBlock(Blocks.itemSource, Team.sharded);
+            tiles.getn(0, y).build.configureAny(Items.copper);
+            for(int x = 1; x < width - 1; x++){
+                tiles.getn(x, y).setBlock(x % 4 == 0 ? Blocks.titaniumConveyor : Blocks.conveyor, Team.sharded, 0);
+            }
+            tiles.getn(width - 1, y).setBlock(Blocks.itemVoid, Team.sharded);
+
+            //drills on the ore output into the conveyor below them
+            for(int x = 1; x + 1 < width - 1; x += 2){
+                tiles.getn(x, y + 1).setBlock(Blocks.mechanicalDrill, Team.sharded);
+            }
+
+            //one long power graph per row
+            for(int x = 0; x < width; x++){
+                Block block = x % 3 == 0 ? Blocks.solarPanel : x % 3 == 1 ? Blocks.mender : Blocks.battery;
+                tiles.getn(x, y + 4).setBlock(block, Team.sharded);
+            }
+        }
+    }
+
+    static void swarm(){
+        int width = 200, height = 120;
+        Tiles tiles = begin(width, height);
+        world.endMapLoad();
+
+        tiles.getn(10, height / 2).setBlock(Blocks.coreShard, Team.sharded);
+        tiles.getn(width - 10, height / 2).setBlock(Blocks.coreShard, Team.crux);
+
+        Rand rand = new Rand(7);
+        UnitType[] types = {UnitTypes.dagger, UnitTypes.mace, UnitTypes.flare};
+        for(int i = 0; i < 3000; i++){
+            Team team = i % 2 == 0 ? Team.sharded : Team.crux;
+            float cx = team == Team.sharded ? width * 0.35f : width * 0.65f;
+            types[i / 2 % types.length].spawn(team, (cx + rand.range(width * 0.12f)) * tilesize, (height / 2f + rand.range(height * 0.4f)) * tilesize);
+        }
+    }
+
+    static void logic(){
+        int width = 120, height = 120;
+        Tiles tiles = begin(width, height);
+        world.endMapLoad();
+
+        String code =
+        "set i 0\n" +
+        "op add i i 1\n" +
+        "op sin s i 0\n" +
+        "op mul t s i\n" +
+        "sensor x @this @x\n" +
+        "op add t t x\n" +
+        "jump 1 lessThan i 100000\n";
+
+        for(int y = 2; y < height - 2; y += 2){
+            for(int x = 2; x < width - 2; x += 2){
+                Tile tile = tiles.getn(x, y);
+                tile.setBlock((x + y) % 4 == 0 ? Blocks.logicProcessor : Blocks.microProcessor, Team.sharded);
+                if(tile.build instanceof LogicBuild build){
+                    build.updateCode(code);
+                }
+            }
+        }
+    }
+
+    /** Typical programs, each in a row of processors. Every sorting processor has its own memory cell, so they can all run in parallel. */
+    static void programs(boolean compile){
+        int width = 120, height = 120;
+        Tiles tiles = begin(width, height);
+        world.endMapLoad();
+        LCompiler.enabled = compile;
+
+        String[] programs = {
+        //sorts a memory cell filled in descending order
+        "set i 0\n" +
+        "fill:\n" +
+        "op sub v 64 i\n" +
+        "write v cell1 i\n" +
+        "op add i i 1\n" +
+        "jump fill lessThan i 64\n" +
+        "set i 0\n" +
+        "outer:\n" +
+        "set j 0\n" +
+        "op sub lim 63 i\n" +
+        "inner:\n" +
+        "read a cell1 j\n" +
+        "op add k j 1\n" +
+        "read b cell1 k\n" +
+        "jump skip lessThanEq a b\n" +
+        "write b cell1 j\n" +
+        "write a cell1 k\n" +
+        "skip:\n" +
+        "op add j j 1\n" +
+        "jump inner lessThan j lim\n" +
+        "op add i i 1\n" +
+        "jump outer lessThan i 63\n" +
+        "end",
+
+        //typical unit controller; there are no units, so all unit instructions fail
+        "ubind @poly\n" +
+        "sensor x @unit @x\n" +
+        "sensor y @unit @y\n" +
+        "op sub dx 100 x\n" +
+        "op sub dy 100 y\n" +
+        "op len dst dx dy\n" +
+        "jump far greaterThan dst 5\n" +
+        "ucontrol stop 0 0 0 0 0\n" +
+        "end\n" +
+        "far:\n" +
+        "ucontrol move 100 100 0 0 0\n" +
+        "end",
+
+        //number crunching only
+        "set i 0\n" +
+        "set sum 0\n" +
+        "loop:\n" +
+        "op mul sq i i\n" +
+        "op mod r sq 7\n" +
+        "op add sum sum r\n" +
+        "op add i i 1\n" +
+        "jump loop lessThan i 1000\n" +
+        "end"
+        };
+
+        for(int y = 2; y < height - 2; y += 2){
+            String code = programs[y / 2 % programs.length];
+            //processors take up two tiles, and their cell is next to them
+            for(int x = 2; x + 2 < width - 2; x += 3){
+                Tile tile = tiles.getn(x, y);
+                tile.setBlock(Blocks.logicProcessor, Team.sharded);
+                tiles.getn(x + 2, y).setBlock(Blocks.memoryCell, Team.sharded);
+                if(tile.build instanceof LogicBuild build){
+                    build.links.add(new LogicLink(x + 2, y, "cell1", true));
+                    build.updateCode(code);
+                }
+            }
+        }
+    }
+
+    static void raycast(){
+        int size = 256;
+        Tiles tiles = begin(size, size);
+        world.endMapLoad();
+
+        for(int x = 1; x < size - 1; x += 3){
+            for(int y = 1; y < size - 1; y += 3){
+                tiles.getn(x, y).setBlock((x + y) % 2 == 0 ? Blocks.titaniumWallLarge : Blocks.copperWall, (x / 3) % 2 == 0 ? Team.sharded : Team.crux);
+            }
+        }
+    }
+
+    /** Casts lines from the center of the world in every direction, like lasers do. */
+    static void castLines(){
+        int casts = 4000;
+        float center = world.unitWidth() / 2f, length = world.unitWidth() * 0.7f;
+        for(int i = 0; i < casts; i++){
+            ray.trnsExact(i * 360f / casts, length);
+            raycaster.cast(center, center, center + ray.x, center + ray.y, null, true, false, 0);
+        }
+    }
+
+    /** Same casts as {@link #castLines()}, collecting buildings the way Damage.collideLine did before it used {@link BuildingRaycaster}. */
+    static void castLinesLegacy(){
+        int casts = 4000;
+        float center = world.unitWidth() / 2f, length = world.unitWidth() * 0.7f;
+        for(int i = 0; i < casts; i++){
+            ray.trnsExact(i * 360f / casts, length);
+            collided.clear();
+
+            //a new capturing lambda per cast, like the original
+            Intc2 collider = (cx, cy) -> {
+                Building build = world.build(cx, cy);
+                if(build != null && collided.add(build.pos())){
+                    legacyHits ++;
+                }
+            };
+
+            seg1.set(center, center);
+            seg2.set(seg1).add(ray);
+            world.raycastEachWorld(center, center, seg2.x, seg2.y, (cx, cy) -> {
+                collider.get(cx, cy);
+
+                for(Point2 p : Geometry.d4){
+                    Tile other = world.tile(p.x + cx, p.y + cy);
+                    if(other != null && Intersector.intersectSegmentRectangle(seg1, seg2, other.getBounds(Tmp.r1))){
+                        collider.get(cx + p.x, cy + p.y);
+                    }
+                }
+                return false;
+            });
+        }
+    }
+
+    static void campaign(){
+        Tiles tiles = begin(50, 50);
+        world.endMapLoad();
+        tiles.getn(25, 25).setBlock(Blocks.coreShard, Team.sharded);
+
+        if(saves == null){
+            if(Core.assets == null) Core.assets = new AssetManager();
+            saves = new Saves();
+        }
+
+        Rand rand = new Rand(7);
+        Item[] items = {Items.copper, Items.lead, Items.graphite, Items.silicon, Items.titanium};
+        for(Sector sector : Planets.serpulo.sectors){
+            //the save is never written; it only needs to exist
+            sector.save = saves.new SaveSlot(saveDirectory.child("benchmark-" + sector.id + ".msav"));
+            SectorInfo info = sector.info = new SectorInfo();
+            info.storageCapacity = 4000;
+            info.destination = sector.near().get(rand.random(sector.near().size - 1));
+
+            for(Item item : items){
+                info.production.get(item, ExportStat::new).mean = rand.random(-2f, 10f);
+                info.export.get(item, ExportStat::new).mean = rand.random(0f, 3f);
+                info.items.add(item, rand.random(info.storageCapacity));
+            }
+
+            //half of the sectors are under attack by waves they can hold off forever
+            info.waves = sector.id % 2 == 0;
+            info.winWave = -1;
+            info.wave = rand.random(1, 50);
+            info.sumHealth = 20000f;
+            info.sumDps = 400f;
+            info.sumRps = 20f;
+            info.waveHealthBase = 500f;
+            info.waveDpsBase = 10f;
+        }
+    }
+
+    /** Starts loading an empty stone world. The caller places ores, then calls {@link World#endMapLoad()}. */
+    static Tiles begin(int width, int height){
+        //only the programs scenario disables it
+        LCompiler.enabled = true;
+        state.rules = new Rules();
+        state.rules.waves = false;
+        state.rules.canGameOver = false;
+        state.rules.waveTeam = Team.crux;
+
+        Tiles tiles = world.resize(width, height);
+        world.beginMapLoad();
+        tiles.fill();
+        for(Tile tile : tiles){
+            tile.setFloor((Floor)Blocks.stone);
+        }
+        return tiles;
+    }
+
+    public static class Scenario{
+        public final String name, description;
+        /** Loads the world; the game state is reset before and set to playing after. */
+        public final Runnable load;
+        /** Runs every tick after the game is updated, for things that a server does not update by itself. */
+        public final @Nullable Runnable update;
+
+        public Scenario(String name, String description, Runnable load){
+            this(name, description, load, null);
+        }
+
+        public Scenario(String name, String description, Runnable load, @Nullable Runnable update){
+            this.name = name;
+            this.description = description;
+            this.load = load;
+            this.update = update;
+        }
+    }
+}
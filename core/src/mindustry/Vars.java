@@ -27,6 +27,8 @@ import mindustry.mod.*;
 import mindustry.net.*;
 import mindustry.service.*;
 import mindustry.world.*;
+import mindustry.world.blocks.distribution.*;
+import mindustry.world.blocks.liquid.*;
 
 import java.io.*;
 import java.nio.charset.*;
@@ -215,6 +217,13 @@ public class Vars implements Loadable{
     public static ContentLoader content;
     public static GameState state;
     public static EntityCollisions collisions;
+    public static BuildingScheduler buildScheduler;
+    public static LogicScheduler logicScheduler;
+    public static LiquidSolver liquidSolver;
+    public static ConveyorLines conveyorLines;
+    public static HazardField hazards;
+    /** Receives update timings when set; used for benchmarks. */
+    public static @Nullable UpdateProfiler profiler;
     public static Waves waves;
     public static Platform platform = new Platform(){};
     public static Mods mods;
@@ -288,6 +297,11 @@ public class Vars implements Loadable{
         content = new ContentLoader();
         waves = new Waves();
         collisions = new EntityCollisions();
+        buildScheduler = new BuildingScheduler();
+        logicScheduler = new LogicScheduler();
+        liquidSolver = new LiquidSolver();
+        conveyorLines = new ConveyorLines();
+        hazards = new HazardField();
         world = new World();
         universe = new Universe();
         becontrol = new BeControl();
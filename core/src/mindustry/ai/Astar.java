@@ -13,10 +13,7 @@ import static mindustry.Vars.*;
 public class Astar{
     public static final DistanceHeuristic manhattan = (x1, y1, x2, y2) -> Math.abs(x1 - x2) + Math.abs(y1 - y2);
 
-    private static final Seq<Tile> out = new Seq<>();
-    private static final PQueue<Tile> queue = new PQueue<>(200 * 200 / 4, (a, b) -> 0);
-    private static float[] costs;
-    private static byte[][] rotations;
+    private static final ThreadLocal<Search> searches = Threads.local(Search::new);
 
     public static Seq<Tile> pathfind(Tile from, Tile to, TileHueristic th, Boolf<Tile> passable){
         return pathfind(from.x, from.y, to.x, to.y, th, manhattan, passable);
@@ -26,68 +23,153 @@ public class Astar{
         return pathfind(startX, startY, endX, endY, th, manhattan, passable);
     }
 
+    /**
+     * Finds a path on the world tiles. Can be called from several threads at once, as long as the tiles do not change.
+     * @return the tiles of the path, excluding the start; empty if there is none. Reused by the next search on this thread.
+     */
     public static Seq<Tile> pathfind(int startX, int startY, int endX, int endY, TileHueristic th, DistanceHeuristic dh, Boolf<Tile> passable){
-        Tiles tiles = world.tiles;
+        return searches.get().pathfind(startX, startY, endX, endY, th, dh, passable);
+    }
 
-        Tile start = tiles.getn(startX, startY);
-        Tile end = tiles.getn(endX, endY);
+    /**
+     * Reusable state of a search; every thread uses its own through the static methods.
+     * Tiles are marked as visited with the number of the search, so nothing has to be cleared between searches,
+     * and the open set is a binary heap of tile indices ordered by scores that are computed once per tile.
+     */
+    public static class Search{
+        final Seq<Tile> out = new Seq<>();
+
+        /** Number of the search that last visited each tile. */
+        int[] visited = {};
+        int search;
+        float[] costs, scores;
+        byte[] rotations;
+
+        int[] heap = new int[256];
+        int size;
+
+        public Seq<Tile> pathfind(int startX, int startY, int endX, int endY, TileHueristic th, DistanceHeuristic dh, Boolf<Tile> passable){
+            Tiles tiles = world.tiles;
+            int width = tiles.width, height = tiles.height;
+
+            Tile start = tiles.getn(startX, startY);
+            Tile end = tiles.getn(endX, endY);
+
+            begin(width * height);
+
+            int startIndex = start.array(), endIndex = end.array();
+            visited[startIndex] = search;
+            costs[startIndex] = 0f;
+            scores[startIndex] = dh.cost(start.x, start.y, end.x, end.y);
+            add(startIndex);
+
+            boolean found = false;
+            while(size > 0){
+                int next = poll();
+                if(next == endIndex){
+                    found = true;
+                    break;
+                }
 
-        GridBits closed = new GridBits(tiles.width, tiles.height);
+                int x = next % width, y = next / width;
+                Tile nextTile = tiles.geti(next);
+                float baseCost = costs[next];
 
-        if(costs == null || costs.length != tiles.width * tiles.height){
-            costs = new float[tiles.width * tiles.height];
-        }
+                for(Point2 point : Geometry.d4){
+                    int newX = x + point.x, newY = y + point.y;
+                    if(!Structs.inBounds(newX, newY, width, height)) continue;
 
-        Arrays.fill(costs, 0);
+                    //tiles are only ever scored once, when first found
+                    int childIndex = newX + newY * width;
+                    if(visited[childIndex] == search) continue;
 
-        queue.clear();
-        queue.comparator = Structs.comparingFloat(a -> costs[a.array()] + dh.cost(a.x, a.y, end.x, end.y));
-        queue.add(start);
-        if(rotations == null || rotations.length != world.width() || rotations[0].length != world.height()){
-            rotations = new byte[world.width()][world.height()];
-        }
-
-        boolean found = false;
-        while(!queue.empty()){
-            Tile next = queue.poll();
-            float baseCost = costs[next.array()];
-            if(next == end){
-                found = true;
-                break;
-            }
-            closed.set(next.x, next.y);
-            for(Point2 point : Geometry.d4){
-                int newX = next.x + point.x, newY = next.y + point.y;
-                if(Structs.inBounds(newX, newY, tiles.width, tiles.height)){
-                    Tile child = tiles.getn(newX, newY);
+                    Tile child = tiles.geti(childIndex);
                     if(passable.get(child)){
-                        float newCost = th.cost(next, child) + baseCost;
-                        if(!closed.get(child.x, child.y)){
-                            closed.set(child.x, child.y);
-                            rotations[child.x][child.y] = child.relativeTo(next.x, next.y);
-                            costs[child.array()] = newCost;
-                            queue.add(child);
-                        }
+                        float newCost = th.cost(nextTile, child) + baseCost;
+                        visited[childIndex] = search;
+                        rotations[childIndex] = child.relativeTo(x, y);
+                        costs[childIndex] = newCost;
+                        scores[childIndex] = newCost + dh.cost(newX, newY, end.x, end.y);
+                        add(childIndex);
                     }
                 }
             }
-        }
 
-        out.clear();
+            out.clear();
 
-        if(!found) return out;
+            if(!found) return out;
 
-        Tile current = end;
-        while(current != start){
-            out.add(current);
+            int current = endIndex;
+            while(current != startIndex){
+                out.add(tiles.geti(current));
 
-            byte rot = rotations[current.x][current.y];
-            current = tiles.getn(current.x + Geometry.d4x[rot], current.y + Geometry.d4y[rot]);
+                byte rot = rotations[current];
+                current += Geometry.d4x[rot] + Geometry.d4y[rot] * width;
+            }
+
+            out.reverse();
+
+            return out;
         }
 
-        out.reverse();
+        void begin(int tiles){
+            if(visited.length != tiles){
+                visited = new int[tiles];
+                costs = new float[tiles];
+                scores = new float[tiles];
+                rotations = new byte[tiles];
+                search = 0;
+            }
+
+            //every number is used once; start over when they run out
+            if(++search == Integer.MAX_VALUE){
+                Arrays.fill(visited, 0);
+                search = 1;
+            }
 
-        return out;
+            size = 0;
+        }
+
+        //same ordering as a PQueue, so that paths with equal scores are chosen the same way
+
+        void add(int tile){
+            if(size == heap.length){
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+
+            int k = size++;
+            float score = scores[tile];
+            while(k > 0){
+                int parent = (k - 1) >>> 1;
+                int e = heap[parent];
+                if(Float.compare(score, scores[e]) >= 0) break;
+                heap[k] = e;
+                k = parent;
+            }
+            heap[k] = tile;
+        }
+
+        int poll(){
+            int result = heap[0];
+            int s = --size;
+            if(s != 0){
+                int x = heap[s];
+                float score = scores[x];
+                int k = 0, half = s >>> 1;
+                while(k < half){
+                    int child = (k << 1) + 1, right = child + 1;
+                    int c = heap[child];
+                    if(right < s && Float.compare(scores[c], scores[heap[right]]) > 0){
+                        c = heap[child = right];
+                    }
+                    if(Float.compare(score, scores[c]) <= 0) break;
+                    heap[k] = c;
+                    k = child;
+                }
+                heap[k] = x;
+            }
+            return result;
+        }
     }
 
     public interface DistanceHeuristic{
@@ -30,6 +30,8 @@ public class BlockIndexer{
 
     /** Stores all ore quadrants on the map. Maps ID to qX to qY to a list of tiles with that ore. */
     private IntSeq[][][] ores;
+    /** Index of each tile in its ore quadrant list, or -1 if it is not in one. */
+    private int[] oreIndices = {};
     /** Stores all damaged tile entities by team. */
     private Seq<Building>[] damagedTiles = new Seq[Team.all.length];
     /** All ores available on this map. */
@@ -45,6 +47,8 @@ public class BlockIndexer{
     private Seq<Tile> returnArray = new Seq<>();
     /** Array used for returning and reusing. */
     private Seq<Building> breturnArray = new Seq<>(Building.class);
+    /** Iterator used for returning and reusing. */
+    private FlagIterator flagIterator = new FlagIterator();
 
     public BlockIndexer(){
         clearFlags();
@@ -71,27 +75,17 @@ public class BlockIndexer{
             quadWidth = Mathf.ceil(world.width() / (float)quadrantSize);
             quadHeight = Mathf.ceil(world.height() / (float)quadrantSize);
             blocksPresent = new boolean[content.blocks().size];
+            oreIndices = new int[world.width() * world.height()];
+            Arrays.fill(oreIndices, -1);
 
             for(Tile tile : world.tiles){
                 process(tile);
 
                 var drop = tile.drop();
 
-                if(drop != null){
-                    int qx = (tile.x / quadrantSize);
-                    int qy = (tile.y / quadrantSize);
-
-                    //add position of quadrant to list
-                    if(tile.block() == Blocks.air){
-                        if(ores[drop.id] == null){
-                            ores[drop.id] = new IntSeq[quadWidth][quadHeight];
-                        }
-                        if(ores[drop.id][qx][qy] == null){
-                            ores[drop.id][qx][qy] = new IntSeq(false, 16);
-                        }
-                        ores[drop.id][qx][qy].add(tile.pos());
-                        allOres.increment(drop);
-                    }
+                //add position of quadrant to list
+                if(drop != null && tile.block() == Blocks.air){
+                    addOre(tile, drop);
                 }
             }
         });
@@ -133,30 +127,48 @@ public class BlockIndexer{
 
         var drop = tile.drop();
         if(drop != null){
-            int qx = tile.x / quadrantSize;
-            int qy = tile.y / quadrantSize;
+            boolean listed = oreIndices[tile.array()] != -1;
 
-            if(ores[drop.id] == null){
-                ores[drop.id] = new IntSeq[quadWidth][quadHeight];
-            }
-            if(ores[drop.id][qx][qy] == null){
-                ores[drop.id][qx][qy] = new IntSeq(false, 16);
+            //when the drop can be mined, record the ore position
+            if(tile.block() == Blocks.air && !listed){
+                addOre(tile, drop);
+            }else if(tile.block() != Blocks.air && listed){
+                //otherwise, it likely became blocked, remove it
+                removeOre(tile, drop);
             }
+        }
 
-            int pos = tile.pos();
-            var seq = ores[drop.id][qx][qy];
+    }
 
-            //when the drop can be mined, record the ore position
-            if(tile.block() == Blocks.air && !seq.contains(pos)){
-                seq.add(pos);
-                allOres.increment(drop);
-            }else{
-                //otherwise, it likely became blocked, remove it (even if it wasn't there)
-                seq.removeValue(pos);
-                allOres.increment(drop, -1);
-            }
+    private void addOre(Tile tile, Item drop){
+        int qx = tile.x / quadrantSize;
+        int qy = tile.y / quadrantSize;
+
+        if(ores[drop.id] == null){
+            ores[drop.id] = new IntSeq[quadWidth][quadHeight];
+        }
+        if(ores[drop.id][qx][qy] == null){
+            ores[drop.id][qx][qy] = new IntSeq(false, 16);
         }
 
+        var seq = ores[drop.id][qx][qy];
+        oreIndices[tile.array()] = seq.size;
+        seq.add(tile.pos());
+        allOres.increment(drop);
+    }
+
+    private void removeOre(Tile tile, Item drop){
+        var seq = ores[drop.id][tile.x / quadrantSize][tile.y / quadrantSize];
+        int index = oreIndices[tile.array()];
+        oreIndices[tile.array()] = -1;
+
+        //move the last ore into the gap
+        int last = seq.pop();
+        if(index < seq.size){
+            seq.items[index] = last;
+            oreIndices[Point2.x(last) + Point2.y(last) * world.width()] = index;
+        }
+        allOres.increment(drop, -1);
     }
 
     /** @return whether a certain block is anywhere on this map. */
@@ -197,7 +209,41 @@ public class BlockIndexer{
 
     @Nullable
     public Tile findClosestFlag(float x, float y, Team team, BlockFlag flag){
-        return Geometry.findClosest(x, y, getAllied(team, flag));
+        return getAllied(team, flag).findClosest(x, y);
+    }
+
+    /** @return the closest enemy block with a flag. */
+    @Nullable
+    public Tile findClosestEnemyFlag(float x, float y, Team team, BlockFlag flag){
+        Tile closest = null;
+        float dst = 0f;
+
+        for(int i = 0, teams = enemyTeams(); i < teams; i++){
+            Team enemy = enemyTeam(i);
+            if(enemy == team) continue;
+
+            Tile tile = getFlagged(enemy)[flag.ordinal()].findClosest(x, y);
+            if(tile != null){
+                float tdst = tile.dst2(x, y);
+                if(closest == null || tdst < dst){
+                    closest = tile;
+                    dst = tdst;
+                }
+            }
+        }
+
+        return closest;
+    }
+
+    /** @return the amount of teams that can have enemy blocks, for use with {@link #enemyTeam(int)}. */
+    int enemyTeams(){
+        //when team data is not initialized, scan through every team. this is terrible
+        return state.teams.present.isEmpty() ? Team.all.length : state.teams.present.size;
+    }
+
+    Team enemyTeam(int index){
+        Seq<TeamData> data = state.teams.present;
+        return data.isEmpty() ? Team.all[index] : data.items[index].team;
     }
 
     public boolean eachBlock(Teamc team, float range, Boolf<Building> pred, Cons<Building> cons){
@@ -239,39 +285,25 @@ public class BlockIndexer{
         return size > 0;
     }
 
-    /** Get all enemy blocks with a flag. */
+    /** Get all enemy blocks with a flag. Copies them; use {@link #eachEnemy(Team, BlockFlag)} to only iterate. */
     public Seq<Tile> getEnemy(Team team, BlockFlag type){
         returnArray.clear();
-        Seq<TeamData> data = state.teams.present;
-        //when team data is not initialized, scan through every team. this is terrible
-        if(data.isEmpty()){
-            for(Team enemy : Team.all){
-                if(enemy != team){
-                    TileArray set = getFlagged(enemy)[type.ordinal()];
-                    if(set != null){
-                        for(Tile tile : set){
-                            returnArray.add(tile);
-                        }
-                    }
-                }
-            }
-        }else{
-            for(int i = 0; i < data.size; i++){
-                Team enemy = data.items[i].team;
-                if(enemy != team){
-                    TileArray set = getFlagged(enemy)[type.ordinal()];
-                    if(set != null){
-                        for(Tile tile : set){
-                            returnArray.add(tile);
-                        }
-                    }
-                }
-            }
+        for(Tile tile : eachEnemy(team, type)){
+            returnArray.add(tile);
         }
-
         return returnArray;
     }
 
+    /** Iterates over all enemy blocks with a flag without copying them. The iterator is reused; main thread only. */
+    public FlagIterator eachEnemy(Team team, BlockFlag type){
+        return flagIterator.set(this, team, type);
+    }
+
+    /** Iterates over all enemy blocks with a flag without copying them, using an iterator owned by the caller. */
+    public FlagIterator eachEnemy(Team team, BlockFlag type, FlagIterator iterator){
+        return iterator.set(this, team, type);
+    }
+
     public void notifyBuildHealed(Building build){
         if(build.wasDamaged && !build.damaged() && damagedTiles[build.team.id] != null){
             damagedTiles[build.team.id].remove(build);
@@ -371,26 +403,51 @@ public class BlockIndexer{
 
     /** Find the closest ore block relative to a position. */
     public Tile findClosestOre(float xp, float yp, Item item){
-        if(ores[item.id] != null){
-            float minDst = 0f;
-            Tile closest = null;
-            for(int qx = 0; qx < quadWidth; qx++){
-                for(int qy = 0; qy < quadHeight; qy++){
-                    var arr = ores[item.id][qx][qy];
-                    if(arr != null && arr.size > 0){
-                        Tile tile = world.tile(arr.first());
-                        float dst = Mathf.dst2(xp, yp, tile.worldx(), tile.worldy());
-                        if(closest == null || dst < minDst){
-                            closest = tile;
+        if(ores == null || ores[item.id] == null) return null;
+
+        var quadrants = ores[item.id];
+        float cellSize = quadrantSize * tilesize;
+        //ore positions are tile corners in world units, which start half a tile before the tile's area
+        float lx = xp + tilesize / 2f, ly = yp + tilesize / 2f;
+        int cx = (int)Math.floor(lx / cellSize), cy = (int)Math.floor(ly / cellSize);
+        //every ore outside the position's own quadrant is at least this far away
+        float edge = Math.max(Math.min(Math.min(lx - cx * cellSize, (cx + 1) * cellSize - lx), Math.min(ly - cy * cellSize, (cy + 1) * cellSize - ly)), 0f);
+        int maxRing = Math.max(Math.max(Math.abs(cx), Math.abs(quadWidth - 1 - cx)), Math.max(Math.abs(cy), Math.abs(quadHeight - 1 - cy)));
+
+        float minDst = 0f;
+        int closest = -1;
+
+        //search rings of quadrants around the position, until no closer ore can exist
+        for(int ring = 0; ring <= maxRing; ring++){
+            if(ring > 0 && closest != -1){
+                float min = edge + (ring - 1) * cellSize;
+                if(min * min > minDst) break;
+            }
+
+            for(int qy = cy - ring; qy <= cy + ring; qy++){
+                if(qy < 0 || qy >= quadHeight) continue;
+                //only the first and last row of a ring are full; other rows only have their two ends
+                int step = ring == 0 || qy == cy - ring || qy == cy + ring ? 1 : ring * 2;
+
+                for(int qx = cx - ring; qx <= cx + ring; qx += step){
+                    if(qx < 0 || qx >= quadWidth) continue;
+
+                    var arr = quadrants[qx][qy];
+                    if(arr == null) continue;
+
+                    for(int i = 0; i < arr.size; i++){
+                        int pos = arr.items[i];
+                        float dst = Mathf.dst2(xp, yp, Point2.x(pos) * tilesize, Point2.y(pos) * tilesize);
+                        if(closest == -1 || dst < minDst){
+                            closest = pos;
                             minDst = dst;
                         }
                     }
                 }
             }
-            return closest;
         }
 
-        return null;
+        return closest == -1 ? null : world.tile(closest);
     }
 
     /** Find the closest ore block relative to a position. */
@@ -440,22 +497,151 @@ public class BlockIndexer{
         if(tile.blockID() < blocksPresent.length) blocksPresent[tile.blockID()] = true;
     }
 
+    /** Iterates over the tiles with a flag of every team except one. */
+    public static class FlagIterator implements Iterable<Tile>, Iterator<Tile>{
+        private BlockIndexer indexer;
+        private Team team;
+        private int flag, teamIndex, tileIndex;
+        private @Nullable TileArray current;
+
+        FlagIterator set(BlockIndexer indexer, Team team, BlockFlag flag){
+            this.indexer = indexer;
+            this.team = team;
+            this.flag = flag.ordinal();
+            teamIndex = -1;
+            tileIndex = 0;
+            current = null;
+            return this;
+        }
+
+        @Override
+        public boolean hasNext(){
+            while(current == null || tileIndex >= current.tiles.size){
+                if(++teamIndex >= indexer.enemyTeams()){
+                    current = null;
+                    return false;
+                }
+
+                Team enemy = indexer.enemyTeam(teamIndex);
+                current = enemy == team ? null : indexer.getFlagged(enemy)[flag];
+                tileIndex = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public Tile next(){
+            if(!hasNext()) throw new NoSuchElementException();
+            return current.tiles.items[tileIndex ++];
+        }
+
+        @Override
+        public Iterator<Tile> iterator(){
+            return this;
+        }
+    }
+
+    /** Tiles with the same flag, with a grid of quadrants for finding the closest one. */
     public static class TileArray implements Iterable<Tile>{
-        Seq<Tile> tiles = new Seq<>(false, 16);
-        IntSet contained = new IntSet();
+        /** Arrays with at most this many tiles are searched without the grid. */
+        private static final int linearSearch = 32;
+
+        Seq<Tile> tiles = new Seq<>(false, 16, Tile.class);
+        /** Index of each tile in {@link #tiles}, by position. */
+        IntIntMap indices = new IntIntMap();
+        /** Tiles of each quadrant, by packed quadrant position. */
+        IntMap<Seq<Tile>> quadrants = new IntMap<>();
+        /** Index of each tile in its quadrant, by position. */
+        IntIntMap quadrantIndices = new IntIntMap();
 
         public void add(Tile tile){
-            if(contained.add(tile.pos())){
-                tiles.add(tile);
+            int pos = tile.pos();
+            if(indices.containsKey(pos)) return;
+
+            indices.put(pos, tiles.size);
+            tiles.add(tile);
+
+            int key = quadrant(tile);
+            Seq<Tile> quadrant = quadrants.get(key);
+            if(quadrant == null){
+                quadrants.put(key, quadrant = new Seq<>(false, 4, Tile.class));
             }
+            quadrantIndices.put(pos, quadrant.size);
+            quadrant.add(tile);
         }
 
         public void remove(Tile tile){
-            if(contained.remove(tile.pos())){
-                tiles.remove(tile);
+            int pos = tile.pos();
+            if(!indices.containsKey(pos)) return;
+
+            removeAt(tiles, indices, indices.get(pos, -1));
+            indices.remove(pos, -1);
+
+            Seq<Tile> quadrant = quadrants.get(quadrant(tile));
+            removeAt(quadrant, quadrantIndices, quadrantIndices.get(pos, -1));
+            quadrantIndices.remove(pos, -1);
+        }
+
+        /** Removes a tile by moving the last tile into its place. */
+        private static void removeAt(Seq<Tile> seq, IntIntMap indices, int index){
+            Tile last = seq.pop();
+            if(index < seq.size){
+                seq.items[index] = last;
+                indices.put(last.pos(), index);
             }
         }
 
+        private static int quadrant(Tile tile){
+            return Point2.pack(tile.x / quadrantSize, tile.y / quadrantSize);
+        }
+
+        /** @return the closest tile to a position, or null if there are none. */
+        public @Nullable Tile findClosest(float x, float y){
+            if(tiles.size <= linearSearch) return Geometry.findClosest(x, y, tiles);
+
+            float cellSize = quadrantSize * tilesize;
+            //tiles are at most a tile away from the area of their quadrant, as building centers can be offset
+            float lx = x + tilesize / 2f, ly = y + tilesize / 2f;
+            int cx = (int)Math.floor(lx / cellSize), cy = (int)Math.floor(ly / cellSize);
+            float edge = Math.min(Math.min(lx - cx * cellSize, (cx + 1) * cellSize - lx), Math.min(ly - cy * cellSize, (cy + 1) * cellSize - ly)) - tilesize;
+
+            Tile closest = null;
+            float minDst = 0f;
+            int seen = 0;
+
+            //search rings of quadrants around the position, until every tile was seen or no closer tile can exist
+            for(int ring = 0; seen < tiles.size; ring++){
+                if(ring > 0 && closest != null){
+                    float min = edge + (ring - 1) * cellSize;
+                    if(min > 0 && min * min > minDst) break;
+                }
+
+                for(int qy = cy - ring; qy <= cy + ring; qy++){
+                    if(qy < 0) continue;
+                    int step = ring == 0 || qy == cy - ring || qy == cy + ring ? 1 : ring * 2;
+
+                    for(int qx = cx - ring; qx <= cx + ring; qx += step){
+                        if(qx < 0) continue;
+
+                        Seq<Tile> quadrant = quadrants.get(Point2.pack(qx, qy));
+                        if(quadrant == null) continue;
+
+                        seen += quadrant.size;
+                        for(int i = 0; i < quadrant.size; i++){
+                            Tile tile = quadrant.items[i];
+                            float dst = tile.dst2(x, y);
+                            if(closest == null || dst < minDst){
+                                closest = tile;
+                                minDst = dst;
+                            }
+                        }
+                    }
+                }
+            }
+
+            return closest;
+        }
+
         public int size(){
             return tiles.size;
         }
@@ -71,6 +71,8 @@ public class Pathfinder implements Runnable{
     TaskQueue queue = new TaskQueue();
     /** Current pathfinding thread */
     @Nullable Thread thread;
+    /** If true, no thread is started, and {@link #step()} must be called every update instead. Makes flow fields deterministic. */
+    public boolean lockstep;
     IntSeq tmpArray = new IntSeq();
 
     public Pathfinder(){
@@ -143,9 +145,37 @@ public class Pathfinder implements Runnable{
     /** Starts or restarts the pathfinding thread. */
     private void start(){
         stop();
+        if(lockstep) return;
         thread = Threads.daemon("Pathfinder", this);
     }
 
+    /** Runs queued work and completes every flow field on the calling thread. Only used in {@link #lockstep} mode. */
+    public void step(){
+        if(net.client() || !state.isPlaying()) return;
+
+        queue.run();
+        for(Flowfield data : threadList){
+            updateFrontier(data, -1);
+        }
+    }
+
+    /** @return amount of flow fields that are being kept up to date. Main thread only. */
+    public int fieldCount(){
+        return mainList.size;
+    }
+
+    /**
+     * @return total amount of tiles in the search frontiers of all flow fields; 0 when every field is complete. Main thread only.
+     * The frontiers are changed by the pathfinding thread, so this is only an estimate.
+     */
+    public int frontierSize(){
+        int total = 0;
+        for(int i = 0; i < mainList.size; i++){
+            total += mainList.get(i).frontier.size;
+        }
+        return total;
+    }
+
     /** Stops the pathfinding thread. */
     private void stop(){
         if(thread != null){
@@ -392,9 +422,12 @@ public class Pathfinder implements Runnable{
     }
 
     public static class EnemyCoreField extends Flowfield{
+        /** Flow fields are updated on the pathfinding thread, so this can't use the indexer's own iterator. */
+        private final BlockIndexer.FlagIterator enemyCores = new BlockIndexer.FlagIterator();
+
         @Override
         protected void getPositions(IntSeq out){
-            for(Tile other : indexer.getEnemy(team, BlockFlag.core)){
+            for(Tile other : indexer.eachEnemy(team, BlockFlag.core, enemyCores)){
                 out.add(other.pos());
             }
 
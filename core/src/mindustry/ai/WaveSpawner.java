@@ -18,8 +18,18 @@ import mindustry.world.*;
 
 import static mindustry.Vars.*;
 
+/**
+ * Spawns the units of waves.
+ * The composition of the next wave is planned ahead of time, and its units are created over the ticks before it starts.
+ * Units of large waves are added over several ticks, at most {@link #spawnsPerTick} at a time.
+ */
 public class WaveSpawner{
     private static final float margin = 0f, coreMargin = tilesize * 2f, maxSteps = 30;
+    /** Ticks before a wave during which its units are created. */
+    private static final float prepareTicks = 5f * 60f;
+
+    /** Maximum amount of units added to the world per tick. Waves with more units are spread over several ticks. */
+    public int spawnsPerTick = 250;
 
     private int tmpCount;
     private Seq<Tile> spawns = new Seq<>();
@@ -27,6 +37,18 @@ public class WaveSpawner{
     private boolean any = false;
     private Tile firstSpawn = null;
 
+    /** Units of a group at a spawn point that still have to be added. */
+    private Queue<PendingSpawn> pending = new Queue<>();
+
+    //plan of the next wave; groups are in the order of the rules when it was planned
+    private int plannedWave = -1;
+    private @Nullable Team plannedTeam;
+    private Seq<SpawnGroup> plannedGroups = new Seq<>();
+    /** Units needed per planned group, for all of its spawn points. */
+    private IntSeq plannedUnits = new IntSeq();
+    /** Units created ahead of time per planned group. They are not added yet. */
+    private Seq<Seq<Unit>> prepared = new Seq<>();
+
     public WaveSpawner(){
         Events.on(WorldLoadEvent.class, e -> reset());
     }
@@ -62,38 +84,130 @@ public class WaveSpawner{
             }
         });
 
-        for(SpawnGroup group : state.rules.spawns){
+        int wave = state.wave - 1;
+        Team team = state.rules.waveTeam;
+
+        for(int i = 0; i < state.rules.spawns.size; i++){
+            SpawnGroup group = state.rules.spawns.get(i);
             if(group.type == null) continue;
 
-            int spawned = group.getSpawned(state.wave - 1);
+            int spawned = group.getSpawned(wave);
+            if(spawned <= 0) continue;
 
+            int index = i;
             if(group.type.flying){
-                float spread = margin / 1.5f;
-
-                eachFlyerSpawn(group.spawn, (spawnX, spawnY) -> {
-                    for(int i = 0; i < spawned; i++){
-                        Unit unit = group.createUnit(state.rules.waveTeam, state.wave - 1);
-                        unit.set(spawnX + Mathf.range(spread), spawnY + Mathf.range(spread));
-                        spawnEffect(unit);
-                    }
-                });
+                eachFlyerSpawn(group.spawn, (spawnX, spawnY) -> pending.addLast(new PendingSpawn(group, index, team, wave, spawnX, spawnY, spawned)));
             }else{
-                float spread = tilesize * 2;
+                eachGroundSpawn(group.spawn, (spawnX, spawnY, doShockwave) -> pending.addLast(new PendingSpawn(group, index, team, wave, spawnX, spawnY, spawned)));
+            }
+        }
 
-                eachGroundSpawn(group.spawn, (spawnX, spawnY, doShockwave) -> {
+        spawnPending();
 
-                    for(int i = 0; i < spawned; i++){
-                        Tmp.v1.rnd(spread);
+        Time.run(121f, () -> spawning = false);
+    }
 
-                        Unit unit = group.createUnit(state.rules.waveTeam, state.wave - 1);
-                        unit.set(spawnX + Tmp.v1.x, spawnY + Tmp.v1.y);
-                        spawnEffect(unit);
-                    }
-                });
+    /** Adds the rest of the current wave and prepares units of the next one. Server only. */
+    public void update(){
+        if(pending.size > 0){
+            spawnPending();
+        }else if(state.rules.waves && state.rules.waveTimer && state.wavetime <= prepareTicks && !state.gameOver){
+            prepare(spawnsPerTick);
+        }
+    }
+
+    /** @return the amount of units in the next wave, according to its plan. */
+    public int plannedUnits(){
+        plan();
+        return plannedUnits.sum();
+    }
+
+    /** Plans the composition of the next wave, if the current plan is outdated. */
+    private void plan(){
+        int wave = state.wave - 1;
+        Seq<SpawnGroup> groups = state.rules.spawns;
+        if(plannedWave == wave && plannedTeam == state.rules.waveTeam && samePlan(groups)) return;
+
+        clearPlan();
+        plannedWave = wave;
+        plannedTeam = state.rules.waveTeam;
+        plannedGroups.addAll(groups);
+
+        for(SpawnGroup group : groups){
+            int spawned = group.type == null ? 0 : group.getSpawned(wave);
+            int points = spawned <= 0 ? 0 : group.type.flying ? countFlyerSpawns(group.spawn) : countGroundSpawns(group.spawn);
+            plannedUnits.add(spawned * points);
+            prepared.add(new Seq<>());
+        }
+    }
+
+    private boolean samePlan(Seq<SpawnGroup> groups){
+        if(plannedGroups.size != groups.size) return false;
+        for(int i = 0; i < groups.size; i++){
+            if(plannedGroups.get(i) != groups.get(i)) return false;
+        }
+        return true;
+    }
+
+    /** Creates units of the next wave ahead of time, up to an amount. */
+    private void prepare(int amount){
+        plan();
+
+        for(int i = 0; i < plannedGroups.size && amount > 0; i++){
+            SpawnGroup group = plannedGroups.get(i);
+            Seq<Unit> units = prepared.get(i);
+            while(units.size < plannedUnits.get(i) && amount-- > 0){
+                units.add(group.createUnit(plannedTeam, plannedWave));
             }
         }
+    }
 
-        Time.run(121f, () -> spawning = false);
+    private void clearPlan(){
+        plannedWave = -1;
+        plannedTeam = null;
+        plannedGroups.clear();
+        plannedUnits.clear();
+        prepared.clear();
+    }
+
+    /** @return a unit created ahead of time for this group, or a new one. */
+    private Unit obtain(PendingSpawn spawn){
+        if(spawn.wave == plannedWave && spawn.team == plannedTeam && spawn.index < plannedGroups.size && plannedGroups.get(spawn.index) == spawn.group){
+            Seq<Unit> units = prepared.get(spawn.index);
+            if(units.any()) return units.pop();
+        }
+        return spawn.group.createUnit(spawn.team, spawn.wave);
+    }
+
+    /** Adds pending units in order, until the amount for this tick is reached. */
+    private void spawnPending(){
+        int budget = Math.max(spawnsPerTick, 1);
+
+        while(pending.size > 0 && budget > 0){
+            PendingSpawn spawn = pending.first();
+
+            for(; spawn.remaining > 0 && budget > 0; spawn.remaining--, budget--){
+                Unit unit = obtain(spawn);
+                if(spawn.group.type.flying){
+                    float spread = margin / 1.5f;
+                    unit.set(spawn.x + Mathf.range(spread), spawn.y + Mathf.range(spread));
+                }else{
+                    float spread = tilesize * 2;
+                    Tmp.v1.rnd(spread);
+                    unit.set(spawn.x + Tmp.v1.x, spawn.y + Tmp.v1.y);
+                }
+                spawnEffect(unit);
+            }
+
+            if(spawn.remaining <= 0){
+                pending.removeFirst();
+            }
+        }
+
+        //the prepared units of a wave that is done are not needed anymore
+        if(pending.size == 0 && plannedWave != -1 && plannedWave < state.wave){
+            clearPlan();
+        }
     }
 
     public void doShockwave(float x, float y){
@@ -172,24 +286,34 @@ public class WaveSpawner{
     }
 
     public int countGroundSpawns(){
+        return countGroundSpawns(-1);
+    }
+
+    public int countFlyerSpawns(){
+        return countFlyerSpawns(-1);
+    }
+
+    private int countGroundSpawns(int filterPos){
         tmpCount = 0;
-        eachGroundSpawn((x, y) -> tmpCount ++);
+        eachGroundSpawn(filterPos, (x, y, shock) -> tmpCount ++);
         return tmpCount;
     }
 
-    public int countFlyerSpawns(){
+    private int countFlyerSpawns(int filterPos){
         tmpCount = 0;
-        eachFlyerSpawn(-1, (x, y) -> tmpCount ++);
+        eachFlyerSpawn(filterPos, (x, y) -> tmpCount ++);
         return tmpCount;
     }
 
     public boolean isSpawning(){
-        return spawning && !net.client();
+        return (spawning || pending.size > 0) && !net.client();
     }
 
     private void reset(){
         spawning = false;
         spawns.clear();
+        pending.clear();
+        clearPlan();
 
         for(Tile tile : world.tiles){
             if(tile.overlay() == Blocks.spawn){
@@ -213,6 +337,25 @@ public class WaveSpawner{
         void accept(float x, float y, boolean shockwave);
     }
 
+    private static class PendingSpawn{
+        final SpawnGroup group;
+        /** Index of the group in the rules when the wave started. */
+        final int index, wave;
+        final Team team;
+        final float x, y;
+        int remaining;
+
+        PendingSpawn(SpawnGroup group, int index, Team team, int wave, float x, float y, int remaining){
+            this.group = group;
+            this.index = index;
+            this.team = team;
+            this.wave = wave;
+            this.x = x;
+            this.y = y;
+            this.remaining = remaining;
+        }
+    }
+
     @Remote(called = Loc.server, unreliable = true)
     public static void spawnEffect(float x, float y, float rotation, UnitType u){
         Fx.unitSpawn.at(x, y, rotation, u);
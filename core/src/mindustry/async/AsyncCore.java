@@ -2,6 +2,7 @@ package mindustry.async;
 
 import arc.*;
 import arc.struct.*;
+import arc.util.*;
 import arc.util.async.*;
 import mindustry.game.EventType.*;
 
@@ -17,6 +18,10 @@ public class AsyncCore{
 
     //futures to be awaited
     private final Seq<Future<?>> futures = new Seq<>();
+    //time each process spent on its thread during the last frame
+    private long[] processNanos = {};
+    //tasks that run each process, reused every frame
+    private ProcessTask[] tasks = {};
 
     private ExecutorService executor;
 
@@ -55,10 +60,22 @@ public class AsyncCore{
                 });
             }
 
+            if(processNanos.length != processes.size){
+                processNanos = new long[processes.size];
+                tasks = new ProcessTask[processes.size];
+            }
+
             //submit all tasks
-            for(AsyncProcess p : processes){
+            for(int i = 0; i < processes.size; i++){
+                AsyncProcess p = processes.get(i);
+                processNanos[i] = 0;
+
+                if(tasks[i] == null || tasks[i].process != p){
+                    tasks[i] = new ProcessTask(p, i);
+                }
+
                 if(p.shouldProcess()){
-                    futures.add(executor.submit(p::process));
+                    futures.add(executor.submit(tasks[i]));
                 }
             }
         }
@@ -75,6 +92,11 @@ public class AsyncCore{
         }
     }
 
+    /** @return nanoseconds the process at this index in {@link #processes} ran on its thread during the last frame. */
+    public long processNanos(int index){
+        return index < processNanos.length ? processNanos[index] : 0;
+    }
+
     private void complete(){
         //wait for all threads to stop processing
         for(Future future : futures){
@@ -88,4 +110,22 @@ public class AsyncCore{
         //clear processed futures
         futures.clear();
     }
+
+    /** Runs a process and records how long it took. */
+    private class ProcessTask implements Runnable{
+        final AsyncProcess process;
+        final int index;
+
+        ProcessTask(AsyncProcess process, int index){
+            this.process = process;
+            this.index = index;
+        }
+
+        @Override
+        public void run(){
+            long start = Time.nanos();
+            process.process();
+            processNanos[index] = Time.timeSinceNanos(start);
+        }
+    }
 }
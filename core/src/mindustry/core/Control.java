@@ -388,6 +388,7 @@ public class Control implements ApplicationListener, Loadable{
                         Groups.unit.clear();
                         Groups.fire.clear();
                         Groups.puddle.clear();
+                        hazards.clear();
 
                         //reset to 0, so replaced cores don't count
                         state.rules.defaultTeam.data().unitCap = 0;
@@ -401,6 +401,11 @@ public class Logic implements ApplicationListener{
                     }
                 }
 
+                //finish spawning the last wave before the next one starts
+                if(!net.client() && !state.isEditor()){
+                    spawner.update();
+                }
+
                 if(!net.client() && state.wavetime <= 0 && state.rules.waves){
                     runWave();
                 }
@@ -410,7 +415,21 @@ public class Logic implements ApplicationListener{
                 state.envAttrs.add(state.rules.attributes);
                 Groups.weather.each(w -> state.envAttrs.add(w.weather.attrs, w.opacity));
 
+                if(!state.isEditor()){
+                    buildScheduler.update();
+                    logicScheduler.update();
+                    liquidSolver.update();
+                    conveyorLines.update();
+                    hazards.update();
+                }
+
                 Groups.update();
+
+                if(!state.isEditor()){
+                    //processors that were queued for the parallel phase while buildings updated; they run after every other entity.
+                    //nothing is queued unless more than one logic thread is configured
+                    logicScheduler.flush();
+                }
             }
 
             if(!net.client() && !world.isInvalidMap() && !state.isEditor() && state.rules.canGameOver){
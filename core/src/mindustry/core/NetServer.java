@@ -93,6 +93,10 @@ public class NetServer implements ApplicationListener{
         }
     };
 
+    /** Total size in bytes and amount of snapshots sent since the server started. Block snapshots are counted once, not per player. */
+    public long blockSnapshotBytes, stateSnapshotBytes, entitySnapshotBytes;
+    public long blockSnapshots, stateSnapshots, entitySnapshots;
+
     private boolean closing = false;
     private Interval timer = new Interval();
 
@@ -903,6 +907,8 @@ public class NetServer implements ApplicationListener{
 
             if(syncStream.size() > maxSnapshotSize){
                 dataStream.close();
+                blockSnapshotBytes += syncStream.size();
+                blockSnapshots ++;
                 Call.blockSnapshot(sent, syncStream.toByteArray());
                 sent = 0;
                 syncStream.reset();
@@ -911,6 +917,8 @@ public class NetServer implements ApplicationListener{
 
         if(sent > 0){
             dataStream.close();
+            blockSnapshotBytes += syncStream.size();
+            blockSnapshots ++;
             Call.blockSnapshot(sent, syncStream.toByteArray());
         }
     }
@@ -933,6 +941,9 @@ public class NetServer implements ApplicationListener{
 
         dataStream.close();
 
+        stateSnapshotBytes += syncStream.size();
+        stateSnapshots ++;
+
         //write basic state data.
         Call.stateSnapshot(player.con, state.wavetime, state.wave, state.enemies, state.serverPaused, state.gameOver,
         universe.seconds(), tps, GlobalConstants.rand.seed0, GlobalConstants.rand.seed1, syncStream.toByteArray());
@@ -951,6 +962,8 @@ public class NetServer implements ApplicationListener{
 
             if(syncStream.size() > maxSnapshotSize){
                 dataStream.close();
+                entitySnapshotBytes += syncStream.size();
+                entitySnapshots ++;
                 Call.entitySnapshot(player.con, (short)sent, syncStream.toByteArray());
                 sent = 0;
                 syncStream.reset();
@@ -959,6 +972,8 @@ public class NetServer implements ApplicationListener{
 
         if(sent > 0){
             dataStream.close();
+            entitySnapshotBytes += syncStream.size();
+            entitySnapshots ++;
 
             Call.entitySnapshot(player.con, (short)sent, syncStream.toByteArray());
         }
@@ -253,7 +253,6 @@ public class Renderer implements ApplicationListener{
 
         Draw.proj(camera);
 
-        blocks.checkChanges();
         blocks.floor.checkChanges();
         blocks.processBlocks();
 
@@ -318,6 +317,7 @@ public class Renderer implements ApplicationListener{
         blocks.drawBlocks();
 
         Groups.draw.draw(Drawc::draw);
+        hazards.draw();
 
         Draw.reset();
         Draw.flush();
@@ -0,0 +1,33 @@
+package mindustry.core;
+
+import mindustry.gen.*;
+import mindustry.world.blocks.power.*;
+
+/**
+ * Receives the time taken by parts of each update. Set {@link mindustry.Vars#profiler} to use it.
+ * Power graphs are updated by one of their buildings, so their time is also part of that building's update.
+ */
+public interface UpdateProfiler{
+    /** Names of the groups returned by {@link #group(Entityc)}. The first one is buildings. */
+    String[] groupNames = {"build", "unit", "bullet", "fire", "puddle", "weather", "player", "label", "other"};
+
+    /** Called after an entity in {@link Groups#all} updated. */
+    void entityUpdated(Entityc entity, long nanos);
+
+    /** Called after a power graph updated. */
+    void powerGraphUpdated(PowerGraph graph, long nanos);
+
+    /** @return index of the group in {@link #groupNames} this entity belongs to. */
+    static int group(Entityc entity){
+        return
+            entity instanceof Buildingc ? 0 :
+            entity instanceof Unitc ? 1 :
+            entity instanceof Bulletc ? 2 :
+            entity instanceof Firec ? 3 :
+            entity instanceof Puddlec ? 4 :
+            entity instanceof WeatherStatec ? 5 :
+            entity instanceof Playerc ? 6 :
+            entity instanceof WorldLabelc ? 7 :
+            8;
+    }
+}
@@ -34,6 +34,12 @@ public class World{
 
     private boolean generating, invalidMap;
     private ObjectMap<Map, Runnable> customMapLoaders = new ObjectMap<>();
+    /** Distances of the last darkness update. */
+    private byte[] darkBuffer = {};
+    /** Darkness outside the area of a generated sector, per tile of the map it was calculated for. */
+    private byte[] areaDarkness = {};
+    private @Nullable Sector areaSector;
+    private @Nullable Tiles areaTiles;
 
     public World(){
 
@@ -49,9 +55,7 @@ public class World{
     }
 
     public boolean solid(int x, int y){
-        Tile tile = tile(x, y);
-
-        return tile == null || tile.solid();
+        return tiles.solid(x, y);
     }
 
     public boolean passable(int x, int y){
@@ -408,77 +412,73 @@ public class World{
         }
     }
 
+    /** Calculates the static darkness of every wall, see {@link #updateDarkness(Tiles, int, int, int, int)}. */
     public void addDarkness(Tiles tiles){
-        byte[] dark = new byte[tiles.width * tiles.height];
-        byte[] writeBuffer = new byte[tiles.width * tiles.height];
-
-        byte darkIterations = darkRadius;
+        updateDarkness(tiles, 0, 0, tiles.width - 1, tiles.height - 1);
+    }
 
-        for(int i = 0; i < dark.length; i++){
-            Tile tile = tiles.geti(i);
-            if(tile.isDarkened()){
-                dark[i] = darkIterations;
-            }
-        }
+    /** Updates the static darkness of walls near a tile that started or stopped being darkened. */
+    public void updateDarkness(int x, int y){
+        //darkness only depends on the distance to the closest tile that is not darkened, and it is capped
+        int range = darkRadius + 2;
+        updateDarkness(tiles, x - range, y - range, x + range, y + range);
+    }
 
-        for(int i = 0; i < darkIterations; i++){
-            for(Tile tile : tiles){
-                int idx = tile.y * tiles.width + tile.x;
-                boolean min = false;
-                for(Point2 point : Geometry.d4){
-                    int newX = tile.x + point.x, newY = tile.y + point.y;
-                    int nidx = newY * tiles.width + newX;
-                    if(tiles.in(newX, newY) && dark[nidx] < dark[idx]){
-                        min = true;
-                        break;
-                    }
+    /**
+     * Sets the static darkness of the darkened walls in a rectangle, stored in their {@link Tile#data}.
+     * This is the distance to the closest tile that is not darkened minus one, up to {@link Vars#darkRadius} + 1.
+     * Distances are computed with a two-pass distance transform over the rectangle and the tiles around it that can affect it.
+     */
+    public void updateDarkness(Tiles tiles, int x1, int y1, int x2, int y2){
+        int cap = darkRadius + 2;
+        //any tile that is closer than the cap to the rectangle is within this area
+        int minX = Math.max(x1 - cap, 0), minY = Math.max(y1 - cap, 0), maxX = Math.min(x2 + cap, tiles.width - 1), maxY = Math.min(y2 + cap, tiles.height - 1);
+        if(minX > maxX || minY > maxY) return;
+
+        int w = maxX - minX + 1, h = maxY - minY + 1;
+        if(darkBuffer.length < w * h) darkBuffer = new byte[w * h];
+        byte[] dist = darkBuffer;
+
+        //first pass: closest from the left or from below
+        for(int y = 0; y < h; y++){
+            for(int x = 0; x < w; x++){
+                int idx = x + y * w;
+                int d = 0;
+                if(tiles.getn(x + minX, y + minY).isDarkened()){
+                    d = cap;
+                    if(x > 0) d = Math.min(d, dist[idx - 1] + 1);
+                    if(y > 0) d = Math.min(d, dist[idx - w] + 1);
                 }
-                writeBuffer[idx] = (byte)Math.max(0, dark[idx] - Mathf.num(min));
+                dist[idx] = (byte)d;
             }
-
-            System.arraycopy(writeBuffer, 0, dark, 0, writeBuffer.length);
         }
 
-        for(Tile tile : tiles){
-            int idx = tile.y * tiles.width + tile.x;
-
-            if(tile.isDarkened()){
-                tile.data = dark[idx];
+        //second pass: closest from the right or from above
+        for(int y = h - 1; y >= 0; y--){
+            for(int x = w - 1; x >= 0; x--){
+                int idx = x + y * w, d = dist[idx];
+                if(d == 0) continue;
+                if(x < w - 1) d = Math.min(d, dist[idx + 1] + 1);
+                if(y < h - 1) d = Math.min(d, dist[idx + w] + 1);
+                dist[idx] = (byte)d;
             }
+        }
 
-            if(dark[idx] == darkRadius){
-                boolean full = true;
-                for(Point2 p : Geometry.d4){
-                    int px = p.x + tile.x, py = p.y + tile.y;
-                    int nidx = py * tiles.width + px;
-                    if(tiles.in(px, py) && !(tile.isDarkened() && dark[nidx] == 4)){
-                        full = false;
-                        break;
-                    }
+        for(int y = Math.max(y1, 0); y <= Math.min(y2, tiles.height - 1); y++){
+            for(int x = Math.max(x1, 0); x <= Math.min(x2, tiles.width - 1); x++){
+                Tile tile = tiles.getn(x, y);
+                if(tile.isDarkened()){
+                    tile.setData((byte)(dist[(x - minX) + (y - minY) * w] - 1));
                 }
-
-                if(full) tile.data = darkRadius + 1;
             }
         }
     }
 
+    /** @return the static darkness of a wall, kept up to date by {@link #updateDarkness(int, int)}. */
     public byte getWallDarkness(Tile tile){
-        if(tile.isDarkened()){
-            int minDst = darkRadius + 1;
-            for(int cx = tile.x - darkRadius; cx <= tile.x + darkRadius; cx++){
-                for(int cy = tile.y - darkRadius; cy <= tile.y + darkRadius; cy++){
-                    if(tiles.in(cx, cy) && !rawTile(cx, cy).isDarkened()){
-                        minDst = Math.min(minDst, Math.abs(cx - tile.x) + Math.abs(cy - tile.y));
-                    }
-                }
-            }
-
-            return (byte)Math.max((minDst - 1), 0);
-        }
-        return 0;
+        return (byte)tile.staticDarkness();
     }
 
-    //TODO optimize; this is very slow and called too often!
     public float getDarkness(int x, int y){
         float dark = 0;
 
@@ -491,24 +491,24 @@ public class World{
         }
 
         if(state.hasSector() && state.getSector().preset == null){
-            int circleBlend = 14;
-            //quantized angle
-            float offset = state.getSector().rect.rotation + 90;
-            float angle = Angles.angle(x, y, tiles.width/2, tiles.height/2) + offset;
-            //polygon sides, depends on sector
-            int sides = state.getSector().tile.corners.length;
-            float step = 360f / sides;
-            //prev and next angles of poly
-            float prev = Mathf.round(angle, step);
-            float next = prev + step;
-            //raw line length to be translated
-            float length = state.getSector().getSize()/2f;
-            float rawDst = Intersector.distanceLinePoint(Tmp.v1.trns(prev, length), Tmp.v2.trns(next, length), Tmp.v3.set(x - tiles.width/2, y - tiles.height/2).rotate(offset)) / Mathf.sqrt3 - 1;
-
-            //noise
-            rawDst += Noise.noise(x, y, 11f, 7f) + Noise.noise(x, y, 22f, 15f);
-
-            int circleDst = (int)(rawDst - (length - circleBlend));
+            Sector sector = state.getSector();
+            int circleDst;
+
+            if(tiles.in(x, y)){
+                //the area of a sector never changes, so it is only calculated once per map
+                if(areaSector != sector || areaTiles != tiles){
+                    areaSector = sector;
+                    areaTiles = tiles;
+                    if(areaDarkness.length != tiles.width * tiles.height) areaDarkness = new byte[tiles.width * tiles.height];
+                    for(int i = 0; i < areaDarkness.length; i++){
+                        areaDarkness[i] = (byte)Math.min(areaDarkness(sector, i % tiles.width, i / tiles.width), Byte.MAX_VALUE);
+                    }
+                }
+                circleDst = areaDarkness[x + y * tiles.width];
+            }else{
+                circleDst = areaDarkness(sector, x, y);
+            }
+
             if(circleDst > 0){
                 dark = Math.max(circleDst, dark);
             }
@@ -522,6 +522,28 @@ public class World{
         return dark;
     }
 
+    /** @return how far a position is outside of the playable polygon of a generated sector, or 0 if it is inside. */
+    private int areaDarkness(Sector sector, int x, int y){
+        int circleBlend = 14;
+        //quantized angle
+        float offset = sector.rect.rotation + 90;
+        float angle = Angles.angle(x, y, tiles.width/2, tiles.height/2) + offset;
+        //polygon sides, depends on sector
+        int sides = sector.tile.corners.length;
+        float step = 360f / sides;
+        //prev and next angles of poly
+        float prev = Mathf.round(angle, step);
+        float next = prev + step;
+        //raw line length to be translated
+        float length = sector.getSize()/2f;
+        float rawDst = Intersector.distanceLinePoint(Tmp.v1.trns(prev, length), Tmp.v2.trns(next, length), Tmp.v3.set(x - tiles.width/2, y - tiles.height/2).rotate(offset)) / Mathf.sqrt3 - 1;
+
+        //noise
+        rawDst += Noise.noise(x, y, 11f, 7f) + Noise.noise(x, y, 22f, 15f);
+
+        return Math.max((int)(rawDst - (length - circleBlend)), 0);
+    }
+
     private class Context implements WorldContext{
 
         Context(){}
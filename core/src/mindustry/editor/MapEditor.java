@@ -196,7 +196,7 @@ public class MapEditor{
                 tile.setBlock(Blocks.cliff);
             }
 
-            tile.data = (byte)rotation;
+            tile.setData((byte)rotation);
         }
 
         for(Tile tile : world.tiles){
@@ -222,7 +222,7 @@ public class MapEditor{
                 tile.setBlock(Blocks.cliff);
             }
 
-            tile.data = (byte)rotation;
+            tile.setData((byte)rotation);
         }
     }
 
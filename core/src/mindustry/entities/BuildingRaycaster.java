@@ -0,0 +1,131 @@
+package mindustry.entities;
+
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.core.*;
+import mindustry.game.*;
+import mindustry.world.*;
+
+import java.util.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Casts lines over the building grid of {@link Tiles}, collecting every distinct building that is hit.
+ * Results are written into reusable buffers, so casting does not allocate.
+ */
+public class BuildingRaycaster{
+    /** Tile indices of the center tiles of hit buildings, in order along each ray. Resolve with {@link Tiles#geti(int)}. */
+    public final IntSeq hits = new IntSeq();
+    /** For batched casts, the offset of each ray's first hit in {@link #hits}. Has one more entry than there are rays. */
+    public final IntSeq offsets = new IntSeq();
+
+    private final Vec2 seg1 = new Vec2(), seg2 = new Vec2();
+    private final Rect rect = new Rect();
+    private @Nullable Tiles tiles;
+    /** Last cast that hit each building center, for deduplication of multiblocks. */
+    private int[] marks = {};
+    private int castId;
+
+    /**
+     * Casts a single line in world coordinates.
+     * @param ignore buildings of this team are skipped; may be null.
+     * @param neighbors whether to also check the four tiles next to each tile on the line, as lasers do.
+     * @param large if true, neighbors are always hit; otherwise, only if the line intersects their bounds.
+     * @param maxHits the cast stops after this many buildings are hit. 0 for no limit.
+     * @return the amount of buildings hit.
+     */
+    public int cast(float x0, float y0, float x1, float y1, @Nullable Team ignore, boolean neighbors, boolean large, int maxHits){
+        hits.clear();
+        offsets.clear();
+        begin();
+        walk(x0, y0, x1, y1, ignore == null ? -1 : ignore.id, neighbors, large, maxHits);
+        return hits.size;
+    }
+
+    /**
+     * Casts several lines at once. Each line is stored as 4 consecutive floats: x0, y0, x1, y1.
+     * Hits of line i are stored in {@link #hits} from {@code offsets.get(i)} to {@code offsets.get(i + 1)}.
+     * @return the total amount of buildings hit.
+     * @see #cast(float, float, float, float, Team, boolean, boolean, int)
+     */
+    public int castAll(float[] lines, int count, @Nullable Team ignore, boolean neighbors, boolean large, int maxHits){
+        hits.clear();
+        offsets.clear();
+
+        for(int i = 0; i < count; i++){
+            begin();
+            offsets.add(hits.size);
+            walk(lines[i * 4], lines[i * 4 + 1], lines[i * 4 + 2], lines[i * 4 + 3], ignore == null ? -1 : ignore.id, neighbors, large, maxHits);
+        }
+
+        offsets.add(hits.size);
+        return hits.size;
+    }
+
+    private void begin(){
+        if(tiles != world.tiles){
+            tiles = world.tiles;
+            marks = new int[tiles.width * tiles.height];
+            castId = 0;
+        }
+
+        if(++castId == Integer.MAX_VALUE){
+            Arrays.fill(marks, 0);
+            castId = 1;
+        }
+    }
+
+    //same line traversal as World#raycastEach
+    private void walk(float wx0, float wy0, float wx1, float wy1, int ignore, boolean neighbors, boolean large, int maxHits){
+        int start = hits.size;
+        seg1.set(wx0, wy0);
+        seg2.set(wx1, wy1);
+
+        int x1 = World.toTile(wx1), y1 = World.toTile(wy1);
+        int x = World.toTile(wx0), dx = Math.abs(x1 - x), sx = x < x1 ? 1 : -1;
+        int y = World.toTile(wy0), dy = Math.abs(y1 - y), sy = y < y1 ? 1 : -1;
+        int e2, err = dx - dy;
+
+        while(true){
+            if(add(x, y, ignore) && maxHits > 0 && hits.size - start >= maxHits) return;
+
+            if(neighbors){
+                for(Point2 p : Geometry.d4){
+                    int nx = x + p.x, ny = y + p.y;
+                    if(tiles.in(nx, ny) && (large || Intersector.intersectSegmentRectangle(seg1, seg2, rect.setSize(tilesize).setCenter(nx * tilesize, ny * tilesize)))){
+                        if(add(nx, ny, ignore) && maxHits > 0 && hits.size - start >= maxHits) return;
+                    }
+                }
+            }
+
+            if(x == x1 && y == y1) return;
+
+            e2 = 2 * err;
+            if(e2 > -dy){
+                err -= dy;
+                x += sx;
+            }
+
+            if(e2 < dx){
+                err += dx;
+                y += sy;
+            }
+        }
+    }
+
+    /** @return whether a new building was added to the hits. */
+    private boolean add(int x, int y, int ignore){
+        if(!tiles.in(x, y)) return false;
+
+        int center = tiles.buildCenter(y * tiles.width + x);
+        if(center == -1 || marks[center] == castId) return false;
+
+        marks[center] = castId;
+        if(tiles.teamId(center) == ignore) return false;
+
+        hits.add(center);
+        return true;
+    }
+}
@@ -0,0 +1,78 @@
+package mindustry.entities;
+
+import arc.*;
+import arc.math.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.game.EventType.*;
+import mindustry.gen.*;
+
+/**
+ * Wakes up sleeping buildings after a delay.
+ * Wakeups are stored in a timer wheel with one slot per tick; scheduling and waking are O(1).
+ * A wakeup is only a hint: waking a building early is always safe, as it will go back to sleep if there's nothing to do.
+ */
+public class BuildingScheduler{
+    /** Amount of slots in the wheel. Must be a power of two. Wakeups further away stay in their slot for multiple rotations. */
+    private static final int slots = 256, mask = slots - 1;
+
+    private final Seq<Building>[] builds = new Seq[slots];
+    private final IntSeq[] targets = new IntSeq[slots];
+    /** Elapsed ticks, and the last whole tick that was processed. */
+    private float time;
+    private int processed;
+
+    public BuildingScheduler(){
+        for(int i = 0; i < slots; i++){
+            builds[i] = new Seq<>(false, 4, Building.class);
+            targets[i] = new IntSeq(false, 4);
+        }
+
+        Events.on(ResetEvent.class, e -> clear());
+        Events.on(WorldLoadEvent.class, e -> clear());
+    }
+
+    /** Wakes up a building after the specified amount of ticks. This does not put the building to sleep. */
+    public void schedule(Building build, float ticks){
+        int target = processed + Math.max(Mathf.ceilPositive(ticks), 1);
+        int slot = target & mask;
+        builds[slot].add(build);
+        targets[slot].add(target);
+    }
+
+    /** Advances the wheel by {@link Time#delta} and wakes up all buildings that are due. */
+    public void update(){
+        time += Time.delta;
+
+        while(processed < (int)time){
+            processed++;
+
+            int slot = processed & mask;
+            Seq<Building> slotBuilds = builds[slot];
+            IntSeq slotTargets = targets[slot];
+
+            for(int i = 0; i < slotBuilds.size; i++){
+                if(slotTargets.items[i] <= processed){
+                    Building build = slotBuilds.items[i];
+                    if(build.isAdded()){
+                        build.noSleep();
+                    }
+
+                    //unordered removal: the last entry is moved here, so check this index again
+                    slotBuilds.remove(i);
+                    slotTargets.removeIndex(i);
+                    i--;
+                }
+            }
+        }
+    }
+
+    public void clear(){
+        for(int i = 0; i < slots; i++){
+            builds[i].clear();
+            targets[i].clear();
+        }
+        time = 0f;
+        processed = 0;
+    }
+}
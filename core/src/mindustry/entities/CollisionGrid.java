@@ -0,0 +1,137 @@
+package mindustry.entities;
+
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import mindustry.game.Teams.*;
+import mindustry.gen.*;
+
+import java.util.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * A uniform grid of units, used as the broad phase for entity collisions.
+ * Rebuilt once per collision pass; cell contents are stored in flat arrays, sorted by cell.
+ */
+public class CollisionGrid{
+    /** Size of a grid cell in world units. */
+    public static final float cellSize = 32f;
+
+    /** All units in the grid. Query results are indices into this array. */
+    public final Seq<Unit> units = new Seq<>(false, 64, Unit.class);
+
+    private final Rect bounds = new Rect(), rect = new Rect();
+    private int width, height;
+    /** Offset of each cell's first entry in {@link #items}. Has one more entry than there are cells. */
+    private int[] cellStart = {0}, cellFill = {};
+    /** Unit indices, grouped by cell. */
+    private int[] items = {};
+    /** Packed min/max cell coordinates of each unit. */
+    private int[] ranges = {};
+    /** Last query that returned each unit, for deduplication. */
+    private int[] marks = {};
+    private int queryId;
+
+    /** Rebuilds the grid with the units of the specified teams. */
+    public void build(Seq<TeamData> teams){
+        units.clear();
+        for(int i = 0; i < teams.size; i++){
+            units.addAll(teams.items[i].units);
+        }
+
+        world.getQuadBounds(bounds);
+        width = Math.max(Mathf.ceil(bounds.width / cellSize), 1);
+        height = Math.max(Mathf.ceil(bounds.height / cellSize), 1);
+
+        int cells = width * height, size = units.size;
+        if(cellStart.length < cells + 1){
+            cellStart = new int[cells + 1];
+            cellFill = new int[cells];
+        }else{
+            Arrays.fill(cellStart, 0, cells + 1, 0);
+        }
+
+        if(ranges.length < size * 4){
+            ranges = new int[size * 4];
+            marks = new int[size];
+        }else{
+            Arrays.fill(marks, 0, size, 0);
+        }
+        queryId = 0;
+
+        //count entries per cell
+        for(int i = 0; i < size; i++){
+            units.items[i].hitbox(rect);
+            int offset = i * 4;
+            ranges[offset] = cellX(rect.x);
+            ranges[offset + 1] = cellY(rect.y);
+            ranges[offset + 2] = cellX(rect.x + rect.width);
+            ranges[offset + 3] = cellY(rect.y + rect.height);
+
+            for(int cy = ranges[offset + 1]; cy <= ranges[offset + 3]; cy++){
+                for(int cx = ranges[offset]; cx <= ranges[offset + 2]; cx++){
+                    cellStart[cy * width + cx + 1]++;
+                }
+            }
+        }
+
+        for(int c = 0; c < cells; c++){
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        if(items.length < cellStart[cells]){
+            items = new int[cellStart[cells]];
+        }
+
+        System.arraycopy(cellStart, 0, cellFill, 0, cells);
+
+        //units are inserted in order, so each cell's entries are sorted by index
+        for(int i = 0; i < size; i++){
+            int offset = i * 4;
+            for(int cy = ranges[offset + 1]; cy <= ranges[offset + 3]; cy++){
+                for(int cx = ranges[offset]; cx <= ranges[offset + 2]; cx++){
+                    items[cellFill[cy * width + cx]++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the indices of all units in cells overlapping a rectangle, without duplicates.
+     * Results are sorted by index, so that collisions are processed in a deterministic order.
+     */
+    public void query(Rect rect, IntSeq out){
+        out.clear();
+        if(units.isEmpty()) return;
+
+        int id = ++queryId;
+        int x1 = cellX(rect.x), y1 = cellY(rect.y), x2 = cellX(rect.x + rect.width), y2 = cellY(rect.y + rect.height);
+
+        for(int cy = y1; cy <= y2; cy++){
+            for(int cx = x1; cx <= x2; cx++){
+                int cell = cy * width + cx;
+                for(int i = cellStart[cell], end = cellStart[cell + 1]; i < end; i++){
+                    int unit = items[i];
+                    if(marks[unit] != id){
+                        marks[unit] = id;
+                        out.add(unit);
+                    }
+                }
+            }
+        }
+
+        //results from a single cell are already sorted
+        if(x1 != x2 || y1 != y2){
+            out.sort();
+        }
+    }
+
+    private int cellX(float x){
+        return Mathf.clamp((int)((x - bounds.x) / cellSize), 0, width - 1);
+    }
+
+    private int cellY(float y){
+        return Mathf.clamp((int)((y - bounds.y) / cellSize), 0, height - 1);
+    }
+}
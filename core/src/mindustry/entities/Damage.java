@@ -6,6 +6,7 @@ import arc.math.*;
 import arc.math.geom.*;
 import arc.struct.*;
 import arc.util.*;
+import arc.util.pooling.*;
 import mindustry.content.*;
 import mindustry.core.*;
 import mindustry.game.EventType.*;
@@ -22,9 +23,9 @@ public class Damage{
     private static Tile furthest;
     private static Rect rect = new Rect();
     private static Rect hitrect = new Rect();
-    private static Vec2 tr = new Vec2(), seg1 = new Vec2(), seg2 = new Vec2();
+    private static Vec2 tr = new Vec2();
     private static Seq<Unit> units = new Seq<>();
-    private static IntSet collidedBlocks = new IntSet();
+    private static BuildingRaycaster raycaster = new BuildingRaycaster();
     private static Building tmpBuilding;
     private static Unit tmpUnit;
     private static IntFloatMap damages = new IntFloatMap();
@@ -143,42 +144,35 @@ public class Damage{
     public static void collideLine(Bullet hitter, Team team, Effect effect, float x, float y, float angle, float length, boolean large, boolean laser){
         if(laser) length = findLaserLength(hitter, length);
 
-        collidedBlocks.clear();
         tr.trnsExact(angle, length);
 
-        Intc2 collider = (cx, cy) -> {
-            Building tile = world.build(cx, cy);
-            boolean collide = tile != null && collidedBlocks.add(tile.pos());
+        if(hitter.type.collidesGround && hitter.damage > 0){
+            raycaster.cast(x, y, x + tr.x, y + tr.y, null, true, large, 0);
 
-            if(hitter.damage > 0){
-                float health = !collide ? 0 : tile.health;
+            //hits can create bullets that collide lines of their own, which reuse the raycaster
+            IntSeq hits = Pools.obtain(IntSeq.class, IntSeq::new);
+            hits.clear();
+            hits.addAll(raycaster.hits);
 
-                if(collide && tile.team != team && tile.collide(hitter)){
+            for(int i = 0; i < hits.size; i++){
+                Building tile = world.tiles.geti(hits.items[i]).build;
+                //may have been destroyed by a previous hit; piercing bullets lose damage with every hit
+                if(tile == null || hitter.damage <= 0) continue;
+
+                float health = tile.health;
+
+                if(tile.team != team && tile.collide(hitter)){
                     tile.collision(hitter);
                     hitter.type.hit(hitter, tile.x, tile.y);
                 }
 
                 //try to heal the tile
-                if(collide && hitter.type.testCollision(hitter, tile)){
+                if(hitter.type.testCollision(hitter, tile)){
                     hitter.type.hitTile(hitter, tile, health, false);
                 }
             }
-        };
-
-        if(hitter.type.collidesGround){
-            seg1.set(x, y);
-            seg2.set(seg1).add(tr);
-            world.raycastEachWorld(x, y, seg2.x, seg2.y, (cx, cy) -> {
-                collider.get(cx, cy);
 
-                for(Point2 p : Geometry.d4){
-                    Tile other = world.tile(p.x + cx, p.y + cy);
-                    if(other != null && (large || Intersector.intersectSegmentRectangle(seg1, seg2, other.getBounds(Tmp.r1)))){
-                        collider.get(cx + p.x, cy + p.y);
-                    }
-                }
-                return false;
-            });
+            Pools.free(hits);
         }
 
         rect.setPosition(x, y).setSize(tr.x, tr.y);
@@ -234,15 +228,8 @@ public class Damage{
         
         tmpBuilding = null;
 
-        if(hitter.type.collidesGround){
-            world.raycastEachWorld(x, y, x + tr.x, y + tr.y, (cx, cy) -> {
-                Building tile = world.build(cx, cy);
-                if(tile != null && tile.team != hitter.team){
-                    tmpBuilding = tile;
-                    return true;
-                }
-                return false;
-            });
+        if(hitter.type.collidesGround && raycaster.cast(x, y, x + tr.x, y + tr.y, hitter.team, false, false, 1) > 0){
+            tmpBuilding = world.tiles.geti(raycaster.hits.items[0]).build;
         }
 
         rect.setPosition(x, y).setSize(tr.x, tr.y);
@@ -4,9 +4,9 @@ import arc.func.*;
 import arc.math.*;
 import arc.math.geom.*;
 import arc.struct.*;
-import mindustry.content.*;
+import mindustry.game.*;
+import mindustry.game.Teams.*;
 import mindustry.gen.*;
-import mindustry.world.*;
 
 import static mindustry.Vars.*;
 
@@ -26,7 +26,14 @@ public class EntityCollisions{
     //entity collisions
     private Seq<Hitboxc> arrOut = new Seq<>(Hitboxc.class);
     private Cons<Hitboxc> hitCons = this::updateCollision;
-    private Cons<QuadTree> treeCons = tree -> tree.intersect(r2, arrOut);
+    private Cons<QuadTree> treeCons = this::addCollisionTree;
+
+    //broad phase
+    private CollisionGrid grid = new CollisionGrid();
+    private IntSeq candidates = new IntSeq();
+    /** Marks teams that the current entity collides with; compared against {@link #maskId}. */
+    private int[] teamMask = new int[Team.all.length];
+    private int maskId;
 
     public void moveCheck(Hitboxc entity, float deltax, float deltay, SolidPred solidCheck){
         if(!solidCheck.solid(entity.tileX(), entity.tileY())){
@@ -41,29 +48,35 @@ public class EntityCollisions{
     public void move(Hitboxc entity, float deltax, float deltay, SolidPred solidCheck){
         if(Math.abs(deltax) < 0.0001f & Math.abs(deltay) < 0.0001f) return;
 
-        boolean movedx = false;
-
-        while(Math.abs(deltax) > 0 || !movedx){
-            movedx = true;
-            moveDelta(entity, Math.min(Math.abs(deltax), seg) * Mathf.sign(deltax), 0, true, solidCheck);
-
-            if(Math.abs(deltax) >= seg){
-                deltax -= seg * Mathf.sign(deltax);
-            }else{
-                deltax = 0f;
-            }
-        }
-
-        boolean movedy = false;
-
-        while(Math.abs(deltay) > 0 || !movedy){
-            movedy = true;
-            moveDelta(entity, 0, Math.min(Math.abs(deltay), seg) * Mathf.sign(deltay), false, solidCheck);
+        moveAxis(entity, deltax, true, solidCheck);
+        moveAxis(entity, deltay, false, solidCheck);
+    }
 
-            if(Math.abs(deltay) >= seg){
-                deltay -= seg * Mathf.sign(deltay);
+    /**
+     * Moves an entity along one axis.
+     * Tile hitboxes are never bigger than a tile, so the set of tiles they overlap can only change when the leading edge
+     * crosses a tile border. Movement is therefore split at border crossings, and only the crossing itself is done in 1-unit segments.
+     */
+    private void moveAxis(Hitboxc entity, float delta, boolean x, SolidPred solidCheck){
+        boolean moved = false;
+        float sign = Mathf.sign(delta);
+
+        while(Math.abs(delta) > 0 || !moved){
+            moved = true;
+
+            entity.hitboxTile(r1);
+            float edge = x ? (delta > 0 ? r1.x + r1.width : r1.x) : (delta > 0 ? r1.y + r1.height : r1.y);
+            //tiles are centered on their position, so borders lie at k * tilesize - tilesize/2
+            float offset = edge + tilesize / 2f;
+            float border = delta > 0 ? Mathf.ceil(offset / tilesize) * tilesize - offset : offset - Mathf.floor(offset / tilesize) * tilesize;
+            float step = Math.min(Math.abs(delta), Math.max(border, seg));
+
+            moveDelta(entity, x ? step * sign : 0, x ? 0 : step * sign, x, solidCheck);
+
+            if(Math.abs(delta) > step){
+                delta -= step * sign;
             }else{
-                deltay = 0f;
+                delta = 0f;
             }
         }
     }
@@ -129,18 +142,15 @@ public class EntityCollisions{
     }
 
     public static boolean legsSolid(int x, int y){
-        Tile tile = world.tile(x, y);
-        return tile == null || tile.staticDarkness() >= 2 || (tile.floor().solid && tile.block() == Blocks.air);
+        return world.tiles.legSolid(x, y);
     }
 
     public static boolean waterSolid(int x, int y){
-        Tile tile = world.tile(x, y);
-        return tile == null || tile.solid() || !tile.floor().isLiquid;
+        return world.tiles.waterSolid(x, y);
     }
 
     public static boolean solid(int x, int y){
-        Tile tile = world.tile(x, y);
-        return tile == null || tile.solid();
+        return world.tiles.solid(x, y);
     }
 
     private void checkCollide(Hitboxc a, Hitboxc b){
@@ -216,9 +226,26 @@ public class EntityCollisions{
 
     @SuppressWarnings("unchecked")
     public <T extends Hitboxc> void collide(EntityGroup<T> groupa){
+        if(groupa.isEmpty()) return;
+
+        //sort all units into the grid once, instead of querying each team's tree for every entity
+        grid.build(state.teams.present);
         groupa.each((Cons<T>)hitCons);
     }
 
+    /** Unit trees of teams are resolved through the broad phase grid; any other tree is queried directly. */
+    private void addCollisionTree(QuadTree tree){
+        Seq<TeamData> data = state.teams.present;
+        for(int i = 0; i < data.size; i++){
+            if(data.items[i].tree == tree){
+                teamMask[data.items[i].team.id] = maskId;
+                return;
+            }
+        }
+
+        tree.intersect(r2, arrOut);
+    }
+
     private void updateCollision(Hitboxc solid){
         solid.hitbox(r1);
         r1.x += (solid.lastX() - solid.getX());
@@ -228,10 +255,19 @@ public class EntityCollisions{
         r2.merge(r1);
 
         arrOut.clear();
+        maskId++;
 
         //get all targets based on what entity wants to collide with
         solid.getCollisions(treeCons);
 
+        grid.query(r2, candidates);
+        for(int i = 0; i < candidates.size; i++){
+            Unit unit = grid.units.items[candidates.items[i]];
+            if(teamMask[unit.team.id] == maskId){
+                arrOut.add(unit);
+            }
+        }
+
         var items = arrOut.items;
         int size = arrOut.size;
 
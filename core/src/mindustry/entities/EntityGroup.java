@@ -55,11 +55,25 @@ public class EntityGroup<T extends Entityc> implements Iterable<T>{
     }
 
     public void update(){
+        if(profiler != null){
+            updateProfiled();
+            return;
+        }
+
         for(index = 0; index < array.size; index++){
             array.items[index].update();
         }
     }
 
+    private void updateProfiled(){
+        for(index = 0; index < array.size; index++){
+            T entity = array.items[index];
+            long start = Time.nanos();
+            entity.update();
+            profiler.entityUpdated(entity, Time.timeSinceNanos(start));
+        }
+    }
+
     public Seq<T> copy(Seq<T> arr){
         arr.addAll(array);
         return arr;
@@ -19,6 +19,11 @@ public class Fires{
     public static void create(Tile tile){
         if(net.client() || tile == null || !state.rules.fire) return; //not clientside.
 
+        if(hazards.enabled()){
+            hazards.createFire(tile);
+            return;
+        }
+
         Fire fire = map.get(tile.pos());
 
         if(fire == null){
@@ -39,6 +44,8 @@ public class Fires{
     }
 
     public static boolean has(int x, int y){
+        if(hazards.hasFire(x, y)) return true;
+
         if(!Structs.inBounds(x, y, world.width(), world.height()) || !map.containsKey(Point2.pack(x, y))){
             return false;
         }
@@ -50,6 +57,10 @@ public class Fires{
      * Attempts to extinguish a fire by shortening its life. If there is no fire here, does nothing.
      */
     public static void extinguish(Tile tile, float intensity){
+        if(tile != null && hazards.enabled()){
+            hazards.extinguish(tile, intensity);
+        }
+
         if(tile != null && map.containsKey(tile.pos())){
             Fire fire = map.get(tile.pos());
             fire.time(fire.time + intensity * Time.delta);
@@ -0,0 +1,640 @@
+package mindustry.entities;
+
+import arc.*;
+import arc.func.*;
+import arc.graphics.*;
+import arc.graphics.g2d.*;
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import arc.util.io.*;
+import mindustry.annotations.Annotations.*;
+import mindustry.content.*;
+import mindustry.core.*;
+import mindustry.game.EventType.*;
+import mindustry.game.*;
+import mindustry.gen.*;
+import mindustry.graphics.*;
+import mindustry.net.*;
+import mindustry.type.*;
+import mindustry.world.*;
+import mindustry.world.meta.*;
+
+import java.io.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Fires and puddles stored as per-tile arrays, used instead of {@link Fire} and {@link Puddle} entities when
+ * {@link Rules#hazardField} is enabled. Only tiles that have a fire or puddle are in the active list and get updated;
+ * drawing only visits tiles inside the camera's view.
+ * <p>
+ * The server is the only one simulating the field. Clients receive changed chunks of tiles, run-length encoded,
+ * instead of one snapshot per entity.
+ */
+public class HazardField{
+    /** Size of a synced chunk, in tiles. */
+    static final int chunkSize = 16;
+    static final int maxSnapshotSize = 800;
+    static final float syncInterval = 10f;
+
+    //same as the entities
+    static final float fireLifetime = 1000f, spreadDelay = 22f, fireballDelay = 40f, damageDelay = 40f, tileDamage = 1.8f, unitDamage = 3f;
+    static final int frames = 40, duration = 90;
+    static final float ticksPerFrame = (float)duration / frames;
+
+    private int width, height;
+    /** Liquid id of each puddle plus one; 0 if there is no puddle. */
+    private short[] liquid = {};
+    private float[] amount = {}, accepting = {}, effectTimer = {}, lastRipple = {};
+    /** Fire time and lifetime of each tile; a lifetime of 0 means there is no fire. */
+    private float[] time = {}, lifetime = {}, flammability = {}, damageTimer = {}, spreadTimer = {}, fireballTimer = {};
+
+    /** Tiles with a fire or puddle, in the order they started. */
+    private final IntSeq active = new IntSeq();
+    /** Whether each tile is in {@link #active}. */
+    private boolean[] listed = {};
+    private int fires;
+
+    private final Bits dirty = new Bits();
+    private float syncTimer;
+    private final ReusableByteOutStream syncStream = new ReusableByteOutStream();
+    private final DataOutputStream dataStream = new DataOutputStream(syncStream);
+    private final ReusableByteInStream byteStream = new ReusableByteInStream();
+    private final DataInputStream readStream = new DataInputStream(byteStream);
+
+    private final TextureRegion[] regions = new TextureRegion[frames];
+    private final Rect rect = new Rect(), rect2 = new Rect(), view = new Rect();
+    private final Vec2 soundPos = new Vec2();
+    private @Nullable Liquid paramLiquid;
+    private float drawX, drawY, drawSize, drawMag;
+    private int seeds;
+    private final Cons<Unit> unitCons = unit -> {
+        if(unit.isGrounded() && !unit.hovering){
+            unit.hitbox(rect2);
+            if(rect.overlaps(rect2)){
+                unit.apply(paramLiquid.effect, 60 * 2);
+
+                if(unit.vel.len2() > 0.1f * 0.1f){
+                    Fx.ripple.at(unit.x, unit.y, unit.type.rippleScale, paramLiquid.color);
+                }
+            }
+        }
+    };
+    private final Floatc2 drawBlob = (ex, ey) -> {
+        Fill.circle(drawX + ex + Mathf.sin(Time.time + seeds * 532, 25f, drawMag), drawY + ey + Mathf.sin(Time.time + seeds * 53, 25f, drawMag), drawSize * 5f);
+        seeds++;
+    };
+
+    public HazardField(){
+        Events.on(ResetEvent.class, e -> clear());
+        Events.on(WorldLoadEvent.class, e -> clear());
+        Events.on(PlayerJoin.class, e -> {
+            //new players get every chunk with something in it, after everyone got the pending changes
+            if(net.server() && enabled() && active.size > 0 && e.player.con != null){
+                writeChunks(null);
+                for(int i = 0; i < active.size; i++){
+                    dirty.set(chunk(active.items[i]));
+                }
+                writeChunks(e.player.con);
+            }
+        });
+    }
+
+    /** @return whether fires and puddles are simulated by the field instead of entities. */
+    public boolean enabled(){
+        return state.rules.hazardField;
+    }
+
+    /** @return the amount of tiles that are on fire. */
+    public int fires(){
+        return fires;
+    }
+
+    /** @return the amount of tiles with a fire or puddle. */
+    public int activeSize(){
+        return active.size;
+    }
+
+    public boolean hasFire(int x, int y){
+        if(x < 0 || y < 0 || x >= width || y >= height) return false;
+        int pos = y * width + x;
+        return lifetime[pos] > 0f && time[pos] < lifetime[pos];
+    }
+
+    /** @return the liquid of the puddle on a tile, or null if there is none. */
+    public @Nullable Liquid liquid(Tile tile){
+        if(tile.x >= width || tile.y >= height) return null;
+        int pos = tile.y * width + tile.x;
+        return liquid[pos] == 0 ? null : content.liquid(liquid[pos] - 1);
+    }
+
+    /** @return the amount of liquid in the puddle on a tile. */
+    public float amount(Tile tile){
+        if(tile.x >= width || tile.y >= height) return 0f;
+        return amount[tile.y * width + tile.x];
+    }
+
+    /** Starts a fire on a tile, as {@link Fires#create(Tile)} does. */
+    public void createFire(Tile tile){
+        ensure();
+        int pos = tile.array();
+
+        if(lifetime[pos] <= 0f){
+            fires ++;
+            flammability[pos] = tile.getFlammability();
+            damageTimer[pos] = Mathf.random(damageDelay);
+            spreadTimer[pos] = Mathf.random(spreadDelay);
+            fireballTimer[pos] = Mathf.random(fireballDelay);
+            changed(pos);
+            activate(pos);
+        }
+
+        lifetime[pos] = fireLifetime;
+        time[pos] = 0f;
+    }
+
+    /** Shortens the life of a fire, as {@link Fires#extinguish(Tile, float)} does. */
+    public void extinguish(Tile tile, float intensity){
+        if(tile.x >= width || tile.y >= height) return;
+        int pos = tile.array();
+        if(lifetime[pos] <= 0f) return;
+
+        Fx.steam.at(tile.worldx(), tile.worldy());
+
+        //only the server changes the field; clients would disagree with its next snapshot
+        if(net.client()) return;
+
+        time[pos] += intensity * Time.delta;
+        if(time[pos] >= lifetime[pos]){
+            Events.fire(Trigger.fireExtinguish);
+        }
+    }
+
+    /** Deposits liquid on a tile, as {@link Puddles#deposit(Tile, Tile, Liquid, float, boolean)} does. */
+    public void deposit(Tile tile, Tile source, Liquid liquid, float amount, boolean initial){
+        //clients only show what the server sends
+        if(net.client()) return;
+        ensure();
+
+        int pos = tile.array();
+        float x = (tile.worldx() + source.worldx()) / 2f, y = (tile.worldy() + source.worldy()) / 2f;
+
+        if(tile.floor().isLiquid && !Puddles.canStayOn(liquid, tile.floor().liquidDrop)){
+            Puddles.reactPuddle(tile.floor().liquidDrop, liquid, amount, tile, x, y);
+
+            if(initial && this.liquid[pos] != 0 && lastRipple[pos] <= Time.time - 40f){
+                Fx.ripple.at(x, y, 1f, tile.floor().liquidDrop.color);
+                lastRipple[pos] = Time.time;
+            }
+            return;
+        }
+
+        if(tile.floor().solid) return;
+
+        if(this.liquid[pos] == 0){
+            this.liquid[pos] = (short)(liquid.id + 1);
+            this.amount[pos] = amount;
+            accepting[pos] = 0f;
+            effectTimer[pos] = 0f;
+            lastRipple[pos] = Time.time + Mathf.random(40f);
+            changed(pos);
+            activate(pos);
+        }else if(this.liquid[pos] == liquid.id + 1){
+            accepting[pos] = Math.max(amount, accepting[pos]);
+
+            if(initial && lastRipple[pos] <= Time.time - 40f && this.amount[pos] >= Puddles.maxLiquid / 2f){
+                Fx.ripple.at(x, y, 1f, liquid.color);
+                lastRipple[pos] = Time.time;
+            }
+        }else{
+            this.amount[pos] += Puddles.reactPuddle(content.liquid(this.liquid[pos] - 1), liquid, amount, tile, x, y);
+        }
+    }
+
+    public void update(){
+        if(!enabled()){
+            if(active.size > 0) clear();
+            return;
+        }
+
+        if(!net.client()){
+            //tiles that start during this update are updated from the next one on
+            for(int i = 0, size = active.size; i < size; i++){
+                int pos = active.items[i];
+                if(liquid[pos] != 0) updatePuddle(pos);
+                if(lifetime[pos] > 0f) updateFire(pos);
+            }
+        }
+
+        //remove tiles that have nothing left, keeping the order of the rest
+        int kept = 0;
+        for(int i = 0; i < active.size; i++){
+            int pos = active.items[i];
+            if(liquid[pos] != 0 || lifetime[pos] > 0f){
+                active.items[kept ++] = pos;
+            }else{
+                listed[pos] = false;
+            }
+        }
+        active.size = kept;
+
+        if(net.server() && (syncTimer += Time.delta) >= syncInterval){
+            syncTimer = 0f;
+            writeChunks(null);
+        }
+    }
+
+    private void updatePuddle(int pos){
+        Tile tile = world.tiles.geti(pos);
+        Liquid liquid = content.liquid(this.liquid[pos] - 1);
+        float maxLiquid = Puddles.maxLiquid;
+        float previous = amount[pos], accepted = accepting[pos];
+        float amount = previous - Time.delta * (1f - liquid.viscosity) / (5f + (accepted > 0 ? 3f : 0f)) + accepted;
+        accepting[pos] = 0f;
+
+        if(amount >= maxLiquid / 1.5f){
+            float deposited = Math.min((amount - maxLiquid / 1.5f) / 4f, 0.3f * Time.delta);
+            int targets = 0;
+            for(Point2 point : Geometry.d4){
+                Tile other = world.tile(tile.x + point.x, tile.y + point.y);
+                if(other != null && other.block() == Blocks.air){
+                    targets ++;
+                    deposit(other, tile, liquid, deposited, false);
+                }
+            }
+            amount -= deposited * targets;
+        }
+
+        amount = Mathf.clamp(amount, 0, maxLiquid);
+        this.amount[pos] = amount;
+
+        if(amount <= 0f){
+            this.liquid[pos] = 0;
+            changed(pos);
+            return;
+        }
+
+        if(quantize(previous) != quantize(amount)){
+            changed(pos);
+        }
+
+        if(amount >= maxLiquid / 2f && effectTimer[pos] <= 0f){
+            paramLiquid = liquid;
+            Units.nearby(rect.setSize(Mathf.clamp(amount / (maxLiquid / 1.5f)) * 10f).setCenter(tile.worldx(), tile.worldy()), unitCons);
+
+            if(liquid.temperature > 0.7f && tile.build != null && Mathf.chance(0.5)){
+                Fires.create(tile);
+            }
+
+            effectTimer[pos] = 40f;
+        }
+
+        effectTimer[pos] -= Time.delta;
+    }
+
+    private void updateFire(int pos){
+        Tile tile = world.tiles.geti(pos);
+        float x = tile.worldx(), y = tile.worldy();
+
+        //faster updates -> disappears more quickly
+        float speedMultiplier = 1f + Math.max(state.envAttrs.get(Attribute.water) * 10f, 0);
+        time[pos] = Mathf.clamp(time[pos] + Time.delta * speedMultiplier, 0, lifetime[pos]);
+
+        if(time[pos] >= lifetime[pos] || Float.isNaN(lifetime[pos])){
+            Fx.fireRemove.at(x, y, Mathf.randomSeed(pos, 0, frames - 1));
+            lifetime[pos] = 0f;
+            fires --;
+            changed(pos);
+            return;
+        }
+
+        Building entity = tile.build;
+        boolean damage = entity != null;
+        float flammability = this.flammability[pos] + (liquid[pos] != 0 ? content.liquid(liquid[pos] - 1).flammability * amount[pos] / 3f : 0f);
+
+        if(!damage && flammability <= 0){
+            time[pos] += Time.delta * 8;
+        }
+
+        if(damage){
+            lifetime[pos] += Mathf.clamp(flammability / 8f, 0f, 0.6f) * Time.delta;
+        }
+
+        if(flammability > 1f && (spreadTimer[pos] += Time.delta * Mathf.clamp(flammability / 5f, 0.3f, 2f)) >= spreadDelay){
+            spreadTimer[pos] = 0f;
+            Point2 p = Geometry.d4[Mathf.random(3)];
+            Fires.create(world.tile(tile.x + p.x, tile.y + p.y));
+        }
+
+        if(flammability > 0 && (fireballTimer[pos] += Time.delta * Mathf.clamp(flammability / 10f, 0f, 0.5f)) >= fireballDelay){
+            fireballTimer[pos] = 0f;
+            Bullets.fireball.createNet(Team.derelict, x, y, Mathf.random(360f), -1f, 1, 1);
+        }
+
+        //apply damage to nearby units & building
+        if((damageTimer[pos] += Time.delta) >= damageDelay){
+            damageTimer[pos] = 0f;
+            this.flammability[pos] = tile.getFlammability();
+
+            if(damage){
+                entity.damage(tileDamage);
+            }
+            Damage.damageUnits(null, x, y, tilesize, unitDamage,
+            unit -> !unit.isFlying() && !unit.isImmune(StatusEffects.burning),
+            unit -> unit.apply(StatusEffects.burning, 60 * 5));
+        }
+    }
+
+    /** Draws the fires and puddles inside the camera's view. */
+    public void draw(){
+        if(active.size == 0 || width == 0) return;
+
+        Core.camera.bounds(view).grow(tilesize * 4f);
+        int minx = Math.max(World.toTile(view.x), 0), miny = Math.max(World.toTile(view.y), 0),
+            maxx = Math.min(World.toTile(view.x + view.width), width - 1), maxy = Math.min(World.toTile(view.y + view.height), height - 1);
+        if(minx > maxx || miny > maxy) return;
+
+        //visit whichever is smaller: the tiles in view, or the active tiles
+        if((maxx - minx + 1) * (maxy - miny + 1) <= active.size){
+            for(int y = miny; y <= maxy; y++){
+                for(int x = minx; x <= maxx; x++){
+                    drawTile(y * width + x);
+                }
+            }
+        }else{
+            for(int i = 0; i < active.size; i++){
+                int pos = active.items[i], x = pos % width, y = pos / width;
+                if(x >= minx && x <= maxx && y >= miny && y <= maxy){
+                    drawTile(pos);
+                }
+            }
+        }
+
+        Draw.reset();
+    }
+
+    private void drawTile(int pos){
+        if(liquid[pos] != 0){
+            drawPuddle(pos);
+        }
+        if(lifetime[pos] > 0f){
+            drawFire(pos);
+        }
+    }
+
+    private void drawPuddle(int pos){
+        Tile tile = world.tiles.geti(pos);
+        Liquid liquid = content.liquid(this.liquid[pos] - 1);
+
+        Draw.z(Layer.debris - 1);
+
+        seeds = pos;
+        drawX = tile.worldx();
+        drawY = tile.worldy();
+        drawSize = Mathf.clamp(amount[pos] / (Puddles.maxLiquid / 1.5f));
+        drawMag = tile.floor().isLiquid ? 0.8f : 0f;
+
+        Draw.color(Tmp.c1.set(liquid.color).shiftValue(-0.05f));
+        Fill.circle(drawX + Mathf.sin(Time.time + seeds * 532, 25f, drawMag), drawY + Mathf.sin(Time.time + seeds * 53, 25f, drawMag), drawSize * 8f);
+        Angles.randLenVectors(pos, 3, drawSize * 6f, drawBlob);
+        Draw.color();
+
+        if(liquid.lightColor.a > 0.001f && drawSize > 0){
+            Color color = liquid.lightColor;
+            Drawf.light(Team.derelict, drawX, drawY, 30f * drawSize, color, color.a * drawSize * 0.8f);
+        }
+    }
+
+    private void drawFire(int pos){
+        if(regions[0] == null){
+            for(int i = 0; i < frames; i++){
+                regions[i] = Core.atlas.find("fire" + i);
+            }
+        }
+
+        Tile tile = world.tiles.geti(pos);
+        float x = tile.worldx(), y = tile.worldy();
+        int frame = (int)(Time.time / ticksPerFrame + Mathf.randomSeed(pos, 0, frames - 1)) % frames;
+
+        Draw.color();
+        Draw.z(Layer.effect);
+        Draw.rect(regions[frame], x + Mathf.randomSeedRange((int)y, 2), y + Mathf.randomSeedRange((int)x, 2));
+
+        Drawf.light(x, y, 50f + Mathf.absin(5f, 5f), Pal.lightFlame, 0.6f);
+        control.sound.loop(Sounds.fire, soundPos.set(x, y), 0.07f);
+    }
+
+    /** Sends the chunks that changed since the last call to one player, or to everyone if con is null. */
+    private void writeChunks(@Nullable NetConnection con){
+        if(dirty.isEmpty()) return;
+
+        try{
+            syncStream.reset();
+            short sent = 0;
+            int chunksX = Mathf.ceil(width / (float)chunkSize);
+
+            for(int chunk = dirty.nextSetBit(0); chunk >= 0; chunk = dirty.nextSetBit(chunk + 1)){
+                int cx = chunk % chunksX * chunkSize, cy = chunk / chunksX * chunkSize;
+                int ex = Math.min(cx + chunkSize, width), ey = Math.min(cy + chunkSize, height);
+
+                dataStream.writeInt(chunk);
+
+                //runs of tiles with the same liquid, amount and fire, in row order
+                int run = 0, runLiquid = -1, runAmount = -1, runFire = -1;
+                for(int y = cy; y < ey; y++){
+                    for(int x = cx; x < ex; x++){
+                        int pos = y * width + x, fire = lifetime[pos] > 0f ? 1 : 0, amount = quantize(this.amount[pos]);
+                        if(run > 0 && (liquid[pos] != runLiquid || amount != runAmount || fire != runFire || run == 256)){
+                            writeRun(run, runLiquid, runAmount, runFire);
+                            run = 0;
+                        }
+                        run ++;
+                        runLiquid = liquid[pos];
+                        runAmount = amount;
+                        runFire = fire;
+                    }
+                }
+                writeRun(run, runLiquid, runAmount, runFire);
+                sent ++;
+
+                if(syncStream.size() > maxSnapshotSize){
+                    send(con, sent);
+                    sent = 0;
+                    syncStream.reset();
+                }
+            }
+
+            if(sent > 0){
+                send(con, sent);
+            }
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+
+        dirty.clear();
+    }
+
+    private void writeRun(int run, int liquid, int amount, int fire) throws IOException{
+        dataStream.writeByte(run - 1);
+        dataStream.writeShort(liquid);
+        dataStream.writeByte(amount);
+        dataStream.writeByte(fire);
+    }
+
+    private void send(@Nullable NetConnection con, short amount) throws IOException{
+        dataStream.flush();
+        if(con == null){
+            Call.hazardSnapshot(amount, syncStream.toByteArray());
+        }else{
+            Call.hazardSnapshot(con, amount, syncStream.toByteArray());
+        }
+    }
+
+    @Remote(variants = Variant.both, priority = PacketPriority.low)
+    public static void hazardSnapshot(short amount, byte[] data){
+        hazards.read(amount, data);
+    }
+
+    private void read(short chunks, byte[] data){
+        if(world.isInvalidMap()) return;
+        ensure();
+
+        try{
+            byteStream.setBytes(data);
+            int chunksX = Mathf.ceil(width / (float)chunkSize);
+
+            for(int i = 0; i < chunks; i++){
+                int chunk = readStream.readInt();
+                int cx = chunk % chunksX * chunkSize, cy = chunk / chunksX * chunkSize;
+                int ex = Math.min(cx + chunkSize, width), ey = Math.min(cy + chunkSize, height);
+                int x = cx, y = cy;
+
+                while(y < ey){
+                    int run = (readStream.readByte() & 0xff) + 1;
+                    short liquid = readStream.readShort();
+                    float amount = (readStream.readByte() & 0xff) / 255f * Puddles.maxLiquid;
+                    boolean fire = readStream.readByte() != 0;
+
+                    for(int j = 0; j < run && y < ey; j++){
+                        int pos = y * width + x;
+                        this.liquid[pos] = liquid;
+                        this.amount[pos] = liquid == 0 ? 0f : amount;
+                        if(fire != (lifetime[pos] > 0f)){
+                            fires += fire ? 1 : -1;
+                        }
+                        lifetime[pos] = fire ? fireLifetime : 0f;
+                        time[pos] = 0f;
+                        if(liquid != 0 || fire) activate(pos);
+
+                        if(++x >= ex){
+                            x = cx;
+                            y ++;
+                        }
+                    }
+                }
+            }
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Writes every fire and puddle, for saves. */
+    public void write(DataOutput stream) throws IOException{
+        stream.writeInt(active.size);
+        for(int i = 0; i < active.size; i++){
+            int pos = active.items[i];
+            stream.writeInt(pos);
+            stream.writeShort(liquid[pos]);
+            stream.writeFloat(amount[pos]);
+            stream.writeFloat(lifetime[pos]);
+            stream.writeFloat(time[pos]);
+        }
+    }
+
+    /** Reads the fires and puddles of a save. The world must already be loaded. */
+    public void read(DataInput stream) throws IOException{
+        clear();
+        int size = stream.readInt();
+        if(size > 0) ensure();
+
+        for(int i = 0; i < size; i++){
+            int pos = stream.readInt();
+            short id = stream.readShort();
+            float amount = stream.readFloat(), lifetime = stream.readFloat(), time = stream.readFloat();
+            //liquid ids may have changed since the save was written
+            Liquid liquid = id == 0 ? null : content.liquid(id - 1);
+            if(pos < 0 || pos >= width * height) continue;
+
+            if(liquid != null){
+                this.liquid[pos] = (short)(liquid.id + 1);
+                this.amount[pos] = amount;
+            }
+            if(lifetime > 0f){
+                fires ++;
+                this.lifetime[pos] = lifetime;
+                this.time[pos] = time;
+                flammability[pos] = world.tiles.geti(pos).getFlammability();
+            }
+            if(this.liquid[pos] != 0 || this.lifetime[pos] > 0f) activate(pos);
+        }
+    }
+
+    private static int quantize(float amount){
+        return (int)(Mathf.clamp(amount / Puddles.maxLiquid) * 255);
+    }
+
+    private int chunk(int pos){
+        return (pos / width / chunkSize) * Mathf.ceil(width / (float)chunkSize) + (pos % width / chunkSize);
+    }
+
+    private void changed(int pos){
+        if(net.server()) dirty.set(chunk(pos));
+    }
+
+    private void activate(int pos){
+        if(!listed[pos]){
+            listed[pos] = true;
+            active.add(pos);
+        }
+    }
+
+    /** Allocates the arrays for the current world. */
+    private void ensure(){
+        if(width == world.width() && height == world.height()) return;
+
+        clear();
+        width = world.width();
+        height = world.height();
+        int size = width * height;
+
+        liquid = new short[size];
+        amount = new float[size];
+        accepting = new float[size];
+        effectTimer = new float[size];
+        lastRipple = new float[size];
+        time = new float[size];
+        lifetime = new float[size];
+        flammability = new float[size];
+        damageTimer = new float[size];
+        spreadTimer = new float[size];
+        fireballTimer = new float[size];
+        listed = new boolean[size];
+    }
+
+    /** Removes all fires and puddles. */
+    public void clear(){
+        for(int i = 0; i < active.size; i++){
+            int pos = active.items[i];
+            liquid[pos] = 0;
+            amount[pos] = 0f;
+            lifetime[pos] = 0f;
+            listed[pos] = false;
+        }
+        active.clear();
+        dirty.clear();
+        fires = 0;
+        syncTimer = 0f;
+    }
+}
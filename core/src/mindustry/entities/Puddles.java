@@ -9,6 +9,8 @@ import mindustry.gen.*;
 import mindustry.type.*;
 import mindustry.world.*;
 
+import static mindustry.Vars.*;
+
 public class Puddles{
     private static final IntMap<Puddle> map = new IntMap<>();
 
@@ -32,6 +34,11 @@ public class Puddles{
     public static void deposit(Tile tile, Tile source, Liquid liquid, float amount, boolean initial){
         if(tile == null) return;
 
+        if(hazards.enabled()){
+            hazards.deposit(tile, source, liquid, amount, initial);
+            return;
+        }
+
         if(tile.floor().isLiquid && !canStayOn(liquid, tile.floor().liquidDrop)){
             reactPuddle(tile.floor().liquidDrop, liquid, amount, tile,
             (tile.worldx() + source.worldx()) / 2f, (tile.worldy() + source.worldy()) / 2f);
@@ -79,7 +86,7 @@ public class Puddles{
     }
 
     /** Reacts two liquids together at a location. */
-    private static float reactPuddle(Liquid dest, Liquid liquid, float amount, Tile tile, float x, float y){
+    static float reactPuddle(Liquid dest, Liquid liquid, float amount, Tile tile, float x, float y){
         if((dest.flammability > 0.3f && liquid.temperature > 0.7f) ||
         (liquid.flammability > 0.3f && dest.temperature > 0.7f)){ //flammable liquid + hot liquid
             Fires.create(tile);
@@ -104,7 +111,7 @@ public class Puddles{
      * Returns whether the first liquid can 'stay' on the second one.
      * Currently, the only place where this can happen is oil on water.
      */
-    private static boolean canStayOn(Liquid liquid, Liquid other){
+    static boolean canStayOn(Liquid liquid, Liquid other){
         return liquid == Liquids.oil && other == Liquids.water;
     }
 }
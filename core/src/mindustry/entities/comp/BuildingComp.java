@@ -378,26 +378,45 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
         return cons.status();
     }
 
-    /** Call when nothing is happening to the entity. This increments the internal sleep timer. */
+    /**
+     * Call when nothing is happening to the entity. This increments the internal sleep timer.
+     * Sleeping buildings are taken out of the update group, {@link Groups#all}, until {@link #noSleep()} is called.
+     * They stay in {@link Groups#build}, so they can still be found.
+     */
     public void sleep(){
         sleepTime += Time.delta;
         if(!sleeping && sleepTime >= timeToSleep){
-            remove();
+            Groups.all.remove(self());
+            sleeping = true;
+            sleepingEntities++;
+        }
+    }
+
+    /** Puts this building to sleep immediately, and wakes it up after the specified amount of ticks, unless something wakes it up earlier. */
+    public void sleepFor(float ticks){
+        sleepTime = timeToSleep;
+        if(!sleeping){
+            Groups.all.remove(self());
             sleeping = true;
             sleepingEntities++;
         }
+        buildScheduler.schedule(self(), ticks);
     }
 
     /** Call when this entity is updating. This wakes it up. */
     public void noSleep(){
         sleepTime = 0f;
         if(sleeping){
-            add();
+            Groups.all.add(self());
             sleeping = false;
             sleepingEntities--;
         }
     }
 
+    public boolean sleeping(){
+        return sleeping;
+    }
+
     /** Returns the version of this Building IO code.*/
     public byte version(){
         return 0;
@@ -1309,6 +1328,7 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
         Team last = this.team;
         indexer.removeIndex(tile);
         this.team = next;
+        tile.getLinkedTiles(world.tiles::updateCache);
         indexer.addIndex(tile);
         Events.fire(teamChangeEvent.set(last, self()));
     }
@@ -1520,6 +1540,11 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
         if(sound != null){
             sound.stop();
         }
+
+        if(sleeping){
+            sleeping = false;
+            sleepingEntities--;
+        }
     }
 
     @Override
@@ -1535,7 +1560,7 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
     @Final
     @Override
     public void update(){
-        if(state.isEditor()) return;
+        if(state.isEditor() || sleeping) return;
 
         timeScaleDuration -= Time.delta;
         if(timeScaleDuration <= 0f || !block.canOverdrive){
@@ -136,10 +136,12 @@ abstract class BulletComp implements Timedc, Damagec, Hitboxc, Teamc, Posc, Draw
         int x = x0f, dx = Math.abs(x1 - x), sx = x < x1 ? 1 : -1;
         int y = y0f, dy = Math.abs(y1 - y), sy = y < y1 ? 1 : -1;
         int e2, err = dx - dy;
-        int ww = world.width(), wh = world.height();
+        Tiles tiles = world.tiles;
+        int ww = tiles.width, wh = tiles.height;
 
         while(x >= 0 && y >= 0 && x < ww && y < wh){
-            Building build = world.build(x, y);
+            //read from the cell cache of the tiles, without touching the tile
+            Building build = tiles.build(y * ww + x);
 
             if(type.collideFloor || type.collideTerrain){
                 Tile tile = world.tile(x, y);
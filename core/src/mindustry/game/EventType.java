@@ -31,6 +31,7 @@ public class EventType{
         openWiki,
         teamCoreDamage,
         socketConfigChanged,
+        metricsConfigChanged,
         update,
         draw,
         drawOver,
@@ -47,6 +47,8 @@ public class Rules{
     public boolean damageExplosions = true;
     /** Whether fire is enabled. */
     public boolean fire = true;
+    /** Whether fires and puddles are simulated per tile instead of as entities. Faster for large fires and spills, but they are not saved. */
+    public boolean hazardField = false;
     /** Whether units use and require ammo. */
     public boolean unitAmmo = false;
     /** Whether cores add to unit limit */
@@ -85,6 +85,14 @@ public class SectorInfo{
     public float sumHealth, sumRps, sumDps, waveHealthBase, waveHealthSlope, waveDpsBase, waveDpsSlope, bossHealth, bossDps, curEnemyHealth, curEnemyDps;
     /** Wave where first boss shows up. */
     public int bossWave = -1;
+    /** Health of buildings along each segment of the enemy path, from the spawn to the core. Null if it was never calculated. */
+    public @Nullable float[] pathHealth;
+    /** Damage per second of each turret along the path. */
+    public @Nullable float[] turretDps;
+    /** For each turret, the path segment it is in, then the first and last segment in its range. */
+    public @Nullable int[] turretSegments;
+    /** Seconds that enemies need to walk through one path segment. */
+    public float segmentTime;
 
     /** Counter refresh state. */
     private transient Interval time = new Interval();
@@ -12,6 +12,9 @@ import mindustry.maps.*;
 import mindustry.type.*;
 import mindustry.world.blocks.storage.*;
 
+import java.util.*;
+import java.util.stream.*;
+
 import static mindustry.Vars.*;
 
 /** Updates and handles state of the campaign universe. Has no relevance to other gamemodes. */
@@ -25,6 +28,13 @@ public class Universe{
     private @Nullable Schematic lastLoadout;
     private ItemSeq lastLaunchResources = new ItemSeq();
 
+    //results of the parallel part of a turn, per sector index of the planet being updated
+    private boolean[] turnSimulated = {}, turnAttacked = {};
+    private int[] turnWaves = {};
+    private float[] turnDamage = {};
+    /** Exported amount per sector and item ID. */
+    private int[] turnExports = {};
+
     public Universe(){
         load();
 
@@ -145,37 +155,54 @@ public class Universe{
         turn++;
 
         int newSecondsPassed = (int)(turnDuration / 60);
+        int itemCount = content.items().size;
+        ItemSeq exported = new ItemSeq();
 
         //update relevant sectors
         for(Planet planet : content.planets()){
+            Seq<Sector> sectors = planet.sectors;
+            beginTurn(sectors.size, itemCount);
+
+            //these depend on the game state, so they are checked on the main thread
+            for(int i = 0; i < sectors.size; i++){
+                Sector sector = sectors.get(i);
+                turnSimulated[i] = sector.hasBase() && !sector.isBeingPlayed();
+                turnAttacked[i] = turnSimulated[i] && sector.isAttacked();
+            }
+
+            //exports and damage only depend on the info of each sector itself, so they are computed in parallel
+            IntStream.range(0, sectors.size).parallel().forEach(i -> simulateTurn(sectors.get(i), i, itemCount, newSecondsPassed));
 
             //first pass: clear import stats
-            for(Sector sector : planet.sectors){
-                if(sector.hasBase() && !sector.isBeingPlayed()){
-                    sector.info.lastImported.clear();
+            for(int i = 0; i < sectors.size; i++){
+                if(turnSimulated[i]){
+                    sectors.get(i).info.lastImported.clear();
                 }
             }
 
-            //second pass: update export & import statistics
-            for(Sector sector : planet.sectors){
-                if(sector.hasBase() && !sector.isBeingPlayed()){
-
-                    //export to another sector
-                    if(sector.info.destination != null){
-                        Sector to = sector.info.destination;
-                        if(to.hasBase()){
-                            ItemSeq items = new ItemSeq();
-                            //calculated exported items to this sector
-                            sector.info.export.each((item, stat) -> items.add(item, (int)(stat.mean * newSecondsPassed * sector.getProductionScale())));
-                            to.addItems(items);
-                            to.info.lastImported.add(items);
+            //second pass: apply exports in sector order
+            for(int i = 0; i < sectors.size; i++){
+                Sector sector = sectors.get(i);
+
+                //export to another sector
+                if(turnSimulated[i] && sector.info.destination != null){
+                    Sector to = sector.info.destination;
+                    if(to.hasBase()){
+                        exported.clear();
+                        for(int item = 0; item < itemCount; item++){
+                            int amount = turnExports[i * itemCount + item];
+                            if(amount != 0) exported.add(content.item(item), amount);
                         }
+                        //sectors of this planet are saved in the third pass
+                        to.addItems(exported, to.planet != planet);
+                        to.info.lastImported.add(exported);
                     }
                 }
             }
 
             //third pass: everything else
-            for(Sector sector : planet.sectors){
+            for(int i = 0; i < sectors.size; i++){
+                Sector sector = sectors.get(i);
                 if(sector.hasBase()){
 
                     //if it is being attacked, capture time is 0; otherwise, increment the timer
@@ -200,7 +227,8 @@ public class Universe{
                             sector.info.wavesPassed = wavesPassed;
                         }
 
-                        float damage = attacked ? SectorDamage.getDamage(sector.info) : 0f;
+                        //use the damage computed in parallel, unless an event changed the sector since then
+                        float damage = !attacked ? 0f : turnSimulated[i] && turnWaves[i] == wavesPassed ? turnDamage[i] : SectorDamage.getDamage(sector.info);
 
                         //damage never goes down until the player visits the sector, so use max
                         sector.info.damage = Math.max(sector.info.damage, damage);
@@ -278,6 +306,37 @@ public class Universe{
         save();
     }
 
+    /** Makes sure the turn buffers fit a planet. */
+    private void beginTurn(int sectors, int items){
+        if(turnSimulated.length < sectors){
+            turnSimulated = new boolean[sectors];
+            turnAttacked = new boolean[sectors];
+            turnWaves = new int[sectors];
+            turnDamage = new float[sectors];
+        }
+        if(turnExports.length < sectors * items){
+            turnExports = new int[sectors * items];
+        }
+    }
+
+    /** Computes the exports and damage of a sector for this turn. Only reads the info of this sector, so it can run on any thread. */
+    private void simulateTurn(Sector sector, int index, int items, int seconds){
+        if(!turnSimulated[index]) return;
+
+        SectorInfo info = sector.info;
+        int offset = index * items;
+        float scl = sector.getProductionScale();
+
+        Arrays.fill(turnExports, offset, offset + items, 0);
+        info.export.each((item, stat) -> turnExports[offset + item.id] += (int)(stat.mean * seconds * scl));
+
+        //same as the third pass, which adds this time to the sector
+        float secondsPassed = turnAttacked[index] ? info.secondsPassed + turnDuration/60f : info.secondsPassed;
+        int wavesPassed = (int)(secondsPassed*60f / info.waveSpacing);
+        turnWaves[index] = wavesPassed;
+        turnDamage[index] = info.waves ? SectorDamage.getDamage(info, wavesPassed) : 0f;
+    }
+
     /** This method is expensive to call; only do so sparingly. */
     public ItemSeq getGlobalResources(){
         ItemSeq count = new ItemSeq();
@@ -167,15 +167,6 @@ public class BlockRenderer{
         }
     }
 
-    public void checkChanges(){
-        darkEvents.each(pos -> {
-            var tile = world.tile(pos);
-            if(tile != null && tile.block().fillsTile){
-                tile.data = world.getWallDarkness(tile);
-            }
-        });
-    }
-
     public void drawDarkness(){
         if(!darkEvents.isEmpty()){
             Draw.flush();
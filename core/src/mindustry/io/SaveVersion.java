@@ -275,7 +275,7 @@ public abstract class SaveVersion extends SaveFileReader{
                     }
                 }else if(hadData){
                     tile.setBlock(block);
-                    tile.data = stream.readByte();
+                    tile.setData(stream.readByte());
                 }else{
                     int consecutives = stream.readUnsignedByte();
 
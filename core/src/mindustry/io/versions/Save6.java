@@ -0,0 +1,27 @@
+package mindustry.io.versions;
+
+import mindustry.io.*;
+
+import java.io.*;
+
+import static mindustry.Vars.*;
+
+/** This version also writes the fires and puddles of the hazard field after the entities. */
+public class Save6 extends SaveVersion{
+
+    public Save6(){
+        super(6);
+    }
+
+    @Override
+    public void writeEntities(DataOutput stream) throws IOException{
+        super.writeEntities(stream);
+        hazards.write(stream);
+    }
+
+    @Override
+    public void readEntities(DataInput stream) throws IOException{
+        super.readEntities(stream);
+        hazards.read(stream);
+    }
+}
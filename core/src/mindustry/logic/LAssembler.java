@@ -60,6 +60,12 @@ public class LAssembler{
     public int var(String symbol){
         int constId = Vars.constants.get(symbol);
         if(constId > 0){
+            Var global = Vars.constants.get(constId);
+            //numbers and null are copied into the program, so that they can be read without a lookup
+            if(!global.isobj || global.objval == null){
+                return putConst("___" + symbol, global.isobj ? null : (Object)global.numval).id;
+            }
+
             //global constants are *negated* and stored separately
             return -constId;
         }
@@ -92,6 +98,64 @@ public class LAssembler{
         return Strings.parseDouble(symbol, invalidNum);
     }
 
+    /**
+     * Replaces instructions with specialized versions, now that the values of all constants are known.
+     * Called when the program is loaded into an executor.
+     */
+    public void optimize(){
+        BVar[] byId = new BVar[lastVar];
+        for(BVar var : vars.values()){
+            byId[var.id] = var;
+        }
+
+        for(int i = 0; i < instructions.length; i++){
+            instructions[i] = optimize(instructions[i], byId);
+        }
+    }
+
+    private LInstruction optimize(LInstruction inst, BVar[] byId){
+        if(inst.getClass() == SetI.class){
+            SetI set = (SetI)inst;
+            if(set.to >= 0 && !byId[set.to].constant && constNum(byId, set.from)){
+                double value = num(byId, set.from);
+                return new SetNumI(set.from, set.to, LExecutor.invalid(value) ? 0 : value);
+            }
+        }else if(inst.getClass() == OpI.class){
+            OpI op = (OpI)inst;
+            //operators without an object form always work on numbers
+            if(!op.op.unary && op.op.objFunction2 == null && op.op != LogicOp.strictEqual){
+                return new NumOpI(op.op, op.a, op.b, op.dest);
+            }
+        }else if(inst.getClass() == JumpI.class){
+            JumpI jump = (JumpI)inst;
+            ConditionOp cond = jump.op;
+
+            if(jump.address == -1){
+                return new NoopI();
+            }else if(cond == ConditionOp.always){
+                return new GotoI(jump.value, jump.compare, jump.address);
+            }else if(constNum(byId, jump.value) && constNum(byId, jump.compare)){
+                //the result never changes
+                double a = num(byId, jump.value), b = num(byId, jump.compare);
+                boolean result = cond == ConditionOp.strictEqual ? a == b : cond.function.get(LExecutor.invalid(a) ? 0 : a, LExecutor.invalid(b) ? 0 : b);
+                return result ? new GotoI(jump.value, jump.compare, jump.address) : new NoopI();
+            }else if(cond == ConditionOp.lessThan || cond == ConditionOp.lessThanEq || cond == ConditionOp.greaterThan || cond == ConditionOp.greaterThanEq){
+                return new NumJumpI(cond, jump.value, jump.compare, jump.address);
+            }
+        }
+
+        return inst;
+    }
+
+    /** @return whether a variable is a constant number. Special variables are excluded, as some of them change. */
+    private boolean constNum(BVar[] byId, int id){
+        return id > LExecutor.varTick && id < byId.length && byId[id] != null && byId[id].constant && byId[id].value instanceof Number;
+    }
+
+    private double num(BVar[] byId, int id){
+        return ((Number)byId[id].value).doubleValue();
+    }
+
     /** Adds a constant value by name. */
     public BVar putConst(String name, Object value){
         BVar var = putVar(name);
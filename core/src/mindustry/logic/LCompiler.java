@@ -0,0 +1,747 @@
+package mindustry.logic;
+
+import arc.struct.*;
+import arc.util.*;
+import mindustry.logic.LExecutor.*;
+
+import java.lang.reflect.*;
+
+import static mindustry.Vars.*;
+import static mindustry.logic.LExecutor.*;
+
+/**
+ * Compiles logic programs into JVM bytecode, generating one class per program.
+ * Variables that can only ever hold numbers or null are kept in JVM locals, with NaN standing in for null.
+ * Instructions that cannot be compiled are run through the interpreter from compiled code, so any program can be compiled.
+ * Instructions are still counted one by one: a compiled program never runs more instructions than the interpreter would.
+ * Not available on Android and iOS, as they cannot load JVM bytecode at runtime.
+ */
+public class LCompiler{
+    /** Whether programs are compiled at all. */
+    public static boolean enabled = true;
+    /** Amount of instructions an executor runs in the interpreter before its program gets compiled. */
+    public static int compileThreshold = 20000;
+
+    private static final String
+    selfName = "mindustry/logic/LCompiler",
+    execName = "mindustry/logic/LExecutor",
+    programName = "mindustry/logic/LCompiler$Program",
+    execDesc = "Lmindustry/logic/LExecutor;",
+    executeDesc = "(" + execDesc + "II)I";
+
+    //local variable slots of Program#execute
+    private static final int slotBudget = 2, slotPc = 3, firstLocal = 4;
+
+    /** Class file version of Java 5, the last one that does not need stack map frames. */
+    private static final int classVersion = 49;
+    private static final int accPublic = 0x0001, accFinal = 0x0010, accSuper = 0x0020;
+    //constant pool tags
+    private static final int tagUtf8 = 1, tagDouble = 6, tagClass = 7, tagField = 9, tagMethod = 10, tagNameType = 12;
+    //JVM opcodes, named after their mnemonics
+    private static final int
+    sipush = 17, ldc2w = 20, iload = 21, dload = 24, iload2 = 28, aload0 = 42, aload1 = 43, istore = 54, dstore = 57,
+    dadd = 99, dsub = 103, dmul = 107, ddiv = 111, drem = 115, iinc = 132, dcmpg = 152,
+    ifeq = 153, ifne = 154, iflt = 155, ifge = 156, ifgt = 157, ifle = 158, gotoLabel = 167, tableswitch = 170,
+    ireturn = 172, returnVoid = 177, getstatic = 178, invokespecial = 183, invokestatic = 184, wide = 196;
+
+    private static final ObjectMap<Class<?>, Seq<Field>> intFields = new ObjectMap<>();
+    private static int lastId;
+
+    private final LExecutor exec;
+    private final LInstruction[] instructions;
+    private final boolean[] eligible, compiled;
+    /** JVM local slot of each variable, or -1 if it is not kept in a local. */
+    private final int[] slots;
+    private final IntSeq locals = new IntSeq();
+
+    private final Bytes pool = new Bytes(), code = new Bytes();
+    private final ObjectIntMap<String> poolIndices = new ObjectIntMap<>();
+    private int poolSize = 1;
+    private int[] labels;
+    private int labelDispatch;
+    /** Branches to patch, stored as (offset position, branch position, label, 1 if the offset is 4 bytes). */
+    private final IntSeq fixups = new IntSeq();
+
+    private LCompiler(LExecutor exec){
+        this.exec = exec;
+        this.instructions = exec.instructions;
+        this.eligible = new boolean[exec.nums.length];
+        this.compiled = new boolean[instructions.length];
+        this.slots = new int[exec.nums.length];
+    }
+
+    /** @return whether programs can be compiled on this platform. */
+    public static boolean available(){
+        return enabled && !android && !ios;
+    }
+
+    /** @return a compiled version of the executor's current program, or null if it could not be compiled. */
+    public static synchronized @Nullable Program compile(LExecutor exec){
+        if(!available() || !exec.initialized()) return null;
+
+        try{
+            return new LCompiler(exec).generate();
+        }catch(Throwable e){
+            Log.err("Failed to compile logic program", e);
+            return null;
+        }
+    }
+
+    private @Nullable Program generate() throws Exception{
+        if(!analyze()) return null;
+
+        String name = "mindustry/logic/compiled/Program" + (lastId++);
+        byte[] bytes = write(name);
+        if(bytes == null) return null;
+
+        Program program = (Program)new ProgramLoader().define(name.replace('/', '.'), bytes).getDeclaredConstructor().newInstance();
+        program.instructions = instructions;
+        program.locals = locals.toArray();
+        return program;
+    }
+
+    //region analysis
+
+    /** Finds the instructions that can be compiled and the variables that can be kept in locals. */
+    private boolean analyze() throws Exception{
+        int size = exec.nums.length;
+
+        for(int i = varTick + 1; i < size; i++){
+            eligible[i] = !exec.constant(i);
+        }
+
+        //any variable referenced by an interpreted instruction must stay in the executor; repeat until nothing changes
+        boolean changed;
+        do{
+            changed = false;
+
+            for(int i = 0; i < instructions.length; i++){
+                compiled[i] = compilable(instructions[i]);
+            }
+
+            for(int i = 0; i < instructions.length; i++){
+                if(compiled[i]) continue;
+
+                LInstruction inst = instructions[i];
+                //instructions from mods may store variables in any way
+                if(inst.getClass().getEnclosingClass() != LExecutor.class) return false;
+
+                //all int fields are treated as variable references; this is conservative, but never wrong
+                for(Field field : intFields(inst.getClass())){
+                    int id = field.getInt(inst);
+                    if(id >= 0 && id < size && eligible[id]){
+                        eligible[id] = false;
+                        changed = true;
+                    }
+                }
+            }
+        }while(changed);
+
+        boolean any = false;
+        for(boolean b : compiled) any |= b;
+        if(!any) return false;
+
+        //only variables used by compiled instructions need a local
+        boolean[] used = new boolean[size];
+        for(int i = 0; i < instructions.length; i++){
+            if(!compiled[i]) continue;
+
+            LInstruction inst = instructions[i];
+            if(inst instanceof SetI s){
+                use(used, s.from);
+                use(used, s.to);
+            }else if(inst instanceof OpI o){
+                use(used, o.a);
+                use(used, o.b);
+                use(used, o.dest);
+            }else if(inst instanceof JumpI j){
+                use(used, j.value);
+                use(used, j.compare);
+            }
+        }
+
+        int slot = firstLocal;
+        for(int i = 0; i < size; i++){
+            if(used[i] && eligible[i]){
+                locals.add(i);
+                slots[i] = slot;
+                slot += 2;
+            }else{
+                slots[i] = -1;
+            }
+        }
+
+        return slot < 65535 && size <= Short.MAX_VALUE && instructions.length <= Short.MAX_VALUE;
+    }
+
+    private void use(boolean[] used, int id){
+        if(id >= 0 && id < used.length) used[id] = true;
+    }
+
+    private boolean compilable(LInstruction inst){
+        if(inst instanceof NoopI || inst instanceof EndI) return true;
+        if(inst instanceof SetI s) return local(s.to) && usable(s.from);
+        if(inst instanceof OpI o) return local(o.dest) && usable(o.a) && (o.op.unary || usable(o.b));
+        if(inst instanceof JumpI j) return j.address == -1 || j.op == ConditionOp.always || (usable(j.value) && usable(j.compare));
+        return false;
+    }
+
+    private boolean local(int id){
+        return id >= 0 && id < eligible.length && eligible[id];
+    }
+
+    /** @return whether a variable can be read from compiled code: either as a local, or as a constant number or null. */
+    private boolean usable(int id){
+        if(local(id)) return true;
+        if(id >= 0 && id <= varTick) return false;
+
+        return exec.constant(id) && (exec.isobj(id) ? exec.obj(id) == null : !invalid(exec.numval(id)));
+    }
+
+    private static Seq<Field> intFields(Class<?> type){
+        Seq<Field> result = intFields.get(type);
+        if(result == null){
+            result = new Seq<>();
+            for(Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()){
+                for(Field field : c.getDeclaredFields()){
+                    if(field.getType() == int.class && !Modifier.isStatic(field.getModifiers())){
+                        field.setAccessible(true);
+                        result.add(field);
+                    }
+                }
+            }
+            intFields.put(type, result);
+        }
+        return result;
+    }
+
+    //endregion
+    //region code generation
+
+    /**
+     * Writes a class file with one method, {@link Program#execute}. Its code is laid out like this:
+     * <pre>
+     * load locals from the executor
+     * dispatch: if pc < 0, goto bail; tableswitch on pc, one case per instruction
+     * instruction i: if budget <= 0, goto budget exit i; budget--; code of the instruction, or a fallback that sets pc and goes to dispatch
+     * goto instruction 0, since the counter went past the end
+     * budget exit i: pc = i; goto exit
+     * exit: store pc as the counter of the executor
+     * bail: store locals in the executor; return budget
+     * </pre>
+     * @return the class file, or null if the code is too large for the offsets of JVM branches.
+     */
+    private @Nullable byte[] write(String name){
+        int n = instructions.length;
+        //labels: instruction starts, budget exits of each instruction, dispatch, exit, bail
+        labelDispatch = n * 2;
+        int labelExit = labelDispatch + 1, labelBail = labelExit + 1;
+        labels = new int[labelBail + 1];
+
+        //load locals from the executor
+        for(int i = 0; i < locals.size; i++){
+            int id = locals.items[i];
+            code.u1(aload1);
+            push(id);
+            invoke("get", "(" + execDesc + "I)D");
+            local(dstore, slots[id]);
+        }
+
+        //jump to the instruction at the program counter; negative values mean the interpreter has to take over
+        mark(labelDispatch);
+        local(iload, slotPc);
+        jump(iflt, labelBail);
+        local(iload, slotPc);
+        int from = code.size;
+        code.u1(tableswitch);
+        while(code.size % 4 != 0) code.u1(0);
+        jump4(from, 0);
+        code.u4(0);
+        code.u4(n - 1);
+        for(int i = 0; i < n; i++){
+            jump4(from, i);
+        }
+
+        for(int i = 0; i < n; i++){
+            mark(i);
+
+            //stop when out of budget, otherwise count this instruction
+            code.u1(iload2);
+            jump(ifle, n + i);
+            code.u1(iinc);
+            code.u1(slotBudget);
+            code.u1(-1);
+
+            if(compiled[i]){
+                instruction(instructions[i]);
+
+                //ends yield in the interpreter when enabled
+                if(instructions[i] instanceof EndI){
+                    fallback(i);
+                }
+            }else{
+                fallback(i);
+            }
+        }
+
+        //the counter goes past the end of the program, so it restarts
+        jump(gotoLabel, 0);
+
+        for(int i = 0; i < n; i++){
+            mark(n + i);
+            push(i);
+            local(istore, slotPc);
+            jump(gotoLabel, labelExit);
+        }
+
+        mark(labelExit);
+        code.u1(aload1);
+        local(iload, slotPc);
+        invoke("exit", "(" + execDesc + "I)V");
+
+        //store locals back into the executor
+        mark(labelBail);
+        for(int i = 0; i < locals.size; i++){
+            int id = locals.items[i];
+            code.u1(aload1);
+            push(id);
+            local(dload, slots[id]);
+            invoke("put", "(" + execDesc + "ID)V");
+        }
+        code.u1(iload2);
+        code.u1(ireturn);
+
+        if(code.size >= 65535) return null;
+
+        for(int i = 0; i < fixups.size; i += 4){
+            int at = fixups.items[i], offset = labels[fixups.items[i + 2]] - fixups.items[i + 1];
+            if(fixups.items[i + 3] == 1){
+                code.set4(at, offset);
+            }else{
+                if(offset != (short)offset) return null;
+                code.set2(at, offset);
+            }
+        }
+
+        int maxLocals = firstLocal + locals.size * 2;
+
+        //all constants must be in the pool before it is written
+        int thisClass = classRef(name), superClass = classRef(programName);
+        int superInit = method(programName, "<init>", "()V");
+        int codeName = utf8("Code"), initName = utf8("<init>"), initDesc = utf8("()V"), executeName = utf8("execute"), executeType = utf8(executeDesc);
+
+        Bytes out = new Bytes();
+        out.u4(0xCAFEBABE);
+        out.u2(0);
+        out.u2(classVersion);
+        out.u2(poolSize);
+        out.add(pool);
+        out.u2(accPublic | accFinal | accSuper);
+        out.u2(thisClass);
+        out.u2(superClass);
+        out.u2(0); //interfaces
+        out.u2(0); //fields
+        out.u2(2); //methods
+
+        //constructor
+        out.u2(accPublic);
+        out.u2(initName);
+        out.u2(initDesc);
+        out.u2(1);
+        out.u2(codeName);
+        out.u4(12 + 5);
+        out.u2(1);
+        out.u2(1);
+        out.u4(5);
+        out.u1(aload0);
+        out.u1(invokespecial);
+        out.u2(superInit);
+        out.u1(returnVoid);
+        out.u2(0);
+        out.u2(0);
+
+        //execute
+        out.u2(accPublic);
+        out.u2(executeName);
+        out.u2(executeType);
+        out.u2(1);
+        out.u2(codeName);
+        out.u4(12 + code.size);
+        out.u2(8);
+        out.u2(maxLocals);
+        out.u4(code.size);
+        out.add(code);
+        out.u2(0);
+        out.u2(0);
+
+        out.u2(0); //class attributes
+
+        byte[] result = new byte[out.size];
+        System.arraycopy(out.items, 0, result, 0, out.size);
+        return result;
+    }
+
+    private void instruction(LInstruction inst){
+        if(inst instanceof SetI s){
+            raw(s.from);
+            local(dstore, slots[s.to]);
+        }else if(inst instanceof OpI o){
+            LogicOp op = o.op;
+
+            if(op == LogicOp.strictEqual){
+                raw(o.a);
+                raw(o.b);
+                invoke("strictEqual", "(DD)D");
+            }else if(op.unary){
+                push(op.ordinal());
+                raw(o.a);
+                invoke("op1", "(ID)D");
+            }else if(op == LogicOp.add || op == LogicOp.sub || op == LogicOp.mul || op == LogicOp.div || op == LogicOp.mod){
+                num(o.a);
+                num(o.b);
+                code.u1(op == LogicOp.add ? dadd : op == LogicOp.sub ? dsub : op == LogicOp.mul ? dmul : op == LogicOp.div ? ddiv : drem);
+                invoke("norm", "(D)D");
+            }else{
+                push(op.ordinal());
+                raw(o.a);
+                raw(o.b);
+                invoke("op2", "(IDD)D");
+            }
+
+            local(dstore, slots[o.dest]);
+        }else if(inst instanceof JumpI j){
+            if(j.address == -1) return;
+
+            //jumps past the end restart the program
+            int target = j.address >= 0 && j.address < instructions.length ? j.address : 0;
+            ConditionOp op = j.op;
+
+            if(op == ConditionOp.always){
+                jump(gotoLabel, target);
+            }else if(op == ConditionOp.lessThan || op == ConditionOp.lessThanEq || op == ConditionOp.greaterThan || op == ConditionOp.greaterThanEq){
+                num(j.value);
+                num(j.compare);
+                code.u1(dcmpg);
+                jump(op == ConditionOp.lessThan ? iflt : op == ConditionOp.lessThanEq ? ifle : op == ConditionOp.greaterThan ? ifgt : ifge, target);
+            }else{
+                push(op.ordinal());
+                raw(j.value);
+                raw(j.compare);
+                invoke("cond", "(IDD)Z");
+                jump(ifne, target);
+            }
+        }else if(inst instanceof EndI){
+            code.u1(getstatic);
+            code.u2(field(execName, "yieldOnEnd", "Z"));
+            jump(ifeq, 0);
+        }
+    }
+
+    /** Runs an instruction through the interpreter and continues at the instruction it leads to. */
+    private void fallback(int index){
+        code.u1(aload0);
+        code.u1(aload1);
+        push(index);
+        invoke("fallback", "(L" + programName + ";" + execDesc + "I)I");
+        local(istore, slotPc);
+        jump(gotoLabel, labelDispatch);
+    }
+
+    /** Pushes a variable with null as NaN. */
+    private void raw(int id){
+        if(slots(id) != -1){
+            local(dload, slots[id]);
+        }else{
+            ldc(exec.isobj(id) ? Double.NaN : exec.numval(id));
+        }
+    }
+
+    /** Pushes a variable as a number, like {@link LExecutor#num(int)}. */
+    private void num(int id){
+        if(slots(id) != -1){
+            local(dload, slots[id]);
+            invoke("num", "(D)D");
+        }else{
+            ldc(exec.isobj(id) ? 0 : exec.numval(id));
+        }
+    }
+
+    private int slots(int id){
+        return id >= 0 && id < slots.length ? slots[id] : -1;
+    }
+
+    private void ldc(double value){
+        code.u1(ldc2w);
+        code.u2(doubleConst(value));
+    }
+
+    private void push(int value){
+        code.u1(sipush);
+        code.u2(value);
+    }
+
+    private void local(int opcode, int slot){
+        if(slot > 255){
+            code.u1(wide);
+            code.u1(opcode);
+            code.u2(slot);
+        }else{
+            code.u1(opcode);
+            code.u1(slot);
+        }
+    }
+
+    private void invoke(String name, String desc){
+        code.u1(invokestatic);
+        code.u2(method(selfName, name, desc));
+    }
+
+    private void mark(int label){
+        labels[label] = code.size;
+    }
+
+    private void jump(int opcode, int label){
+        int from = code.size;
+        code.u1(opcode);
+        fixups.add(code.size, from, label, 0);
+        code.u2(0);
+    }
+
+    private void jump4(int from, int label){
+        fixups.add(code.size, from, label, 1);
+        code.u4(0);
+    }
+
+    private int utf8(String value){
+        String key = "u" + value;
+        int index = poolIndices.get(key, -1);
+        if(index != -1) return index;
+
+        pool.u1(tagUtf8);
+        pool.u2(value.length());
+        for(int i = 0; i < value.length(); i++){
+            pool.u1(value.charAt(i));
+        }
+        return register(key, 1);
+    }
+
+    private int classRef(String name){
+        String key = "c" + name;
+        int index = poolIndices.get(key, -1);
+        if(index != -1) return index;
+
+        int nameIndex = utf8(name);
+        pool.u1(tagClass);
+        pool.u2(nameIndex);
+        return register(key, 1);
+    }
+
+    private int method(String owner, String name, String desc){
+        return member(tagMethod, owner, name, desc);
+    }
+
+    private int field(String owner, String name, String desc){
+        return member(tagField, owner, name, desc);
+    }
+
+    private int member(int tag, String owner, String name, String desc){
+        String key = "m" + tag + owner + "." + name + desc;
+        int index = poolIndices.get(key, -1);
+        if(index != -1) return index;
+
+        int ownerIndex = classRef(owner), nameIndex = utf8(name), descIndex = utf8(desc);
+        pool.u1(tagNameType);
+        pool.u2(nameIndex);
+        pool.u2(descIndex);
+        int nameType = register("n" + key, 1);
+
+        pool.u1(tag);
+        pool.u2(ownerIndex);
+        pool.u2(nameType);
+        return register(key, 1);
+    }
+
+    private int doubleConst(double value){
+        long bits = Double.doubleToLongBits(value);
+        String key = "d" + bits;
+        int index = poolIndices.get(key, -1);
+        if(index != -1) return index;
+
+        pool.u1(tagDouble);
+        pool.u4((int)(bits >>> 32));
+        pool.u4((int)bits);
+        //doubles take up two entries
+        return register(key, 2);
+    }
+
+    private int register(String key, int entries){
+        int index = poolSize;
+        poolSize += entries;
+        poolIndices.put(key, index);
+        return index;
+    }
+
+    //endregion
+    //region runtime helpers, called from compiled code
+
+    public static double get(LExecutor exec, int id){
+        return (exec.tags[id] & tagObj) != 0 ? Double.NaN : exec.nums[id];
+    }
+
+    public static void put(LExecutor exec, int id, double value){
+        exec.objs[id] = null;
+        if(Double.isNaN(value)){
+            exec.tags[id] = tagObj;
+        }else{
+            exec.nums[id] = value;
+            exec.tags[id] = 0;
+        }
+    }
+
+    public static double num(double value){
+        return value != value ? 0 : value;
+    }
+
+    /** Turns invalid results into null, like {@link LExecutor#setnum(int, double)}. */
+    public static double norm(double value){
+        return invalid(value) ? Double.NaN : value;
+    }
+
+    public static double strictEqual(double a, double b){
+        return a == b || (a != a && b != b) ? 1 : 0;
+    }
+
+    public static double op1(int op, double a){
+        return norm(LogicOp.all[op].function1.get(num(a)));
+    }
+
+    public static double op2(int op, double a, double b){
+        LogicOp o = LogicOp.all[op];
+        if(o.objFunction2 != null && a != a && b != b){
+            return norm(o.objFunction2.get(null, null));
+        }
+        return norm(o.function2.get(num(a), num(b)));
+    }
+
+    public static boolean cond(int op, double a, double b){
+        ConditionOp o = ConditionOp.all[op];
+        if(o == ConditionOp.strictEqual){
+            return a == b || (a != a && b != b);
+        }else if(o.objFunction != null && a != a && b != b){
+            return o.objFunction.get(null, null);
+        }
+        return o.function.get(num(a), num(b));
+    }
+
+    public static void exit(LExecutor exec, int pc){
+        exec.nums[varCounter] = pc;
+    }
+
+    /**
+     * Runs an instruction in the interpreter.
+     * @return the next instruction to run, or -1 if the interpreter has to take over.
+     */
+    public static int fallback(Program program, LExecutor exec, int index){
+        LInstruction[] instructions = program.instructions;
+        setTime(exec);
+        exec.nums[varCounter] = index + 1;
+        instructions[index].run(exec);
+
+        if(exec.instructions != instructions || exec.yielded) return -1;
+
+        double counter = exec.nums[varCounter];
+        if(counter >= instructions.length || counter < 0) return 0;
+
+        int next = (int)counter;
+        return next == counter ? next : -1;
+    }
+
+    static void setTime(LExecutor exec){
+        exec.nums[varTime] = state.tick / 60.0 * 1000.0;
+        exec.nums[varTick] = state.tick;
+    }
+
+    //endregion
+
+    /** A compiled logic program. Only valid for the executor it was compiled from. */
+    public static abstract class Program{
+        LInstruction[] instructions;
+        /** IDs of the variables that are kept in locals. */
+        int[] locals;
+
+        /**
+         * Runs up to the specified amount of instructions.
+         * @return the amount of instructions that were run. The rest must be run with {@link LExecutor#runOnce()}.
+         */
+        public int run(LExecutor exec, int budget){
+            if(exec.instructions != instructions || budget <= 0) return 0;
+
+            double counter = exec.nums[varCounter];
+            if(counter >= instructions.length || counter < 0) counter = 0;
+            //fractional counters are left to the interpreter
+            if(counter != (int)counter) return 0;
+
+            //locals can only hold numbers and null
+            for(int id : locals){
+                if((exec.tags[id] & tagObj) != 0 ? exec.objs[id] != null : invalid(exec.nums[id])) return 0;
+            }
+
+            setTime(exec);
+            return budget - execute(exec, budget, (int)counter);
+        }
+
+        /** Implemented by generated code. @return the remaining budget. */
+        public abstract int execute(LExecutor exec, int budget, int pc);
+    }
+
+    /** Every program gets its own loader, so that its class can be unloaded once the program is no longer used. */
+    private static class ProgramLoader extends ClassLoader{
+        ProgramLoader(){
+            super(LCompiler.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes){
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static class Bytes{
+        byte[] items = new byte[256];
+        int size;
+
+        void u1(int value){
+            if(size == items.length){
+                byte[] next = new byte[items.length * 2];
+                System.arraycopy(items, 0, next, 0, size);
+                items = next;
+            }
+            items[size++] = (byte)value;
+        }
+
+        void u2(int value){
+            u1(value >>> 8);
+            u1(value);
+        }
+
+        void u4(int value){
+            u2(value >>> 16);
+            u2(value);
+        }
+
+        void set2(int at, int value){
+            items[at] = (byte)(value >>> 8);
+            items[at + 1] = (byte)value;
+        }
+
+        void set4(int at, int value){
+            set2(at, value >>> 16);
+            set2(at + 2, value);
+        }
+
+        void add(Bytes other){
+            for(int i = 0; i < other.size; i++){
+                u1(other.items[i]);
+            }
+        }
+    }
+}
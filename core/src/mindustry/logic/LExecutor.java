@@ -41,8 +41,22 @@ public class LExecutor{
     maxDisplayBuffer = 1024,
     maxTextBuffer = 256;
 
+    /** Whether processors stop running for the rest of the tick when they reach the end of their program. */
+    public static boolean yieldOnEnd = false;
+
+    //variable flags
+    public static final byte
+    tagObj = 1,
+    tagConst = 2;
+
     public LInstruction[] instructions = {};
-    public Var[] vars = {};
+    /** Variable names, indexed by variable ID. */
+    public String[] names = {};
+    /** Variable values, indexed by variable ID. Numbers are stored in nums, objects in objs; objs is null for numbers. */
+    public double[] nums = {};
+    public Object[] objs = {};
+    /** Flags of each variable: {@link #tagObj} if it holds an object (including null), {@link #tagConst} if it cannot be set. */
+    public byte[] tags = {};
     public int[] binds;
 
     public LongSeq graphicsBuffer = new LongSeq();
@@ -51,86 +65,174 @@ public class LExecutor{
     public IntSet linkIds = new IntSet();
     public Team team = Team.derelict;
 
+    /** Compiled version of the current program; null if it has not been compiled yet. */
+    public @Nullable LCompiler.Program compiled;
+    private int interpreted;
+    private boolean compileFailed;
+
+    /** Set by instructions that cannot do anything else this tick, like a wait that has not finished. Stops {@link #run(int)}. */
+    public boolean yielded;
+    /** Profiling counters; updated by {@link LogicScheduler}. */
+    public final LogicScheduler.Stats stats = new LogicScheduler.Stats();
+    /** Set while this processor runs in the parallel logic phase. Changes to shared buildings are recorded here instead of applied. */
+    public @Nullable LogicScheduler.Effects effects;
+    /** Variables used as targets of memory reads, or null if the program has not been checked for parallel use yet. */
+    @Nullable int[] readVars;
+    /** Variables used as targets of memory writes. Set together with {@link #readVars}. */
+    int[] writeVars;
+    boolean parallel;
+
     public boolean initialized(){
-        return instructions != null && vars != null && instructions.length > 0;
+        return instructions != null && nums != null && instructions.length > 0;
     }
 
     /** Runs a single instruction. */
     public void runOnce(){
         //set up time; note that @time is now only updated once every invocation and directly based off of @tick.
         //having time be based off of user system time was a very bad idea.
-        vars[varTime].numval = state.tick / 60.0 * 1000.0;
-        vars[varTick].numval = state.tick;
+        double[] nums = this.nums;
+        nums[varTime] = state.tick / 60.0 * 1000.0;
+        nums[varTick] = state.tick;
 
         //reset to start
-        if(vars[varCounter].numval >= instructions.length || vars[varCounter].numval < 0){
-            vars[varCounter].numval = 0;
+        if(nums[varCounter] >= instructions.length || nums[varCounter] < 0){
+            nums[varCounter] = 0;
         }
 
-        if(vars[varCounter].numval < instructions.length){
-            instructions[(int)(vars[varCounter].numval++)].run(this);
+        if(nums[varCounter] < instructions.length){
+            instructions[(int)(nums[varCounter]++)].run(this);
         }
     }
 
+    /**
+     * Runs several instructions in a row. Equivalent to calling {@link #runOnce()} for each step, until an instruction yields.
+     * Once enough instructions have been interpreted, the program is compiled, if possible.
+     * @return the amount of instructions that were run.
+     */
+    public int run(int steps){
+        if(steps <= 0 || !initialized()) return 0;
+
+        if(compiled == null && !compileFailed && LCompiler.available() && (interpreted += steps) >= LCompiler.compileThreshold){
+            compiled = LCompiler.compile(this);
+            compileFailed = compiled == null;
+        }
+
+        int ran = 0;
+        yielded = false;
+
+        if(compiled != null){
+            ran = compiled.run(this, steps);
+        }
+
+        while(ran < steps && !yielded){
+            runOnce();
+            ran ++;
+        }
+
+        yielded = false;
+        return ran;
+    }
+
     public void load(String data){
         load(LAssembler.assemble(data));
     }
 
     /** Loads with a specified assembler. Resets all variables. */
     public void load(LAssembler builder){
-        vars = new Var[builder.vars.size];
+        builder.optimize();
+
+        int size = builder.vars.size;
+        names = new String[size];
+        nums = new double[size];
+        objs = new Object[size];
+        tags = new byte[size];
         instructions = builder.instructions;
+        compiled = null;
+        compileFailed = false;
+        interpreted = 0;
+        readVars = null;
 
         builder.vars.each((name, var) -> {
-            Var dest = new Var(name);
-            vars[var.id] = dest;
-
-            dest.constant = var.constant;
+            names[var.id] = name;
+            byte tag = var.constant ? tagConst : 0;
 
             if(var.value instanceof Number number){
-                dest.isobj = false;
-                dest.numval = number.doubleValue();
+                nums[var.id] = number.doubleValue();
             }else{
-                dest.isobj = true;
-                dest.objval = var.value;
+                objs[var.id] = var.value;
+                tag |= tagObj;
             }
+
+            tags[var.id] = tag;
         });
     }
 
     //region utility
 
-    private static boolean invalid(double d){
+    static boolean invalid(double d){
         return Double.isNaN(d) || Double.isInfinite(d);
     }
 
-    public Var var(int index){
-        //global constants have variable IDs < 0, and they are fetched from the global constants object after being negated
-        return index < 0 ? constants.get(-index) : vars[index];
+    //global constants have variable IDs < 0, and they are fetched from the global constants object after being negated
+
+    /** @return whether a variable holds an object, which may be null. */
+    public boolean isobj(int index){
+        return index < 0 ? constants.get(-index).isobj : (tags[index] & tagObj) != 0;
+    }
+
+    public boolean constant(int index){
+        return index < 0 || (tags[index] & tagConst) != 0;
+    }
+
+    /** @return the raw number stored in a variable, which may be NaN or infinite. Meaningless for objects. */
+    public double numval(int index){
+        return index < 0 ? constants.get(-index).numval : nums[index];
+    }
+
+    /** @return the value of a variable, with numbers boxed. Used for saving and display. */
+    public @Nullable Object value(int index){
+        return isobj(index) ? obj(index) : (Object)numval(index);
     }
 
     public @Nullable Building building(int index){
-        Object o = var(index).objval;
-        return var(index).isobj && o instanceof Building building ? building : null;
+        return obj(index) instanceof Building building ? building : null;
     }
 
     public @Nullable Object obj(int index){
-        Object o = var(index).objval;
-        return var(index).isobj ? o : null;
+        if(index < 0){
+            Var v = constants.get(-index);
+            return v.isobj ? v.objval : null;
+        }
+        //objs is always null for numbers
+        return objs[index];
     }
 
     public boolean bool(int index){
-        Var v = var(index);
-        return v.isobj ? v.objval != null : Math.abs(v.numval) >= 0.00001;
+        if(index < 0){
+            Var v = constants.get(-index);
+            return v.isobj ? v.objval != null : Math.abs(v.numval) >= 0.00001;
+        }
+        return (tags[index] & tagObj) != 0 ? objs[index] != null : Math.abs(nums[index]) >= 0.00001;
     }
 
     public double num(int index){
-        Var v = var(index);
-        return v.isobj ? v.objval != null ? 1 : 0 : invalid(v.numval) ? 0 : v.numval;
+        if(index < 0){
+            Var v = constants.get(-index);
+            return v.isobj ? v.objval != null ? 1 : 0 : invalid(v.numval) ? 0 : v.numval;
+        }
+        if((tags[index] & tagObj) != 0) return objs[index] != null ? 1 : 0;
+        double value = nums[index];
+        return invalid(value) ? 0 : value;
     }
 
     public float numf(int index){
-        Var v = var(index);
-        return v.isobj ? v.objval != null ? 1 : 0 : invalid(v.numval) ? 0 : (float)v.numval;
+        return (float)num(index);
+    }
+
+    /** @return whether two variables are of the same type and hold the same value; objects are compared by identity. */
+    public boolean strictEqual(int a, int b){
+        boolean obj = isobj(a);
+        return obj == isobj(b) && (obj ? obj(a) == obj(b) : numval(a) == numval(b));
     }
 
     public int numi(int index){
@@ -142,34 +244,32 @@ public class LExecutor{
     }
 
     public void setnum(int index, double value){
-        Var v = var(index);
-        if(v.constant) return;
+        if(constant(index)) return;
         if(invalid(value)){
-            v.objval = null;
-            v.isobj = true;
+            objs[index] = null;
+            tags[index] = tagObj;
         }else{
-            v.numval = value;
-            v.objval = null;
-            v.isobj = false;
+            nums[index] = value;
+            objs[index] = null;
+            tags[index] = 0;
         }
     }
 
     public void setobj(int index, Object value){
-        Var v = var(index);
-        if(v.constant) return;
-        v.objval = value;
-        v.isobj = true;
+        if(constant(index)) return;
+        objs[index] = value;
+        tags[index] = tagObj;
     }
 
+    /** Sets a local constant, such as @unit. */
     public void setconst(int index, Object value){
-        Var v = var(index);
-        v.objval = value;
-        v.isobj = true;
+        objs[index] = value;
+        tags[index] |= tagObj;
     }
 
     //endregion
 
-    /** A logic variable. */
+    /** A global constant. Variables of executors are stored in arrays instead. */
     public static class Var{
         public final String name;
 
@@ -254,6 +354,8 @@ public class LExecutor{
 
         @Override
         public void run(LExecutor exec){
+            exec.stats.expensive ++;
+
             Object unitObj = exec.obj(varUnit);
             LogicAI ai = UnitControlI.checkLogicAI(exec, unitObj);
 
@@ -263,28 +365,9 @@ public class LExecutor{
                 Cache cache = (Cache)ai.execCache.get(this, Cache::new);
 
                 if(ai.checkTargetTimer(this)){
-                    Tile res = null;
-                    boolean build = false;
-
-                    switch(locate){
-                        case ore -> {
-                            if(exec.obj(ore) instanceof Item item){
-                                res = indexer.findClosestOre(unit, item);
-                            }
-                        }
-                        case building -> {
-                            res = Geometry.findClosest(unit.x, unit.y, exec.bool(enemy) ? indexer.getEnemy(unit.team, flag) : indexer.getAllied(unit.team, flag));
-                            build = true;
-                        }
-                        case spawn -> {
-                            res = Geometry.findClosest(unit.x, unit.y, Vars.spawner.getSpawns());
-                        }
-                        case damaged -> {
-                            Building b = Units.findDamagedTile(unit.team, unit.x, unit.y);
-                            res = b == null ? null : b.tile;
-                            build = true;
-                        }
-                    }
+                    //results are shared with other processors searching from the same tile this tick
+                    Tile res = logicScheduler.cache.locate(unit.team, unit.x, unit.y, locate, flag, exec.bool(enemy), exec.obj(ore) instanceof Item item ? item : null);
+                    boolean build = locate == LLocate.building || locate == LLocate.damaged;
 
                     if(res != null && (!build || res.build != null)){
                         cache.found = true;
@@ -556,7 +639,10 @@ public class LExecutor{
         public void run(LExecutor exec){
             Object obj = exec.obj(target);
             if(obj instanceof Building b && b.team == exec.team && exec.linkIds.contains(b.id)){
-                if(type.isObj && exec.var(p1).isobj){
+                if(exec.effects != null){
+                    boolean isobj = type.isObj && exec.isobj(p1);
+                    exec.effects.control(b, type, isobj ? exec.obj(p1) : null, isobj, exec.num(p1), exec.num(p2), exec.num(p3), exec.num(p4));
+                }else if(type.isObj && exec.isobj(p1)){
                     b.control(type, exec.obj(p1), exec.num(p2), exec.num(p3), exec.num(p4));
                 }else{
                     b.control(type, exec.num(p1), exec.num(p2), exec.num(p3), exec.num(p4));
@@ -628,7 +714,11 @@ public class LExecutor{
             if(from instanceof MemoryBuild mem && from.team == exec.team){
 
                 if(address >= 0 && address < mem.memory.length){
-                    mem.memory[address] = exec.num(value);
+                    if(exec.effects != null && !exec.effects.owns(mem)){
+                        exec.effects.write(mem, address, exec.num(value));
+                    }else{
+                        mem.memory[address] = exec.num(value);
+                    }
                 }
 
             }
@@ -688,9 +778,6 @@ public class LExecutor{
         public Healthc lastTarget;
         public Interval timer = new Interval();
 
-        static float bestValue = 0f;
-        static Unit best = null;
-
         public RadarI(RadarTarget target1, RadarTarget target2, RadarTarget target3, RadarSort sort, int radar, int sortOrder, int output){
             this.target1 = target1;
             this.target2 = target2;
@@ -706,6 +793,8 @@ public class LExecutor{
 
         @Override
         public void run(LExecutor exec){
+            exec.stats.expensive ++;
+
             Object base = exec.obj(radar);
 
             int sortDir = exec.bool(sortOrder) ? 1 : -1;
@@ -720,30 +809,8 @@ public class LExecutor{
                 //timers update on a fixed 30 tick interval
                 //units update on a special timer per controller instance
                 if((base instanceof Building && timer.get(30f)) || (ai != null && ai.checkTargetTimer(this))){
-                    //if any of the targets involve enemies
-                    boolean enemies = target1 == RadarTarget.enemy || target2 == RadarTarget.enemy || target3 == RadarTarget.enemy;
-                    boolean allies = target1 == RadarTarget.ally || target2 == RadarTarget.ally || target3 == RadarTarget.ally;
-
-                    best = null;
-                    bestValue = 0;
-
-                    if(enemies){
-                        Seq<TeamData> data = state.teams.present;
-                        for(int i = 0; i < data.size; i++){
-                            if(data.items[i].team != r.team()){
-                                find(r, range, sortDir, data.items[i].team);
-                            }
-                        }
-                    }else if(!allies){
-                        Seq<TeamData> data = state.teams.present;
-                        for(int i = 0; i < data.size; i++){
-                            find(r, range, sortDir, data.items[i].team);
-                        }
-                    }else{
-                        find(r, range, sortDir, r.team());
-                    }
-
-                    lastTarget = targeted = best;
+                    //results are shared with other radars at the same position this tick
+                    lastTarget = targeted = logicScheduler.cache.radar(r.team(), r.x(), r.y(), range, target1, target2, target3, sort, sortDir);
                 }else{
                     targeted = lastTarget;
                 }
@@ -753,25 +820,6 @@ public class LExecutor{
                 exec.setobj(output, null);
             }
         }
-
-        void find(Ranged b, float range, int sortDir, Team team){
-            Units.nearby(team, b.x(), b.y(), range, u -> {
-                if(!u.within(b, range)) return;
-
-                boolean valid =
-                    target1.func.get(b.team(), u) &&
-                    target2.func.get(b.team(), u) &&
-                    target3.func.get(b.team(), u);
-
-                if(!valid) return;
-
-                float val = sort.func.get(b, u) * sortDir;
-                if(val > bestValue || best == null){
-                    bestValue = val;
-                    best = u;
-                }
-            });
-        }
     }
 
     public static class SetI implements LInstruction{
@@ -786,21 +834,32 @@ public class LExecutor{
 
         @Override
         public void run(LExecutor exec){
-            Var v = exec.var(to);
-            Var f = exec.var(from);
-
-            if(!v.constant){
-                if(f.isobj){
-                    v.objval = f.objval;
-                    v.isobj = true;
-                }else{
-                    v.numval = invalid(f.numval) ? 0 : f.numval;
-                    v.isobj = false;
-                }
+            if(exec.isobj(from)){
+                exec.setobj(to, exec.obj(from));
+            }else{
+                double value = exec.numval(from);
+                exec.setnum(to, invalid(value) ? 0 : value);
             }
         }
     }
 
+    /** Sets a variable to a constant number. Chosen by {@link LAssembler#optimize()}. */
+    public static class SetNumI extends SetI{
+        public double value;
+
+        public SetNumI(int from, int to, double value){
+            super(from, to);
+            this.value = value;
+        }
+
+        @Override
+        public void run(LExecutor exec){
+            exec.nums[to] = value;
+            exec.objs[to] = null;
+            exec.tags[to] = 0;
+        }
+    }
+
     public static class OpI implements LInstruction{
         public LogicOp op = LogicOp.add;
         public int a, b, dest;
@@ -817,15 +876,11 @@ public class LExecutor{
         @Override
         public void run(LExecutor exec){
             if(op == LogicOp.strictEqual){
-                Var v = exec.var(a), v2 = exec.var(b);
-                exec.setnum(dest, v.isobj == v2.isobj && ((v.isobj && v.objval == v2.objval) || (!v.isobj && v.numval == v2.numval)) ? 1 : 0);
+                exec.setnum(dest, exec.strictEqual(a, b) ? 1 : 0);
             }else if(op.unary){
                 exec.setnum(dest, op.function1.get(exec.num(a)));
             }else{
-                Var va = exec.var(a);
-                Var vb = exec.var(b);
-
-                if(op.objFunction2 != null && va.isobj && vb.isobj){
+                if(op.objFunction2 != null && exec.isobj(a) && exec.isobj(b)){
                     //use object function if both are objects
                     exec.setnum(dest, op.objFunction2.get(exec.obj(a), exec.obj(b)));
                 }else{
@@ -837,11 +892,40 @@ public class LExecutor{
         }
     }
 
+    /** A binary operation that has no object form, so its operands are always read as numbers. Chosen by {@link LAssembler#optimize()}. */
+    public static class NumOpI extends OpI{
+
+        public NumOpI(LogicOp op, int a, int b, int dest){
+            super(op, a, b, dest);
+        }
+
+        @Override
+        public void run(LExecutor exec){
+            double x = exec.num(a), y = exec.num(b), result;
+
+            switch(op){
+                case add: result = x + y; break;
+                case sub: result = x - y; break;
+                case mul: result = x * y; break;
+                case div: result = x / y; break;
+                case mod: result = x % y; break;
+                case lessThan: result = x < y ? 1 : 0; break;
+                case lessThanEq: result = x <= y ? 1 : 0; break;
+                case greaterThan: result = x > y ? 1 : 0; break;
+                case greaterThanEq: result = x >= y ? 1 : 0; break;
+                default: result = op.function2.get(x, y);
+            }
+
+            exec.setnum(dest, result);
+        }
+    }
+
     public static class EndI implements LInstruction{
 
         @Override
         public void run(LExecutor exec){
-            exec.var(varCounter).numval = exec.instructions.length;
+            exec.nums[varCounter] = exec.instructions.length;
+            if(yieldOnEnd) exec.yielded = true;
         }
     }
 
@@ -907,7 +991,9 @@ public class LExecutor{
             if(Vars.headless) return;
 
             if(exec.building(target) instanceof LogicDisplayBuild d && d.team == exec.team){
-                if(d.commands.size + exec.graphicsBuffer.size < maxDisplayBuffer){
+                if(exec.effects != null){
+                    exec.effects.draw(d, exec.graphicsBuffer);
+                }else if(d.commands.size + exec.graphicsBuffer.size < maxDisplayBuffer){
                     for(int i = 0; i < exec.graphicsBuffer.size; i++){
                         d.commands.addLast(exec.graphicsBuffer.items[i]);
                     }
@@ -932,17 +1018,17 @@ public class LExecutor{
             if(exec.textBuffer.length() >= maxTextBuffer) return;
 
             //this should avoid any garbage allocation
-            Var v = exec.var(value);
-            if(v.isobj && value != 0){
-                String strValue = toString(v.objval);
+            if(exec.isobj(value) && value != 0){
+                String strValue = toString(exec.obj(value));
 
                 exec.textBuffer.append(strValue);
             }else{
+                double num = exec.numval(value);
                 //display integer version when possible
-                if(Math.abs(v.numval - (long)v.numval) < 0.00001){
-                    exec.textBuffer.append((long)v.numval);
+                if(Math.abs(num - (long)num) < 0.00001){
+                    exec.textBuffer.append((long)num);
                 }else{
-                    exec.textBuffer.append(v.numval);
+                    exec.textBuffer.append(num);
                 }
             }
         }
@@ -976,8 +1062,12 @@ public class LExecutor{
 
             if(exec.building(target) instanceof MessageBuild d && d.team == exec.team){
 
-                d.message.setLength(0);
-                d.message.append(exec.textBuffer, 0, Math.min(exec.textBuffer.length(), maxTextBuffer));
+                if(exec.effects != null){
+                    exec.effects.print(d, exec.textBuffer.substring(0, Math.min(exec.textBuffer.length(), maxTextBuffer)));
+                }else{
+                    d.message.setLength(0);
+                    d.message.append(exec.textBuffer, 0, Math.min(exec.textBuffer.length(), maxTextBuffer));
+                }
 
                 exec.textBuffer.setLength(0);
             }
@@ -1001,13 +1091,11 @@ public class LExecutor{
         @Override
         public void run(LExecutor exec){
             if(address != -1){
-                Var va = exec.var(value);
-                Var vb = exec.var(compare);
                 boolean cmp;
 
                 if(op == ConditionOp.strictEqual){
-                    cmp = va.isobj == vb.isobj && ((va.isobj && va.objval == vb.objval) || (!va.isobj && va.numval == vb.numval));
-                }else if(op.objFunction != null && va.isobj && vb.isobj){
+                    cmp = exec.strictEqual(value, compare);
+                }else if(op.objFunction != null && exec.isobj(value) && exec.isobj(compare)){
                     //use object function if both are objects
                     cmp = op.objFunction.get(exec.obj(value), exec.obj(compare));
                 }else{
@@ -1015,12 +1103,51 @@ public class LExecutor{
                 }
 
                 if(cmp){
-                    exec.var(varCounter).numval = address;
+                    exec.nums[varCounter] = address;
                 }
             }
         }
     }
 
+    /** A jump that compares numbers only. Chosen by {@link LAssembler#optimize()}. */
+    public static class NumJumpI extends JumpI{
+
+        public NumJumpI(ConditionOp op, int value, int compare, int address){
+            super(op, value, compare, address);
+        }
+
+        @Override
+        public void run(LExecutor exec){
+            double a = exec.num(value), b = exec.num(compare);
+            boolean cmp;
+
+            switch(op){
+                case lessThan: cmp = a < b; break;
+                case lessThanEq: cmp = a <= b; break;
+                case greaterThan: cmp = a > b; break;
+                case greaterThanEq: cmp = a >= b; break;
+                default: cmp = op.function.get(a, b);
+            }
+
+            if(cmp){
+                exec.nums[varCounter] = address;
+            }
+        }
+    }
+
+    /** A jump that is always taken. Chosen by {@link LAssembler#optimize()}. */
+    public static class GotoI extends JumpI{
+
+        public GotoI(int value, int compare, int address){
+            super(ConditionOp.always, value, compare, address);
+        }
+
+        @Override
+        public void run(LExecutor exec){
+            exec.nums[varCounter] = address;
+        }
+    }
+
     public static class WaitI implements LInstruction{
         public int value;
 
@@ -1038,17 +1165,24 @@ public class LExecutor{
 
         @Override
         public void run(LExecutor exec){
+            boolean waiting = false;
             if(curTime >= exec.num(value)){
                 curTime = 0f;
             }else{
                 //skip back to self.
-                exec.var(varCounter).numval --;
+                exec.nums[varCounter] --;
+                waiting = true;
             }
 
             if(Core.graphics.getFrameId() != frameId){
                 curTime += Time.delta / 60f;
                 frameId = Core.graphics.getFrameId();
             }
+
+            //the time only advances once per frame, so running this again before then does nothing
+            if(waiting && curTime < exec.num(value)){
+                exec.yielded = true;
+            }
         }
     }
 
@@ -0,0 +1,333 @@
+package mindustry.logic;
+
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.*;
+import mindustry.core.*;
+import mindustry.entities.*;
+import mindustry.game.*;
+import mindustry.game.Teams.*;
+import mindustry.gen.*;
+import mindustry.type.*;
+import mindustry.world.*;
+import mindustry.world.meta.*;
+
+import java.util.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Results of radar and unit locate searches, shared by all processors during one tick.
+ * Searches are done from a quantized position, so that every processor asking the same question near the same spot
+ * gets the same answer, regardless of which one asked first. Cleared by {@link LogicScheduler} every tick.
+ * <p>
+ * Closest-unit radar searches use a per-team grid of unit positions, which is searched in rings of cells around the
+ * origin and stops as soon as no closer unit can exist, instead of visiting every unit in range.
+ */
+public class LogicCache{
+    /** Size of a unit grid cell in world units. */
+    static final float cellSize = 64f;
+
+    private final ObjectMap<Query, Object> results = new ObjectMap<>();
+    private final Query key = new Query();
+    /** Marker for searches that found nothing. */
+    private final Object none = new Object();
+    private final TeamGrid[] grids = new TeamGrid[Team.all.length];
+
+    private final Vec2 origin = new Vec2();
+    private Unit best;
+    private float bestValue;
+
+    /** Amount of searches that were answered from the cache this tick, and the amount of searches done. */
+    public int hits, misses;
+
+    /** Forgets all results. Must be called whenever units may have moved. */
+    public synchronized void clear(){
+        results.clear();
+        for(TeamGrid grid : grids){
+            if(grid != null) grid.valid = false;
+        }
+        hits = misses = 0;
+    }
+
+    /**
+     * Finds the best unit around a radar, as {@link LExecutor.RadarI} does.
+     * @param sortDir 1 to find the unit with the highest sort value, -1 for the lowest.
+     */
+    public synchronized @Nullable Unit radar(Team team, float x, float y, float range, RadarTarget target1, RadarTarget target2, RadarTarget target3, RadarSort sort, int sortDir){
+        float qx = (int)x, qy = (int)y;
+
+        key.set(team, qx, qy, range, (((target1.ordinal() * 16 + target2.ordinal()) * 16 + target3.ordinal()) * 8 + sort.ordinal()) * 2 + (sortDir > 0 ? 1 : 0), 0, null);
+        Object cached = results.get(key);
+        if(cached != null){
+            hits ++;
+            return cached == none ? null : (Unit)cached;
+        }
+        misses ++;
+
+        //if any of the targets involve enemies
+        boolean enemies = target1 == RadarTarget.enemy || target2 == RadarTarget.enemy || target3 == RadarTarget.enemy;
+        boolean allies = target1 == RadarTarget.ally || target2 == RadarTarget.ally || target3 == RadarTarget.ally;
+
+        best = null;
+        bestValue = 0f;
+        Seq<TeamData> data = state.teams.present;
+
+        if(sort == RadarSort.distance && sortDir > 0){
+            //closest unit; teams are checked in the same order as a full search, so ties resolve the same way
+            float bestDst = Float.POSITIVE_INFINITY;
+            if(enemies || !allies){
+                for(int i = 0; i < data.size; i++){
+                    Team other = data.items[i].team;
+                    if(!enemies || other != team){
+                        bestDst = grid(other).closest(team, qx, qy, range, bestDst, target1, target2, target3);
+                    }
+                }
+            }else{
+                grid(team).closest(team, qx, qy, range, bestDst, target1, target2, target3);
+            }
+        }else{
+            if(enemies){
+                for(int i = 0; i < data.size; i++){
+                    if(data.items[i].team != team){
+                        find(team, qx, qy, range, target1, target2, target3, sort, sortDir, data.items[i].team);
+                    }
+                }
+            }else if(!allies){
+                for(int i = 0; i < data.size; i++){
+                    find(team, qx, qy, range, target1, target2, target3, sort, sortDir, data.items[i].team);
+                }
+            }else{
+                find(team, qx, qy, range, target1, target2, target3, sort, sortDir, team);
+            }
+        }
+
+        Unit result = best;
+        best = null;
+        results.put(key.copy(), result == null ? none : result);
+        return result;
+    }
+
+    private void find(Team team, float x, float y, float range, RadarTarget target1, RadarTarget target2, RadarTarget target3, RadarSort sort, int sortDir, Team other){
+        origin.set(x, y);
+        Units.nearby(other, x, y, range, u -> {
+            if(!u.within(x, y, range)) return;
+
+            if(!target1.func.get(team, u) || !target2.func.get(team, u) || !target3.func.get(team, u)) return;
+
+            float val = sort.func.get(origin, u) * sortDir;
+            if(val > bestValue || best == null){
+                bestValue = val;
+                best = u;
+            }
+        });
+    }
+
+    /** Finds a tile for {@link LExecutor.UnitLocateI}, searching from the center of the tile the unit is on. */
+    public synchronized @Nullable Tile locate(Team team, float x, float y, LLocate locate, BlockFlag flag, boolean enemy, @Nullable Item ore){
+        int tx = World.toTile(x), ty = World.toTile(y);
+        float qx = tx * tilesize, qy = ty * tilesize;
+
+        //only use the parameters that matter for this search, so that more processors can share it
+        if(locate != LLocate.building){
+            flag = BlockFlag.core;
+            enemy = false;
+        }
+        if(locate != LLocate.ore){
+            ore = null;
+        }
+
+        key.set(team, qx, qy, 0f, (locate.ordinal() * 64 + flag.ordinal()) * 2 + (enemy ? 1 : 0), 1, ore);
+        Object cached = results.get(key);
+        if(cached != null){
+            hits ++;
+            return cached == none ? null : (Tile)cached;
+        }
+        misses ++;
+
+        Tile res = null;
+        switch(locate){
+            case ore -> {
+                if(ore != null){
+                    res = indexer.findClosestOre(qx, qy, ore);
+                }
+            }
+            case building -> res = enemy ? indexer.findClosestEnemyFlag(qx, qy, team, flag) : indexer.findClosestFlag(qx, qy, team, flag);
+            case spawn -> res = Geometry.findClosest(qx, qy, Vars.spawner.getSpawns());
+            case damaged -> {
+                Building b = Units.findDamagedTile(team, qx, qy);
+                res = b == null ? null : b.tile;
+            }
+        }
+
+        results.put(key.copy(), res == null ? none : res);
+        return res;
+    }
+
+    private TeamGrid grid(Team team){
+        TeamGrid grid = grids[team.id];
+        if(grid == null) grid = grids[team.id] = new TeamGrid();
+        if(!grid.valid) grid.build(team.data().units);
+        return grid;
+    }
+
+    /** Positions of a team's units, sorted by grid cell. */
+    private class TeamGrid{
+        boolean valid;
+        final Seq<Unit> units = new Seq<>(false, 16, Unit.class);
+        float[] xs = {}, ys = {};
+        int[] cellStart = {0}, cellFill = {};
+        float originX, originY;
+        int width, height;
+
+        void build(Seq<Unit> source){
+            valid = true;
+            int size = source.size;
+            units.clear();
+
+            //the grid only covers the area the units are in
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+            for(int i = 0; i < size; i++){
+                Unit u = source.items[i];
+                minX = Math.min(minX, u.x);
+                minY = Math.min(minY, u.y);
+                maxX = Math.max(maxX, u.x);
+                maxY = Math.max(maxY, u.y);
+            }
+
+            if(size == 0){
+                width = height = 0;
+                return;
+            }
+
+            originX = minX;
+            originY = minY;
+            width = (int)((maxX - minX) / cellSize) + 1;
+            height = (int)((maxY - minY) / cellSize) + 1;
+
+            int cells = width * height;
+            if(cellStart.length < cells + 1){
+                cellStart = new int[cells + 1];
+                cellFill = new int[cells];
+            }else{
+                Arrays.fill(cellStart, 0, cells + 1, 0);
+            }
+            if(xs.length < size){
+                xs = new float[size];
+                ys = new float[size];
+            }
+            units.ensureCapacity(size);
+            units.size = size;
+
+            for(int i = 0; i < size; i++){
+                cellStart[cell(source.items[i]) + 1] ++;
+            }
+            for(int c = 0; c < cells; c++){
+                cellStart[c + 1] += cellStart[c];
+            }
+            System.arraycopy(cellStart, 0, cellFill, 0, cells);
+
+            //units keep their relative order inside a cell
+            for(int i = 0; i < size; i++){
+                Unit u = source.items[i];
+                int index = cellFill[cell(u)] ++;
+                units.items[index] = u;
+                xs[index] = u.x;
+                ys[index] = u.y;
+            }
+        }
+
+        int cell(Unit u){
+            return (int)((u.y - originY) / cellSize) * width + (int)((u.x - originX) / cellSize);
+        }
+
+        /**
+         * Searches rings of cells around a point for the closest unit that passes the filters, updating {@link #best}.
+         * @return the squared distance to the closest unit found, or bestDst if there is none closer.
+         */
+        float closest(Team team, float x, float y, float range, float bestDst, RadarTarget target1, RadarTarget target2, RadarTarget target3){
+            if(width == 0) return bestDst;
+
+            float range2 = range * range;
+            float lx = x - originX, ly = y - originY;
+            int cx = (int)Math.floor(lx / cellSize), cy = (int)Math.floor(ly / cellSize);
+            //every unit outside the point's own cell is at least this far away
+            float edge = Math.min(Math.min(lx - cx * cellSize, (cx + 1) * cellSize - lx), Math.min(ly - cy * cellSize, (cy + 1) * cellSize - ly));
+            //rings past this one are entirely outside the grid
+            int maxRing = Math.max(Math.max(Math.abs(cx), Math.abs(width - 1 - cx)), Math.max(Math.abs(cy), Math.abs(height - 1 - cy)));
+
+            for(int ring = 0; ring <= maxRing; ring++){
+                if(ring > 0){
+                    float min = edge + (ring - 1) * cellSize;
+                    if(min * min >= range2 || min * min > bestDst) break;
+                }
+
+                for(int gy = cy - ring; gy <= cy + ring; gy++){
+                    if(gy < 0 || gy >= height) continue;
+                    //only the first and last row of a ring are full; other rows only have their two ends
+                    int step = ring == 0 || gy == cy - ring || gy == cy + ring ? 1 : ring * 2;
+
+                    for(int gx = cx - ring; gx <= cx + ring; gx += step){
+                        if(gx < 0 || gx >= width) continue;
+
+                        int cell = gy * width + gx;
+                        for(int i = cellStart[cell], end = cellStart[cell + 1]; i < end; i++){
+                            float dst = Mathf.dst2(x, y, xs[i], ys[i]);
+                            //equal distances keep the unit found first
+                            if(dst < range2 && dst < bestDst){
+                                Unit u = units.items[i];
+                                if(target1.func.get(team, u) && target2.func.get(team, u) && target3.func.get(team, u)){
+                                    bestDst = dst;
+                                    best = u;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            return bestDst;
+        }
+    }
+
+    /** Key of a cached search. */
+    static class Query{
+        Team team;
+        float x, y, range;
+        int filter, type;
+        @Nullable Object content;
+
+        Query set(Team team, float x, float y, float range, int filter, int type, @Nullable Object content){
+            this.team = team;
+            this.x = x;
+            this.y = y;
+            this.range = range;
+            this.filter = filter;
+            this.type = type;
+            this.content = content;
+            return this;
+        }
+
+        Query copy(){
+            return new Query().set(team, x, y, range, filter, type, content);
+        }
+
+        @Override
+        public boolean equals(Object o){
+            return o instanceof Query q && q.team == team && q.x == x && q.y == y && q.range == range && q.filter == filter && q.type == type && q.content == content;
+        }
+
+        @Override
+        public int hashCode(){
+            int h = team.id;
+            h = h * 31 + Float.floatToIntBits(x);
+            h = h * 31 + Float.floatToIntBits(y);
+            h = h * 31 + Float.floatToIntBits(range);
+            h = h * 31 + filter;
+            h = h * 31 + type;
+            return h * 31 + (content == null ? 0 : content.hashCode());
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package mindustry.logic;
+
+import arc.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.game.EventType.*;
+import mindustry.gen.*;
+import mindustry.logic.LExecutor.*;
+import mindustry.world.blocks.logic.LogicBlock.*;
+import mindustry.world.blocks.logic.LogicDisplay.*;
+import mindustry.world.blocks.logic.MemoryBlock.*;
+import mindustry.world.blocks.logic.MessageBlock.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Hands out instructions to logic processors, keeping the total amount of logic work per tick within a global budget.
+ * When processors ask for more than the budget allows, every processor gets the same fraction of what it asked for;
+ * the rest stays in its accumulator. Also collects per-processor profiling counters.
+ * <p>
+ * With more than one thread, processors that only compute, sense and use their own buffers are queued instead, and run
+ * concurrently once all buildings have updated. Their changes to shared buildings are applied afterwards, in update order.
+ * Queued processors that read a memory cell which is shared with other queued processors and written by any of them run one at a time,
+ * in update order, so they see the same values they would have seen without the parallel phase.
+ * <p>
+ * Note that the whole phase runs after every other entity has updated, so it is only used when {@link #threads} is more than 1. Queued processors therefore see the state at the end of the tick,
+ * and their changes are applied after processors on the main thread and buildings that update later in the same tick.
+ */
+public class LogicScheduler{
+    /** Length of a profiling window, in ticks. */
+    public static final int window = 60;
+    /** Instructions that may run off the main thread. Changes to other buildings are recorded in {@link Effects}. */
+    static final ObjectSet<Class<?>> parallelInstructions = ObjectSet.with(
+        SetI.class, SetNumI.class, OpI.class, NumOpI.class, JumpI.class, NumJumpI.class, GotoI.class, NoopI.class, EndI.class, WaitI.class,
+        LookupI.class, GetLinkI.class, SenseI.class, ReadI.class, WriteI.class, PrintI.class, PrintFlushI.class, DrawI.class, DrawFlushI.class, ControlI.class,
+        RadarI.class
+    );
+    private static final int sharedCell = -2;
+
+    /** Maximum amount of instructions all processors may run per tick. 0 for no limit. */
+    public int instructionBudget;
+    /** Maximum time all processors may take per tick, in milliseconds. 0 for no limit. Not deterministic, so only for servers. */
+    public float timeBudget;
+    /**
+     * Amount of threads used in the parallel phase, including the main thread. 1 or less disables it, which is the default:
+     * every processor then runs during its own building's update, in the same order as without the scheduler.
+     */
+    public int threads;
+
+    /** Fraction of the requested instructions that processors may run this tick. */
+    public float scale = 1f;
+    /** Radar and unit locate results of the current tick. */
+    public final LogicCache cache = new LogicCache();
+
+    /** Totals of the last tick. */
+    public long lastRequested, lastInstructions, lastNanos;
+    /** Totals of the last profiling window. */
+    public long windowInstructions, windowExpensive, windowNanos;
+    /** Processors that ran during the last profiling window. */
+    public final Seq<LogicBuild> profiled = new Seq<>(false, 16, LogicBuild.class);
+
+    private final Seq<LogicBuild> active = new Seq<>(false, 16, LogicBuild.class);
+    private long requested, instructions, nanos;
+    private long nextInstructions, nextExpensive, nextNanos;
+    private int ticks, windowId = 1;
+
+    private final Seq<LogicBuild> queued = new Seq<>(false, 16, LogicBuild.class);
+    private final IntSeq queuedSteps = new IntSeq();
+    private final Seq<Effects> effects = new Seq<>(Effects.class);
+    private final IntIntMap cellOwners = new IntIntMap();
+    private final IntSet writtenCells = new IntSet();
+    private final AtomicInteger next = new AtomicInteger();
+    private final Runnable worker = this::work;
+    private int[] queuedRan = {}, queuedExpensive = {};
+    private boolean[] queuedSerial = {};
+    private long[] queuedNanos = {};
+    private @Nullable ExecutorService pool;
+    private int poolThreads;
+
+    public LogicScheduler(){
+        Events.on(ResetEvent.class, e -> clear());
+        Events.on(WorldLoadEvent.class, e -> clear());
+    }
+
+    /** Called once per tick, before buildings update. */
+    public void update(){
+        cache.clear();
+
+        lastRequested = requested;
+        lastInstructions = instructions;
+        lastNanos = nanos;
+
+        //throttle based on what was asked for during the last tick
+        float next = 1f;
+        if(instructionBudget > 0 && requested > instructionBudget){
+            next = instructionBudget / (float)requested;
+        }
+        if(timeBudget > 0 && instructions > 0 && nanos > 0){
+            //estimate how many instructions fit in the budget, at last tick's cost per instruction
+            float fit = timeBudget * 1_000_000f / ((float)nanos / instructions);
+            next = Math.min(next, fit / requested);
+        }
+        scale = next;
+        requested = instructions = nanos = 0;
+
+        if(++ticks >= window){
+            ticks = 0;
+
+            windowInstructions = nextInstructions;
+            windowExpensive = nextExpensive;
+            windowNanos = nextNanos;
+            nextInstructions = nextExpensive = nextNanos = 0;
+
+            profiled.clear();
+            for(LogicBuild build : active){
+                build.executor.stats.roll();
+                profiled.add(build);
+            }
+            active.clear();
+            windowId ++;
+        }
+    }
+
+    /**
+     * Runs a processor for this tick.
+     * @param steps how many instructions the processor wants to run.
+     * @return how many instructions it was allowed to use. Instructions that were skipped because the processor yielded still count as used.
+     */
+    public int run(LogicBuild build, int steps){
+        if(steps <= 0) return 0;
+
+        requested += steps;
+        int granted = scale >= 1f ? steps : (int)(steps * scale);
+        if(granted <= 0) return 0;
+
+        LExecutor exec = build.executor;
+        Stats stats = exec.stats;
+        if(stats.window != windowId){
+            //counters may be left over from a window this processor was not part of
+            stats.window = windowId;
+            stats.instructions = stats.expensive = 0;
+            stats.nanos = 0;
+            active.add(build);
+        }
+
+        if(threads > 1 && parallel(exec)){
+            queued.add(build);
+            queuedSteps.add(granted);
+            return granted;
+        }
+
+        int expensive = stats.expensive;
+        long start = Time.nanos();
+        int ran = exec.run(granted);
+        record(stats, ran, Time.nanos() - start, stats.expensive - expensive);
+
+        return granted;
+    }
+
+    /**
+     * Runs the processors that were queued during this tick, then applies their changes to shared buildings in the order they were queued.
+     * Processors that read a shared cell that is written during the phase run during that pass instead, directly on the main thread.
+     */
+    public void flush(){
+        int size = queued.size;
+        if(size == 0) return;
+
+        if(queuedRan.length < size){
+            queuedRan = new int[size];
+            queuedExpensive = new int[size];
+            queuedNanos = new long[size];
+            queuedSerial = new boolean[size];
+        }
+        while(effects.size < size){
+            effects.add(new Effects());
+        }
+
+        //memory cells used by only one queued processor belong to it; writes to any other cell are recorded
+        cellOwners.clear();
+        writtenCells.clear();
+        for(int i = 0; i < size; i++){
+            LExecutor exec = queued.items[i].executor;
+            use(exec, exec.readVars, i);
+            use(exec, exec.writeVars, i);
+            for(int var : exec.writeVars){
+                if(exec.building(var) instanceof MemoryBuild mem) writtenCells.add(mem.id);
+            }
+        }
+
+        for(int i = 0; i < size; i++){
+            LExecutor exec = queued.items[i].executor;
+
+            //writes to shared cells are buffered, so reading a shared cell that anyone writes, this processor included, would see stale values
+            boolean serial = false;
+            for(int var : exec.readVars){
+                if(exec.building(var) instanceof MemoryBuild mem){
+                    serial |= writtenCells.contains(mem.id) && cellOwners.get(mem.id, -1) == sharedCell;
+                }
+            }
+            queuedSerial[i] = serial;
+            if(serial) continue;
+
+            Effects buffer = effects.items[i];
+            for(int var : exec.readVars){
+                own(exec, var, buffer, i);
+            }
+            for(int var : exec.writeVars){
+                own(exec, var, buffer, i);
+            }
+            exec.effects = buffer;
+        }
+
+        try{
+            if(pool == null || poolThreads != threads){
+                if(pool != null) pool.shutdown();
+                pool = Threads.executor(threads - 1);
+                poolThreads = threads;
+            }
+
+            next.set(0);
+            Future<?>[] futures = new Future[Math.min(threads, size) - 1];
+            for(int i = 0; i < futures.length; i++){
+                futures[i] = pool.submit(worker);
+            }
+
+            //the main thread takes part as well
+            work();
+
+            for(Future<?> future : futures){
+                try{
+                    future.get();
+                }catch(ExecutionException e){
+                    throw new RuntimeException(e.getCause());
+                }catch(InterruptedException e){
+                    throw new RuntimeException(e);
+                }
+            }
+
+            for(int i = 0; i < size; i++){
+                if(queuedSerial[i]){
+                    //sees every change of the processors queued before it, like it would have during the update
+                    run(queued.items[i].executor, i);
+                }else{
+                    effects.items[i].apply();
+                }
+                record(queued.items[i].executor.stats, queuedRan[i], queuedNanos[i], queuedExpensive[i]);
+            }
+        }finally{
+            for(int i = 0; i < size; i++){
+                queued.items[i].executor.effects = null;
+                effects.items[i].clear();
+            }
+            queued.clear();
+            queuedSteps.clear();
+        }
+    }
+
+    private void work(){
+        int i;
+        while((i = next.getAndIncrement()) < queued.size){
+            if(!queuedSerial[i]){
+                run(queued.items[i].executor, i);
+            }
+        }
+    }
+
+    private void run(LExecutor exec, int i){
+        int expensive = exec.stats.expensive;
+        long start = Time.nanos();
+        queuedRan[i] = exec.run(queuedSteps.items[i]);
+        queuedNanos[i] = Time.nanos() - start;
+        queuedExpensive[i] = exec.stats.expensive - expensive;
+    }
+
+    /** Marks the cells of these variables as used by a queued processor, or by several. */
+    private void use(LExecutor exec, int[] vars, int index){
+        for(int var : vars){
+            if(exec.building(var) instanceof MemoryBuild mem){
+                int user = cellOwners.get(mem.id, -1);
+                cellOwners.put(mem.id, user == -1 || user == index ? index : sharedCell);
+            }
+        }
+    }
+
+    private void own(LExecutor exec, int var, Effects buffer, int index){
+        if(exec.building(var) instanceof MemoryBuild mem && cellOwners.get(mem.id, sharedCell) == index && !buffer.owned.contains(mem, true)){
+            buffer.owned.add(mem);
+        }
+    }
+
+    private void record(Stats stats, int ran, long time, int expensive){
+        stats.instructions += ran;
+        stats.nanos += time;
+        instructions += ran;
+        nanos += time;
+        nextInstructions += ran;
+        nextNanos += time;
+        nextExpensive += expensive;
+    }
+
+    /** @return whether a processor can run in the parallel phase. The result is cached until its program changes. */
+    static boolean parallel(LExecutor exec){
+        if(exec.readVars == null){
+            IntSeq reads = new IntSeq(), writes = new IntSeq();
+            boolean safe = true;
+
+            for(LInstruction inst : exec.instructions){
+                if(!parallelInstructions.contains(inst.getClass())){
+                    safe = false;
+                }else if(inst instanceof OpI op){
+                    //random numbers come from a shared generator
+                    safe &= op.op != LogicOp.rand;
+                }else if(inst instanceof RadarI radar){
+                    //radars of linked buildings only read the shared cache; unit radars take control of the unit
+                    safe &= exec.constant(radar.radar) && radar.radar != LExecutor.varUnit;
+                }else if(inst instanceof ReadI read){
+                    //cells must be known in advance, so that each processor has a fixed set of them
+                    safe &= exec.constant(read.target);
+                    reads.add(read.target);
+                }else if(inst instanceof WriteI write){
+                    safe &= exec.constant(write.target);
+                    writes.add(write.target);
+                }
+            }
+
+            exec.parallel = safe;
+            exec.readVars = reads.toArray();
+            exec.writeVars = writes.toArray();
+        }
+        return exec.parallel;
+    }
+
+    /** @return processors of the last profiling window, sorted by time taken, slowest first. */
+    public Seq<LogicBuild> slowest(int amount){
+        Seq<LogicBuild> result = profiled.copy().sort(b -> -b.executor.stats.lastNanos);
+        if(result.size > amount) result.truncate(amount);
+        return result;
+    }
+
+    /** Appends metrics in the Prometheus text format. */
+    public void writeMetrics(StringBuilder out){
+        out.append("# TYPE mindustry_logic_scale gauge\n");
+        out.append("mindustry_logic_scale ").append(scale).append('\n');
+        out.append("# TYPE mindustry_logic_processors gauge\n");
+        out.append("mindustry_logic_processors ").append(profiled.size).append('\n');
+        out.append("# TYPE mindustry_logic_instructions gauge\n");
+        out.append("mindustry_logic_instructions ").append(windowInstructions).append('\n');
+        out.append("# TYPE mindustry_logic_expensive_instructions gauge\n");
+        out.append("mindustry_logic_expensive_instructions ").append(windowExpensive).append('\n');
+        out.append("# TYPE mindustry_logic_seconds gauge\n");
+        out.append("mindustry_logic_seconds ").append(windowNanos / 1e9).append('\n');
+
+        out.append("# TYPE mindustry_logic_cache_hits gauge\n");
+        out.append("mindustry_logic_cache_hits ").append(cache.hits).append('\n');
+        out.append("# TYPE mindustry_logic_cache_misses gauge\n");
+        out.append("mindustry_logic_cache_misses ").append(cache.misses).append('\n');
+
+        out.append("# TYPE mindustry_logic_processor_seconds gauge\n");
+        for(LogicBuild build : slowest(10)){
+            out.append("mindustry_logic_processor_seconds{x=\"").append(build.tile.x).append("\",y=\"").append(build.tile.y)
+                .append("\",block=\"").append(build.block.name).append("\"} ").append(build.executor.stats.lastNanos / 1e9).append('\n');
+        }
+    }
+
+    public void clear(){
+        for(int i = 0; i < queued.size; i++){
+            queued.items[i].executor.effects = null;
+        }
+        queued.clear();
+        queuedSteps.clear();
+        cache.clear();
+        active.clear();
+        profiled.clear();
+        scale = 1f;
+        requested = instructions = nanos = 0;
+        lastRequested = lastInstructions = lastNanos = 0;
+        nextInstructions = nextExpensive = nextNanos = 0;
+        windowInstructions = windowExpensive = windowNanos = 0;
+        ticks = 0;
+        windowId ++;
+    }
+
+    /** Profiling counters of one processor. Counters are collected over a window of {@link #window} ticks. */
+    public static class Stats{
+        /** Counters of the current window. Expensive instructions are radar and unit locate instructions. */
+        public int instructions, expensive;
+        public long nanos;
+        /** Counters of the last complete window. */
+        public int lastInstructions, lastExpensive;
+        public long lastNanos;
+
+        int window;
+
+        void roll(){
+            lastInstructions = instructions;
+            lastExpensive = expensive;
+            lastNanos = nanos;
+            instructions = expensive = 0;
+            nanos = 0;
+        }
+    }
+
+    /** Changes that a processor in the parallel phase made to shared buildings, in the order it made them. */
+    public static class Effects{
+        static final int write = 0, control = 1, draw = 2, print = 3;
+
+        /** Memory cells that no other queued processor uses; these are written to directly. */
+        final Seq<Building> owned = new Seq<>(false, 4, Building.class);
+        final IntSeq kinds = new IntSeq();
+        final Seq<Object> objects = new Seq<>();
+        final LongSeq values = new LongSeq();
+
+        public boolean owns(Building build){
+            return owned.contains(build, true);
+        }
+
+        public void write(MemoryBuild mem, int address, double value){
+            kinds.add(write);
+            objects.add(mem);
+            values.add(address);
+            values.add(Double.doubleToRawLongBits(value));
+        }
+
+        public void control(Building build, LAccess type, @Nullable Object p1, boolean isobj, double p1num, double p2, double p3, double p4){
+            kinds.add(control);
+            objects.add(build);
+            objects.add(type);
+            objects.add(p1);
+            values.add(isobj ? 1 : 0);
+            values.add(Double.doubleToRawLongBits(p1num));
+            values.add(Double.doubleToRawLongBits(p2));
+            values.add(Double.doubleToRawLongBits(p3));
+            values.add(Double.doubleToRawLongBits(p4));
+        }
+
+        public void draw(LogicDisplayBuild display, LongSeq commands){
+            kinds.add(draw);
+            objects.add(display);
+            values.add(commands.size);
+            for(int i = 0; i < commands.size; i++){
+                values.add(commands.items[i]);
+            }
+        }
+
+        public void print(MessageBuild message, String text){
+            kinds.add(print);
+            objects.add(message);
+            objects.add(text);
+        }
+
+        void apply(){
+            Object[] objs = objects.items;
+            long[] vals = values.items;
+            int o = 0, v = 0;
+
+            for(int i = 0; i < kinds.size; i++){
+                switch(kinds.items[i]){
+                    case write -> {
+                        MemoryBuild mem = (MemoryBuild)objs[o++];
+                        int address = (int)vals[v++];
+                        mem.memory[address] = Double.longBitsToDouble(vals[v++]);
+                    }
+                    case control -> {
+                        Building build = (Building)objs[o++];
+                        LAccess type = (LAccess)objs[o++];
+                        Object p1 = objs[o++];
+                        boolean isobj = vals[v++] != 0;
+                        double p1num = Double.longBitsToDouble(vals[v++]), p2 = Double.longBitsToDouble(vals[v++]),
+                            p3 = Double.longBitsToDouble(vals[v++]), p4 = Double.longBitsToDouble(vals[v++]);
+
+                        if(isobj){
+                            build.control(type, p1, p2, p3, p4);
+                        }else{
+                            build.control(type, p1num, p2, p3, p4);
+                        }
+                    }
+                    case draw -> {
+                        LogicDisplayBuild display = (LogicDisplayBuild)objs[o++];
+                        int count = (int)vals[v++];
+                        if(display.commands.size + count < LExecutor.maxDisplayBuffer){
+                            for(int j = 0; j < count; j++){
+                                display.commands.addLast(vals[v + j]);
+                            }
+                        }
+                        v += count;
+                    }
+                    case print -> {
+                        MessageBuild message = (MessageBuild)objs[o++];
+                        message.message.setLength(0);
+                        message.message.append((String)objs[o++]);
+                    }
+                }
+            }
+        }
+
+        void clear(){
+            owned.clear();
+            kinds.clear();
+            objects.clear();
+            values.clear();
+        }
+    }
+}
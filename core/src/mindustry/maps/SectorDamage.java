@@ -20,7 +20,12 @@ import mindustry.world.blocks.storage.*;
 import static mindustry.Vars.*;
 
 public class SectorDamage{
-    public static final int maxRetWave = 40, maxWavesSimulated = 50;
+    /** Most waves survived that {@link #getWavesSurvived(SectorInfo)} reports. */
+    public static final int maxRetWave = 40;
+    /** Waves the fallback estimate simulates at most, for sectors without path data; {@link SectorSimulator#maxWaves} is the limit of the path simulation. */
+    public static final int maxWavesSimulated = 50;
+    /** Maximum amount of segments that the enemy path is split into for {@link SectorSimulator}. */
+    public static final int maxPathSegments = 64;
 
     //direct damage is for testing only
     private static final boolean rubble = true;
@@ -43,6 +48,11 @@ public class SectorDamage{
     /** @return calculated capture progress of the enemy if retWave if false, otherwise return the maximum waves survived as int.
      * if it survives all the waves, returns maxRetWave. */
     public static float getDamage(SectorInfo info, int wavesPassed, boolean retWave){
+        //older saves do not have the defenses along the path
+        if(SectorSimulator.canSimulate(info)){
+            return SectorSimulator.simulate(info, wavesPassed, retWave);
+        }
+
         float health = info.sumHealth;
         int wave = info.wave;
         float waveSpace = info.waveSpacing;
@@ -224,17 +234,17 @@ public class SectorDamage{
         //create sparse tile array for fast range query
         int sparseSkip = 5, sparseSkip2 = 3;
         Seq<Tile> sparse = new Seq<>(path.size / sparseSkip + 1);
-        Seq<Tile> sparse2 = new Seq<>(path.size / sparseSkip2 + 1);
 
-        for(int i = 0; i < path.size; i++){
-            if(i % sparseSkip == 0){
-                sparse.add(path.get(i));
-            }
-            if(i % sparseSkip2 == 0){
-                sparse2.add(path.get(i));
-            }
+        for(int i = 0; i < path.size; i += sparseSkip){
+            sparse.add(path.get(i));
         }
 
+        //the path is split into segments for the wave simulation
+        int segmentTiles = Math.max(path.size / maxPathSegments + 1, 4), segments = (path.size + segmentTiles - 1) / segmentTiles;
+        float[] pathHealth = new float[segments];
+        FloatSeq turretDps = new FloatSeq();
+        IntSeq turretSegments = new IntSeq();
+
         //regen is in health per second
         //dps is per second
         float sumHealth = 0f, sumRps = 0f, sumDps = 0f;
@@ -246,7 +256,8 @@ public class SectorDamage{
         int radius = 5;
         IntSet counted = new IntSet();
 
-        for(Tile t : sparse2){
+        for(int i = 0; i < path.size; i += sparseSkip2){
+            Tile t = path.get(i);
 
             //radius is square.
             for(int dx = -radius; dx <= radius; dx++){
@@ -257,8 +268,12 @@ public class SectorDamage{
 
                         if(tile.build != null && tile.team() == state.rules.defaultTeam && counted.add(tile.pos())){
                             //health is divided by block size, because multiblocks are counted multiple times.
-                            sumHealth += tile.build.health / (tile.block().size * tile.block().size);
+                            float health = tile.build.health / (tile.block().size * tile.block().size);
+                            sumHealth += health;
                             totalPathBuild += 1f / (tile.block().size * tile.block().size);
+
+                            //the whole core is at the end of the path, so that the sector only falls once it is reached
+                            pathHealth[tile.build == core ? segments - 1 : i / segmentTiles] += health;
                         }
                     }
                 }
@@ -274,7 +289,28 @@ public class SectorDamage{
                 if(build.team == state.rules.defaultTeam && build instanceof Ranged ranged && sparse.contains(t -> t.within(build, ranged.range() + 4*tilesize))){
                     //TODO make sure power turret network supports the turrets?
                     if(build.block instanceof Turret t && build instanceof TurretBuild b && b.hasAmmo()){
-                        sumDps += t.shots / t.reloadTime * 60f * b.peekAmmo().estimateDPS() * e * build.timeScale;
+                        float dps = t.shots / t.reloadTime * 60f * b.peekAmmo().estimateDPS() * e * build.timeScale;
+                        sumDps += dps;
+
+                        //find the segments in range, and the segment that the turret itself is closest to
+                        int first = -1, last = -1, closest = 0;
+                        float closestDst = Float.POSITIVE_INFINITY;
+                        for(int i = 0; i < sparse.size; i++){
+                            Tile tile = sparse.get(i);
+                            int segment = i * sparseSkip / segmentTiles;
+                            float dst = tile.dst2(build);
+                            if(dst < closestDst){
+                                closestDst = dst;
+                                closest = segment;
+                            }
+                            if(tile.within(build, ranged.range() + 4*tilesize)){
+                                if(first == -1) first = segment;
+                                last = segment;
+                            }
+                        }
+
+                        turretDps.add(dps);
+                        turretSegments.add(closest, first, last);
                     }
 
                     if(build.block instanceof MendProjector m){
@@ -322,6 +358,7 @@ public class SectorDamage{
         SpawnGroup bossGroup = null;
         Seq<Vec2> waveDps = new Seq<>(), waveHealth = new Seq<>();
         int groundSpawns = Math.max(spawner.countFlyerSpawns(), 1), airSpawns = Math.max(spawner.countGroundSpawns(), 1);
+        float speedSum = 0f, speedCount = 0f;
 
         for(int wave = state.wave; wave < state.wave + 10; wave ++){
             float sumWaveDps = 0f, sumWaveHealth = 0f;
@@ -343,6 +380,8 @@ public class SectorDamage{
                 if(spawned <= 0) continue;
                 sumWaveHealth += spawned * (group.getShield(wave) + group.type.health * effect.healthMultiplier * healthMult);
                 sumWaveDps += spawned * group.type.dpsEstimate * effect.damageMultiplier;
+                speedSum += spawned * group.type.speed * effect.speedMultiplier;
+                speedCount += spawned;
             }
             waveDps.add(new Vec2(wave, sumWaveDps));
             waveHealth.add(new Vec2(wave, sumWaveHealth));
@@ -381,6 +420,13 @@ public class SectorDamage{
         info.curEnemyDps = curEnemyDps*cmult;
         info.curEnemyHealth = curEnemyHealth*cmult;
 
+        //unit speed is in world units per tick
+        float tilesPerSecond = (speedCount > 0 ? speedSum / speedCount : 0.5f) * 60f / tilesize;
+        info.segmentTime = segmentTiles / Math.max(tilesPerSecond, 0.1f);
+        info.pathHealth = segments == 0 ? null : pathHealth;
+        info.turretDps = turretDps.toArray();
+        info.turretSegments = turretSegments.toArray();
+
         info.wavesSurvived = getWavesSurvived(info);
     }
 
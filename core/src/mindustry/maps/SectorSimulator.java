@@ -0,0 +1,156 @@
+package mindustry.maps;
+
+import mindustry.game.*;
+
+/**
+ * Fast-forwards the waves of a sector that is not being played, using the defenses along the enemy path recorded in its {@link SectorInfo}.
+ * Every wave is a single pool of enemy health and damage that walks the path from the spawn to the core, one segment at a time.
+ * Turrets damage the pool in the segments they cover, and the pool has to destroy the buildings of each segment before it moves on.
+ * Turrets in a destroyed segment stop firing for the rest of the simulation; the sector is lost once the segment of the core falls.
+ * All state is in primitive arrays, so hundreds of waves take well under a millisecond. Can be used from any thread.
+ */
+public class SectorSimulator{
+    /** Waves after which the simulation stops; sectors that survive this long are not going to fall. */
+    public static final int maxWaves = 1000;
+
+    /** @return whether this info has the path data needed for a simulation. */
+    public static boolean canSimulate(SectorInfo info){
+        return info.pathHealth != null && info.pathHealth.length > 0 && info.turretDps != null && info.turretSegments != null
+            && info.turretSegments.length == info.turretDps.length * 3;
+    }
+
+    /**
+     * Simulates waves, starting at the current wave of the info.
+     * @param retWave whether to return the amount of waves survived instead of the damage
+     * @return the damage fraction of the buildings along the path, 1 if the core was destroyed; or the waves survived, up to the amount simulated.
+     * 0 if no waves have passed.
+     */
+    public static float simulate(SectorInfo info, int wavesPassed, boolean retWave){
+        //no wave has arrived yet, not even the one in progress
+        if(wavesPassed <= 0) return 0f;
+
+        float[] maxHealth = info.pathHealth, turretDps = info.turretDps;
+        int[] turretSegments = info.turretSegments;
+        int segments = maxHealth.length, turrets = turretDps.length;
+
+        float[] health = maxHealth.clone();
+        float totalHealth = 0f;
+        for(float value : maxHealth){
+            totalHealth += value;
+        }
+        if(totalHealth <= 0f) return retWave ? 0 : 1f;
+
+        //turrets are counted in the sum of dps too; the rest is from units, which defend the whole path
+        float unitDps = info.sumDps;
+        for(float dps : turretDps){
+            unitDps -= dps;
+        }
+
+        //damage per second that enemies take in every segment
+        float[] coverage = new float[segments];
+        for(int i = 0; i < segments; i++){
+            coverage[i] = Math.max(unitDps, 0f);
+        }
+        for(int t = 0; t < turrets; t++){
+            cover(coverage, turretSegments, t, turretDps[t]);
+        }
+
+        boolean[] destroyed = new boolean[turrets];
+        float segmentTime = Math.max(info.segmentTime, 0f);
+        //health regenerated between waves, in the same proportion as the health of each segment
+        float regen = info.sumRps * info.waveSpacing / 60f / totalHealth;
+
+        int waveBegin = info.wave, waveEnd = info.wave + Math.min(wavesPassed, maxWaves);
+
+        for(int wave = waveBegin; wave <= waveEnd; wave++){
+            float enemyDps = info.waveDpsBase + info.waveDpsSlope * wave;
+            float enemyHealth = info.waveHealthBase + info.waveHealthSlope * wave;
+
+            if(info.bossWave == wave){
+                enemyDps += info.bossDps;
+                enemyHealth += info.bossHealth;
+            }
+
+            if(wave == waveBegin){
+                enemyDps += info.curEnemyDps;
+                enemyHealth += info.curEnemyHealth;
+            }
+
+            //happens due to certain regressions
+            if(enemyHealth <= 0 || enemyDps < 0) continue;
+
+            //damage of the pool is proportional to the health it has left
+            float pool = enemyHealth, dpsPerHealth = enemyDps / enemyHealth;
+
+            for(int i = 0; i < segments && pool > 0f; i++){
+                float taken = Math.max(coverage[i], 0f);
+
+                //walk through the segment under fire
+                pool -= taken * segmentTime;
+                if(pool <= 0f || health[i] <= 0f) continue;
+
+                float dps = pool * dpsPerHealth;
+                if(dps <= 0.0001f){
+                    //cannot get through; stuck until destroyed
+                    pool = 0f;
+                    break;
+                }
+
+                if(taken <= 0f){
+                    health[i] = 0f;
+                }else{
+                    //pool health falls linearly, so its damage does too: damage dealt after t seconds is dps*t - dps*taken*t^2 / (2*pool)
+                    float a = dps * taken / pool, disc = dps * dps - 2f * a * health[i];
+                    if(disc < 0f){
+                        //the pool dies before the segment falls
+                        health[i] -= dps * pool / (2f * taken);
+                        pool = 0f;
+                        break;
+                    }
+
+                    float time = (dps - (float)Math.sqrt(disc)) / a;
+                    pool -= taken * time;
+                    health[i] = 0f;
+                }
+
+                //the core is at the end of the path
+                if(i == segments - 1){
+                    return retWave ? wave - waveBegin : 1f;
+                }
+
+                //turrets in this segment are gone
+                for(int t = 0; t < turrets; t++){
+                    if(!destroyed[t] && turretSegments[t * 3] == i){
+                        destroyed[t] = true;
+                        cover(coverage, turretSegments, t, -turretDps[t]);
+                    }
+                }
+            }
+
+            //regenerate, but only what still stands
+            for(int i = 0; i < segments; i++){
+                if(health[i] > 0f){
+                    health[i] = Math.min(health[i] + maxHealth[i] * regen, maxHealth[i]);
+                }
+            }
+        }
+
+        if(retWave){
+            return waveEnd - waveBegin;
+        }
+
+        float remaining = 0f;
+        for(float value : health){
+            remaining += Math.max(value, 0f);
+        }
+        return 1f - Math.min(remaining / totalHealth, 1f);
+    }
+
+    /** Adds damage to the segments in range of a turret. Ranges are clamped, in case the info was edited. */
+    static void cover(float[] coverage, int[] turretSegments, int turret, float dps){
+        int from = Math.max(turretSegments[turret * 3 + 1], 0), to = Math.min(turretSegments[turret * 3 + 2], coverage.length - 1);
+        for(int i = from; i <= to; i++){
+            coverage[i] += dps;
+        }
+    }
+}
@@ -29,20 +29,7 @@ public abstract class GenerateFilter{
                 buffer[i] = PackTile.get(in.block.id, in.floor.id, in.overlay.id);
             }
 
-            //write to buffer
-            for(int i = 0; i < tiles.width * tiles.height; i++){
-                Tile tile = tiles.geti(i);
-                long b = buffer[i];
-
-                Block block = Vars.content.block(PackTile.block(b)), floor = Vars.content.block(PackTile.floor(b)), overlay = Vars.content.block(PackTile.overlay(b));
-
-                tile.setFloor(floor.asFloor());
-                tile.setOverlay(!floor.asFloor().hasSurface() && overlay.asFloor().needsSurface ? Blocks.air : overlay);
-
-                if(!tile.block().synthetic() && !block.synthetic()){
-                    tile.setBlock(block);
-                }
-            }
+            write(tiles, buffer);
         }else{
             for(Tile tile : tiles){
                 in.set(tile.x, tile.y, tile.block(), tile.floor(), tile.overlay());
@@ -58,6 +45,23 @@ public abstract class GenerateFilter{
         }
     }
 
+    /** Writes a buffer of tiles packed with {@link PackTile} into the tiles. Synthetic blocks are never replaced or placed. */
+    protected void write(Tiles tiles, long[] buffer){
+        for(int i = 0; i < tiles.width * tiles.height; i++){
+            Tile tile = tiles.geti(i);
+            long b = buffer[i];
+
+            Block block = Vars.content.block(PackTile.block(b)), floor = Vars.content.block(PackTile.floor(b)), overlay = Vars.content.block(PackTile.overlay(b));
+
+            tile.setFloor(floor.asFloor());
+            tile.setOverlay(!floor.asFloor().hasSurface() && overlay.asFloor().needsSurface ? Blocks.air : overlay);
+
+            if(!tile.block().synthetic() && !block.synthetic()){
+                tile.setBlock(block);
+            }
+        }
+    }
+
     /** @return a new array of options for configuring this filter */
     public abstract FilterOption[] options();
 
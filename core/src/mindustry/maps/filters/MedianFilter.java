@@ -4,6 +4,7 @@ import arc.math.*;
 import arc.struct.*;
 import mindustry.gen.*;
 import mindustry.maps.filters.FilterOption.*;
+import mindustry.maps.generators.*;
 import mindustry.world.*;
 
 import static mindustry.Vars.*;
@@ -32,6 +33,39 @@ public class MedianFilter extends GenerateFilter{
         return Iconc.blockSporePine;
     }
 
+    @Override
+    public void apply(Tiles tiles, GenerateInput in){
+        int width = tiles.width, height = tiles.height;
+        short[] floors = new short[width * height], blocks = new short[floors.length];
+
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                Tile tile = in.tile(x, y);
+                floors[x + y * width] = tile.floorID();
+                blocks[x + y * width] = tile.blockID();
+            }
+        }
+
+        int[] circle = TileBuffers.circle((int)radius, true);
+        int[] index = new int[TileBuffers.size(circle) + 1];
+        for(int size = 1; size < index.length; size++){
+            index[size] = Math.min((int)(size * percentile), size - 1);
+        }
+
+        short[] floorResult = new short[floors.length], blockResult = new short[blocks.length];
+        TileBuffers.percentile(floors, floorResult, width, height, circle, true, index);
+        TileBuffers.percentile(blocks, blockResult, width, height, circle, true, index);
+
+        long[] buffer = new long[floors.length];
+        for(int i = 0; i < buffer.length; i++){
+            Tile tile = tiles.geti(i);
+            short block = content.block(blockResult[i]).synthetic() || tile.block().synthetic() ? tile.blockID() : blockResult[i];
+            buffer[i] = PackTile.get(block, floorResult[i], tile.overlayID());
+        }
+
+        write(tiles, buffer);
+    }
+
     @Override
     public void apply(GenerateInput in){
         int rad = (int)radius;
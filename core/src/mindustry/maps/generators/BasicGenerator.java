@@ -20,6 +20,8 @@ public abstract class BasicGenerator implements WorldGenerator{
 
     protected int width, height;
     protected Tiles tiles;
+    /** Whether {@link #noise(float, float, double, double, double, double)} may be called from several threads at once, so that passes using it can run in parallel. */
+    protected boolean parallelNoise;
 
     //for drawing
     protected Block floor;
@@ -44,26 +46,28 @@ public abstract class BasicGenerator implements WorldGenerator{
     }
 
     public void median(int radius, double percentile){
-        short[] blocks = new short[tiles.width * tiles.height];
-        short[] floors = new short[blocks.length];
+        short[] floors = new short[tiles.width * tiles.height];
+        short[] blocks = new short[floors.length];
 
-        tiles.each((x, y) -> {
-            ints1.clear();
-            ints2.clear();
-            Geometry.circle(x, y, width, height, radius, (cx, cy) -> {
-                ints1.add(tiles.getn(cx, cy).floorID());
-                ints2.add(tiles.getn(cx, cy).blockID());
-            });
-            ints1.sort();
-            ints2.sort();
+        for(int i = 0; i < floors.length; i++){
+            Tile tile = tiles.geti(i);
+            floors[i] = tile.floorID();
+            blocks[i] = tile.blockID();
+        }
 
-            floors[x + y*width] = ints1.get(Mathf.clamp((int)(ints1.size * percentile), 0, ints1.size - 1));
-            blocks[x + y*width] = ints2.get(Mathf.clamp((int)(ints2.size * percentile), 0, ints2.size - 1));
-        });
+        int[] circle = TileBuffers.circle(radius, false);
+        int[] index = new int[TileBuffers.size(circle) + 1];
+        for(int size = 1; size < index.length; size++){
+            index[size] = Mathf.clamp((int)(size * percentile), 0, size - 1);
+        }
+
+        short[] floorResult = new short[floors.length], blockResult = new short[blocks.length];
+        TileBuffers.percentile(floors, floorResult, width, height, circle, false, index);
+        TileBuffers.percentile(blocks, blockResult, width, height, circle, false, index);
 
         pass((x, y) -> {
-            block = content.block(blocks[x + y * width]);
-            floor = content.block(floors[x + y * width]);
+            block = content.block(blockResult[x + y * width]);
+            floor = content.block(floorResult[x + y * width]);
         });
     }
 
@@ -150,18 +154,33 @@ public abstract class BasicGenerator implements WorldGenerator{
         short[] blocks = new short[tiles.width * tiles.height];
         short[] floors = new short[blocks.length];
 
-        tiles.each((x, y) -> {
-            int idx = y*tiles.width + x;
-            float cx = x + noise(x - 155f, y - 200f, scl, mag) - mag / 2f, cy = y + noise(x + 155f, y + 155f, scl, mag) - mag / 2f;
-            Tile other = tiles.getn(Mathf.clamp((int)cx, 0, tiles.width-1), Mathf.clamp((int)cy, 0, tiles.height-1));
-            blocks[idx] = other.block().id;
-            floors[idx] = other.floor().id;
-        });
+        for(int i = 0; i < blocks.length; i++){
+            Tile tile = tiles.geti(i);
+            blocks[i] = tile.blockID();
+            floors[i] = tile.floorID();
+        }
+
+        //index of the tile that every tile is moved from
+        int[] sources = new int[blocks.length];
+        Intc2 rows = (from, to) -> {
+            for(int y = from; y < to; y++){
+                for(int x = 0; x < width; x++){
+                    float cx = x + noise(x - 155f, y - 200f, scl, mag) - mag / 2f, cy = y + noise(x + 155f, y + 155f, scl, mag) - mag / 2f;
+                    sources[x + y * width] = Mathf.clamp((int)cx, 0, width - 1) + Mathf.clamp((int)cy, 0, height - 1) * width;
+                }
+            }
+        };
+
+        if(parallelNoise){
+            TileBuffers.rows(height, rows);
+        }else{
+            rows.get(0, height);
+        }
 
         for(int i = 0; i < blocks.length; i++){
             Tile tile = tiles.geti(i);
-            tile.setFloor(Vars.content.block(floors[i]).asFloor());
-            tile.setBlock(Vars.content.block(blocks[i]));
+            tile.setFloor(content.block(floors[sources[i]]).asFloor());
+            setBlock(tile, content.block(blocks[sources[i]]));
         }
     }
 
@@ -189,37 +208,52 @@ public abstract class BasicGenerator implements WorldGenerator{
     }
 
     public void cells(int iterations, int birthLimit, int deathLimit, int cradius){
-        GridBits write = new GridBits(tiles.width, tiles.height);
-        GridBits read = new GridBits(tiles.width, tiles.height);
+        boolean[] read = new boolean[tiles.width * tiles.height], write = new boolean[read.length];
 
-        tiles.each((x, y) -> read.set(x, y, !tiles.get(x, y).block().isAir()));
+        for(int i = 0; i < read.length; i++){
+            read[i] = !tiles.geti(i).block().isAir();
+        }
+
+        //offsets of all neighbors in range
+        IntSeq offsetsX = new IntSeq(), offsetsY = new IntSeq();
+        for(int cx = -cradius; cx <= cradius; cx++){
+            for(int cy = -cradius; cy <= cradius; cy++){
+                if((cx == 0 && cy == 0) || !Mathf.within(cx, cy, cradius)) continue;
+                offsetsX.add(cx);
+                offsetsY.add(cy);
+            }
+        }
+        int[] dx = offsetsX.toArray(), dy = offsetsY.toArray();
 
         for(int i = 0; i < iterations; i++){
-            tiles.each((x, y) -> {
-                int alive = 0;
-
-                for(int cx = -cradius; cx <= cradius; cx++){
-                    for(int cy = -cradius; cy <= cradius; cy++){
-                        if((cx == 0 && cy == 0) || !Mathf.within(cx, cy, cradius)) continue;
-                        if(!Structs.inBounds(x + cx, y + cy, tiles.width, tiles.height) || read.get(x + cx, y + cy)){
-                            alive++;
+            boolean[] src = read, dst = write;
+
+            TileBuffers.rows(height, (from, to) -> {
+                for(int y = from; y < to; y++){
+                    for(int x = 0; x < width; x++){
+                        int alive = 0;
+
+                        //out of bounds counts as alive
+                        for(int j = 0; j < dx.length; j++){
+                            int nx = x + dx[j], ny = y + dy[j];
+                            if(nx < 0 || ny < 0 || nx >= width || ny >= height || src[nx + ny * width]){
+                                alive++;
+                            }
                         }
-                    }
-                }
 
-                if(read.get(x, y)){
-                    write.set(x, y, alive >= deathLimit);
-                }else{
-                    write.set(x, y, alive > birthLimit);
+                        dst[x + y * width] = src[x + y * width] ? alive >= deathLimit : alive > birthLimit;
+                    }
                 }
             });
 
             //flush results
-            read.set(write);
+            write = read;
+            read = dst;
         }
 
-        for(var t : tiles){
-            t.setBlock(!read.get(t.x, t.y) ? Blocks.air : t.floor().wall);
+        for(int i = 0; i < read.length; i++){
+            Tile t = tiles.geti(i);
+            t.setBlock(!read[i] ? Blocks.air : t.floor().wall);
         }
     }
 
@@ -240,11 +274,18 @@ public abstract class BasicGenerator implements WorldGenerator{
             ore = tile.overlay();
             r.get(tile.x, tile.y);
             tile.setFloor(floor.asFloor());
-            tile.setBlock(block);
+            setBlock(tile, block);
             tile.setOverlay(ore);
         }
     }
 
+    /** Sets the block of a tile, unless it would not change anything. Replacing a block with itself only matters for buildings, which are recreated. */
+    protected void setBlock(Tile tile, Block block){
+        if(tile.block() != block || tile.build != null){
+            tile.setBlock(block);
+        }
+    }
+
     public void brush(Seq<Tile> path, int rad){
         path.each(tile -> erase(tile.x, tile.y, rad));
     }
@@ -3,6 +3,7 @@ package mindustry.maps.generators;
 import arc.math.geom.*;
 import arc.struct.*;
 import arc.struct.ObjectIntMap.*;
+import arc.util.*;
 import arc.util.noise.*;
 import mindustry.content.*;
 import mindustry.ctype.*;
@@ -16,6 +17,9 @@ import mindustry.world.*;
 import static mindustry.Vars.*;
 
 public abstract class PlanetGenerator extends BasicGenerator implements HexMesher{
+    /** Vectors for projecting coordinates in {@link #noise(float, float, double, double, double, double)}, which may run on several threads. */
+    protected static final ThreadLocal<Vec3> projected = Threads.local(Vec3::new);
+
     protected IntSeq ints = new IntSeq();
     protected Sector sector;
 
@@ -114,7 +118,7 @@ public abstract class PlanetGenerator extends BasicGenerator implements HexMeshe
 
     @Override
     protected float noise(float x, float y, double octaves, double falloff, double scl, double mag){
-        Vec3 v = sector.rect.project(x, y);
+        Vec3 v = sector.rect.project(x, y, projected.get());
         return Simplex.noise3d(0, octaves, falloff, 1f / scl, v.x, v.y, v.z) * (float)mag;
     }
 
@@ -0,0 +1,164 @@
+package mindustry.maps.generators;
+
+import arc.func.*;
+import arc.math.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Whole-map generation passes over flat, row-major buffers of tile IDs.
+ * Work is split into ranges of rows that run in parallel; every row is only written by one task,
+ * so results do not depend on the amount of threads.
+ */
+public class TileBuffers{
+    /** Rows below which a range is not split any further. */
+    static final int minRows = 8;
+
+    /** Runs for ranges of rows [from, to) that together cover [0, height), in parallel. Blocks until all are done. */
+    public static void rows(int height, Intc2 rows){
+        if(height <= minRows){
+            rows.get(0, height);
+        }else{
+            ForkJoinPool.commonPool().invoke(new RowTask(rows, 0, height));
+        }
+    }
+
+    /**
+     * @param edge whether cells exactly at the radius are included; otherwise, the circle has the same cells as {@link arc.math.geom.Geometry#circle}
+     * @return the largest horizontal offset in each row of a circle, from -radius to radius, or -1 for rows without any cells
+     */
+    public static int[] circle(int radius, boolean edge){
+        int[] widths = new int[radius * 2 + 1];
+        for(int dy = -radius; dy <= radius; dy++){
+            int w = -1;
+            for(int dx = 0; dx <= radius; dx++){
+                if(edge ? dx*dx + dy*dy <= radius*radius : Mathf.within(dx, dy, radius)) w = dx;
+            }
+            widths[dy + radius] = w;
+        }
+        return widths;
+    }
+
+    /** @return amount of cells in a circle from {@link #circle(int, boolean)}, which is the size needed for a {@link #percentile} index table. */
+    public static int size(int[] circle){
+        int total = 0;
+        for(int w : circle){
+            if(w >= 0) total += w * 2 + 1;
+        }
+        return total;
+    }
+
+    /**
+     * Writes the value at a percentile of the circle around every cell into dst.
+     * Keeps a histogram of the circle that slides along each row, so every step only adds and removes the edge of the circle.
+     * @param circle the circle from {@link #circle(int, boolean)}
+     * @param clamp whether cells outside the buffer repeat the edge instead of being left out
+     * @param index for every amount of values in a circle, the index of the result in those values when sorted
+     */
+    public static void percentile(short[] src, short[] dst, int width, int height, int[] circle, boolean clamp, int[] index){
+        //map IDs to ranks in ascending order, so histograms are only as large as the amount of distinct values
+        int max = 0;
+        for(short value : src){
+            max = Math.max(max, value);
+        }
+
+        int[] rank = new int[max + 1];
+        Arrays.fill(rank, -1);
+        for(short value : src){
+            rank[value] = 0;
+        }
+
+        int distinct = 0;
+        for(int i = 0; i <= max; i++){
+            if(rank[i] == 0) rank[i] = ++distinct;
+        }
+
+        short[] values = new short[distinct];
+        short[] ranks = new short[src.length];
+        for(int i = 0; i <= max; i++){
+            if(rank[i] > 0) values[rank[i] - 1] = (short)i;
+        }
+        for(int i = 0; i < src.length; i++){
+            ranks[i] = (short)(rank[src[i]] - 1);
+        }
+
+        int radius = circle.length / 2, bins = distinct;
+        rows(height, (from, to) -> {
+            int[] histogram = new int[bins];
+
+            for(int y = from; y < to; y++){
+                Arrays.fill(histogram, 0);
+                int count = 0;
+
+                for(int dy = -radius; dy <= radius; dy++){
+                    int sy = column(y + dy, height, clamp);
+                    if(sy == -1) continue;
+
+                    int w = circle[dy + radius];
+                    for(int dx = -w; dx <= w; dx++){
+                        int sx = column(dx, width, clamp);
+                        if(sx == -1) continue;
+                        histogram[ranks[sx + sy * width]] ++;
+                        count ++;
+                    }
+                }
+
+                for(int x = 0; x < width; x++){
+                    //find the bin that holds the value at the index
+                    int remaining = index[count], bin = 0;
+                    while((remaining -= histogram[bin]) >= 0) bin ++;
+                    dst[x + y * width] = values[bin];
+
+                    if(x == width - 1) break;
+
+                    //slide one to the right
+                    for(int dy = -radius; dy <= radius; dy++){
+                        int sy = column(y + dy, height, clamp);
+                        if(sy == -1) continue;
+
+                        int w = circle[dy + radius];
+                        if(w == -1) continue;
+
+                        int removed = column(x - w, width, clamp), added = column(x + w + 1, width, clamp);
+                        if(removed != -1){
+                            histogram[ranks[removed + sy * width]] --;
+                            count --;
+                        }
+                        if(added != -1){
+                            histogram[ranks[added + sy * width]] ++;
+                            count ++;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /** @return the coordinate to read, or -1 if it is out of bounds and not clamped. */
+    static int column(int value, int size, boolean clamp){
+        if(value >= 0 && value < size) return value;
+        return clamp ? Mathf.clamp(value, 0, size - 1) : -1;
+    }
+
+    static class RowTask extends RecursiveAction{
+        final Intc2 rows;
+        final int from, to;
+
+        RowTask(Intc2 rows, int from, int to){
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from <= minRows){
+                rows.get(from, to);
+            }else{
+                int mid = (from + to) >>> 1;
+                invokeAll(new RowTask(rows, from, mid), new RowTask(rows, mid, to));
+            }
+        }
+    }
+}
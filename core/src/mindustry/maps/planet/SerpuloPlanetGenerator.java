@@ -25,6 +25,11 @@ public class SerpuloPlanetGenerator extends PlanetGenerator{
 
     BaseGenerator basegen = new BaseGenerator();
     float scl = 5f;
+
+    {
+        parallelNoise = true;
+    }
+
     float waterOffset = 0.07f;
     boolean genLakes = false;
 
@@ -148,7 +153,7 @@ public class SerpuloPlanetGenerator extends PlanetGenerator{
 
     @Override
     protected float noise(float x, float y, double octaves, double falloff, double scl, double mag){
-        Vec3 v = sector.rect.project(x, y).scl(5f);
+        Vec3 v = sector.rect.project(x, y, projected.get()).scl(5f);
         return Simplex.noise3d(seed, octaves, falloff, 1f / scl, v.x, v.y, v.z) * (float)mag;
     }
 
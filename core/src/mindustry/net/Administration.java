@@ -9,6 +9,7 @@ import arc.util.pooling.Pool.*;
 import arc.util.pooling.*;
 import mindustry.*;
 import mindustry.gen.*;
+import mindustry.logic.*;
 import mindustry.type.*;
 import mindustry.world.*;
 
@@ -23,10 +24,19 @@ public class Administration{
     public Seq<String> subnetBans = new Seq<>();
     public ObjectMap<String, Long> kickedIPs = new ObjectMap<>();
 
-    /** All player info. Maps UUIDs to info. This persists throughout restarts. Do not access directly. */
-    private ObjectMap<String, PlayerInfo> playerInfo = new ObjectMap<>();
+    /** All player info. This persists throughout restarts. Do not access directly. */
+    private final PlayerStore players;
+    /** Same contents as {@link #bannedIPs}, for lookups. */
+    private final ObjectSet<String> bannedIPSet = new ObjectSet<>();
+    /** Banned IPs and subnets; replaced when they change, so that other threads can use them. */
+    private volatile IPMatcher bannedAddresses = IPMatcher.none, bannedSubnets = IPMatcher.none;
 
     public Administration(){
+        this(new LogPlayerStore(Core.settings.getDataDirectory().child("players.log")));
+    }
+
+    public Administration(PlayerStore players){
+        this.players = players;
         load();
 
         //anti-spam
@@ -103,16 +113,33 @@ public class Administration{
 
     public void removeSubnetBan(String ip){
         subnetBans.remove(ip);
+        updateBans();
         save();
     }
 
+    /** Bans a subnet, either in CIDR notation (10.0.0.0/8) or as the start of an address (10.0.). */
     public void addSubnetBan(String ip){
         subnetBans.add(ip);
+        updateBans();
         save();
     }
 
     public boolean isSubnetBanned(String ip){
-        return subnetBans.contains(ip::startsWith);
+        return bannedSubnets.matches(ip);
+    }
+
+    /**
+     * @return whether this address is banned by IP or subnet. Does not check the IPs of players that were banned by UUID.
+     * Can be called from any thread, so that connections can be rejected before they reach the main thread.
+     */
+    public boolean isAddressBanned(String ip){
+        return bannedAddresses.matches(ip) || bannedSubnets.matches(ip);
+    }
+
+    /** Rebuilds the matchers for banned addresses, copying the lists. Called when IP or subnet bans change. */
+    void updateBans(){
+        bannedAddresses = bannedIPs.isEmpty() ? IPMatcher.none : new IPMatcher(bannedIPs, false);
+        bannedSubnets = subnetBans.isEmpty() ? IPMatcher.none : new IPMatcher(subnetBans, true);
     }
 
     /** Adds a chat filter. This will transform the chat messages of every player.
@@ -185,6 +212,7 @@ public class Administration{
         info.timesJoined++;
         if(!info.names.contains(name, false)) info.names.add(name);
         if(!info.ips.contains(ip, false)) info.ips.add(ip);
+        players.index(info);
     }
 
     public boolean banPlayer(String uuid){
@@ -196,16 +224,16 @@ public class Administration{
      * If there are players who at any point had this IP, they will be UUID banned as well.
      */
     public boolean banPlayerIP(String ip){
-        if(bannedIPs.contains(ip, false))
+        if(bannedIPSet.contains(ip))
             return false;
 
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.ips.contains(ip, false)){
-                info.banned = true;
-            }
+        for(PlayerInfo info : findByIPs(ip)){
+            info.banned = true;
         }
 
         bannedIPs.add(ip);
+        bannedIPSet.add(ip);
+        updateBans();
         save();
         Events.fire(new PlayerIpBanEvent(ip));
         return true;
@@ -213,7 +241,8 @@ public class Administration{
 
     /** Bans a player by UUID; returns whether this player was already banned. */
     public boolean banPlayerID(String id){
-        if(playerInfo.containsKey(id) && playerInfo.get(id).banned)
+        PlayerInfo existing = players.get(id);
+        if(existing != null && existing.banned)
             return false;
 
         getCreateInfo(id).banned = true;
@@ -228,16 +257,16 @@ public class Administration{
      * This method also unbans any player that was banned and had this IP.
      */
     public boolean unbanPlayerIP(String ip){
-        boolean found = bannedIPs.contains(ip, false);
+        boolean found = bannedIPSet.contains(ip);
 
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.ips.contains(ip, false)){
-                info.banned = false;
-                found = true;
-            }
+        for(PlayerInfo info : findByIPs(ip)){
+            info.banned = false;
+            found = true;
         }
 
         bannedIPs.remove(ip, false);
+        bannedIPSet.remove(ip);
+        updateBans();
 
         if(found){
             save();
@@ -257,6 +286,10 @@ public class Administration{
 
         info.banned = false;
         bannedIPs.removeAll(info.ips, false);
+        for(String ip : info.ips){
+            bannedIPSet.remove(ip);
+        }
+        updateBans();
         save();
         Events.fire(new PlayerUnbanEvent(Groups.player.find(p -> id.equals(p.uuid())), id));
         return true;
@@ -266,26 +299,14 @@ public class Administration{
      * Returns list of all players with admin status
      */
     public Seq<PlayerInfo> getAdmins(){
-        Seq<PlayerInfo> result = new Seq<>();
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.admin){
-                result.add(info);
-            }
-        }
-        return result;
+        return players.select(info -> info.admin);
     }
 
     /**
      * Returns list of all players which are banned
      */
     public Seq<PlayerInfo> getBanned(){
-        Seq<PlayerInfo> result = new Seq<>();
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.banned){
-                result.add(info);
-            }
-        }
-        return result;
+        return players.select(info -> info.banned);
     }
 
     /**
@@ -353,7 +374,9 @@ public class Administration{
     }
 
     public boolean isIPBanned(String ip){
-        return bannedIPs.contains(ip, false) || (findByIP(ip) != null && findByIP(ip).banned);
+        if(bannedAddresses.matches(ip)) return true;
+        PlayerInfo info = players.firstByIP(ip);
+        return info != null && info.banned;
     }
 
     public boolean isIDBanned(String uuid){
@@ -367,42 +390,21 @@ public class Administration{
 
     /** Finds player info by IP, UUID and name. */
     public ObjectSet<PlayerInfo> findByName(String name){
-        ObjectSet<PlayerInfo> result = new ObjectSet<>();
-
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.lastName.equalsIgnoreCase(name) || info.names.contains(name, false)
-            || Strings.stripColors(Strings.stripColors(info.lastName)).equals(name)
-            || info.ips.contains(name, false) || info.id.equals(name)){
-                result.add(info);
-            }
-        }
-
-        return result;
+        return players.findByName(name);
     }
 
     /** Finds by name, using contains(). */
     public ObjectSet<PlayerInfo> searchNames(String name){
-        ObjectSet<PlayerInfo> result = new ObjectSet<>();
-
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.names.contains(n -> n.toLowerCase().contains(name.toLowerCase()) || Strings.stripColors(n).trim().toLowerCase().contains(name))){
-                result.add(info);
-            }
-        }
+        return players.searchNames(name);
+    }
 
-        return result;
+    /** Finds by the start of a name, ignoring colors and case. */
+    public ObjectSet<PlayerInfo> searchNamePrefix(String prefix){
+        return players.searchNamePrefix(prefix);
     }
 
     public Seq<PlayerInfo> findByIPs(String ip){
-        Seq<PlayerInfo> result = new Seq<>();
-
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.ips.contains(ip, false)){
-                result.add(info);
-            }
-        }
-
-        return result;
+        return players.findByIP(ip);
     }
 
     public PlayerInfo getInfo(String id){
@@ -410,35 +412,29 @@ public class Administration{
     }
 
     public PlayerInfo getInfoOptional(String id){
-        return playerInfo.get(id);
+        return players.get(id);
     }
 
     public PlayerInfo findByIP(String ip){
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.ips.contains(ip, false)){
-                return info;
-            }
-        }
-        return null;
+        return players.firstByIP(ip);
     }
 
     public Seq<PlayerInfo> getWhitelisted(){
-        return playerInfo.values().toSeq().select(p -> isWhitelisted(p.id, p.adminUsid));
+        return players.select(p -> isWhitelisted(p.id, p.adminUsid));
     }
 
     private PlayerInfo getCreateInfo(String id){
-        if(playerInfo.containsKey(id)){
-            return playerInfo.get(id);
-        }else{
-            PlayerInfo info = new PlayerInfo(id);
-            playerInfo.put(id, info);
+        PlayerInfo info = players.get(id);
+        if(info == null){
+            info = players.getCreate(id);
             save();
-            return info;
         }
+        return info;
     }
 
+    /** Writes player info that changed, and all bans and whitelists. */
     public void save(){
-        Core.settings.putJson("player-data", playerInfo);
+        players.save();
         Core.settings.putJson("ip-bans", String.class, bannedIPs);
         Core.settings.putJson("whitelist-ids", String.class, whitelist);
         Core.settings.putJson("banned-subnets", String.class, subnetBans);
@@ -447,10 +443,13 @@ public class Administration{
     @SuppressWarnings("unchecked")
     private void load(){
         //load default data
-        playerInfo = Core.settings.getJson("player-data", ObjectMap.class, ObjectMap::new);
+        players.load();
         bannedIPs = Core.settings.getJson("ip-bans", Seq.class, Seq::new);
+        bannedIPSet.clear();
+        bannedIPSet.addAll(bannedIPs);
         whitelist = Core.settings.getJson("whitelist-ids", Seq.class, Seq::new);
         subnetBans = Core.settings.getJson("banned-subnets", Seq.class, Seq::new);
+        updateBans();
     }
 
     /** Server configuration definition. Each config value can be a string, boolean or number. */
@@ -480,6 +479,15 @@ public class Administration{
         autosave("Whether the periodically save the map when playing.", false),
         autosaveAmount("The maximum amount of autosaves. Older ones get replaced.", 10),
         autosaveSpacing("Spacing between autosaves in seconds.", 60 * 5),
+        logicInstructionBudget("Maximum amount of instructions all logic processors may run per tick. 0 to disable.", 0, () -> applyLogic()),
+        logicTimeBudget("Maximum time all logic processors may take per tick, in milliseconds. 0 to disable.", 0, () -> applyLogic()),
+        logicThreads("Amount of threads used to run independent logic processors in parallel. 0 or 1 to run all processors on the main thread.", 0, () -> applyLogic()),
+        liquidSolver("Whether connected conduits move liquid in one batched pass, instead of one conduit at a time.", false, () -> applySimulation()),
+        conveyorLines("Whether straight runs of conveyors update as one line, instead of one conveyor at a time.", false, () -> applySimulation()),
+        logicYieldOnEnd("Whether logic processors stop for the rest of the tick when they reach the end of their program.", false, () -> applyLogic()),
+        metrics("Serves metrics in the Prometheus text format over HTTP, at /metrics.", false, () -> Events.fire(Trigger.metricsConfigChanged)),
+        metricsPort("The port for metrics.", 6860, () -> Events.fire(Trigger.metricsConfigChanged)),
+        metricsAddress("The bind address for metrics.", "localhost", () -> Events.fire(Trigger.metricsConfigChanged)),
         debug("Enable debug logging", false, () -> Log.level = debug() ? LogLevel.debug : LogLevel.info);
 
         public static final Config[] all = values();
@@ -543,11 +551,32 @@ public class Administration{
         private static boolean debug(){
             return Config.debug.bool();
         }
+
+        /** Applies the simulation options to their systems. */
+        public static void applySimulation(){
+            if(Vars.liquidSolver == null) return;
+
+            Vars.liquidSolver.enabled = Config.liquidSolver.bool();
+            Vars.conveyorLines.enabled = Config.conveyorLines.bool();
+        }
+
+        /** Applies the logic processor limits to the scheduler. */
+        public static void applyLogic(){
+            if(logicScheduler == null) return;
+
+            logicScheduler.instructionBudget = logicInstructionBudget.num();
+            logicScheduler.timeBudget = logicTimeBudget.num();
+            logicScheduler.threads = logicThreads.num();
+            LExecutor.yieldOnEnd = logicYieldOnEnd.bool();
+        }
     }
 
     public static class PlayerInfo{
+        /** Name of players that have not joined yet. */
+        public static final String unknownName = "<unknown>";
+
         public String id;
-        public String lastName = "<unknown>", lastIP = "<unknown>";
+        public String lastName = unknownName, lastIP = "<unknown>";
         public Seq<String> ips = new Seq<>();
         public Seq<String> names = new Seq<>();
         public String adminUsid;
@@ -561,6 +590,8 @@ public class Administration{
         public transient int messageInfractions;
         public transient Ratekeeper rate = new Ratekeeper();
         public transient Interval messageTimer = new Interval();
+        /** Hash of this info as it was last written by the player store. */
+        transient int savedHash;
 
         PlayerInfo(String id){
             this.id = id;
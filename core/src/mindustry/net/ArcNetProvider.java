@@ -10,6 +10,7 @@ import arc.util.*;
 import arc.util.Log.*;
 import arc.util.async.*;
 import arc.util.io.*;
+import mindustry.gen.*;
 import mindustry.net.Net.*;
 import mindustry.net.Packets.*;
 import net.jpountz.lz4.*;
@@ -19,6 +20,7 @@ import java.net.*;
 import java.nio.*;
 import java.nio.channels.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import static mindustry.Vars.*;
 
@@ -95,6 +97,14 @@ public class ArcNetProvider implements NetProvider{
 
                 ArcConnection kn = new ArcConnection(ip, connection);
 
+                //reject banned addresses here, so that floods of them never reach the main thread
+                if(netServer != null && netServer.admins.isAddressBanned(ip)){
+                    Log.debug("&bRejected banned connection: @", ip);
+                    Call.kick(kn, KickReason.banned);
+                    kn.close();
+                    return;
+                }
+
                 Connect c = new Connect();
                 c.addressTCP = ip;
 
@@ -123,7 +133,9 @@ public class ArcNetProvider implements NetProvider{
                 ArcConnection k = getByArcID(connection.getID());
                 if(!(object instanceof Packet pack) || k == null) return;
 
+                k.queued.incrementAndGet();
                 Core.app.post(() -> {
+                    k.queued.decrementAndGet();
                     try{
                         net.handleServerReceived(k, pack);
                     }catch(Throwable e){
@@ -261,6 +273,16 @@ public class ArcNetProvider implements NetProvider{
         serverThread.start();
     }
 
+    @Override
+    public long bytesReceived(){
+        return PacketSerializer.bytesReceived.get();
+    }
+
+    @Override
+    public long bytesSent(){
+        return PacketSerializer.bytesSent.get();
+    }
+
     @Override
     public void closeServer(){
         connections.clear();
@@ -280,6 +302,8 @@ public class ArcNetProvider implements NetProvider{
 
     class ArcConnection extends NetConnection{
         public final Connection connection;
+        /** Packets posted to the main thread that have not been handled yet. */
+        final AtomicInteger queued = new AtomicInteger();
 
         public ArcConnection(String address, Connection connection){
             super(address);
@@ -291,6 +315,11 @@ public class ArcNetProvider implements NetProvider{
             return connection.isConnected();
         }
 
+        @Override
+        public int queuedPackets(){
+            return queued.get();
+        }
+
         @Override
         public void sendStream(Streamable stream){
             connection.addListener(new InputStreamSender(stream.stream, 512){
@@ -348,6 +377,9 @@ public class ArcNetProvider implements NetProvider{
         ThreadLocal<Reads> reads = Threads.local(() -> new Reads(new ByteBufferInput(decompressBuffer.get())));
         ThreadLocal<Writes> writes = Threads.local(() -> new Writes(new ByteBufferOutput(decompressBuffer.get())));
 
+        //totals for metrics; serializers are shared between the network threads
+        static final AtomicLong bytesReceived = new AtomicLong(), bytesSent = new AtomicLong();
+
         //for debugging network write counts
         static WindowedMean upload = new WindowedMean(5), download = new WindowedMean(5);
         static long lastUpload, lastDownload, uploadAccum, downloadAccum;
@@ -355,6 +387,13 @@ public class ArcNetProvider implements NetProvider{
 
         @Override
         public Object read(ByteBuffer byteBuffer){
+            int start = byteBuffer.position();
+            Object result = readObject(byteBuffer);
+            bytesReceived.addAndGet(byteBuffer.position() - start);
+            return result;
+        }
+
+        Object readObject(ByteBuffer byteBuffer){
             if(debug){
                 if(Time.timeSinceMillis(lastDownload) >= 1000){
                     lastDownload = Time.millis();
@@ -400,8 +439,9 @@ public class ArcNetProvider implements NetProvider{
 
         @Override
         public void write(ByteBuffer byteBuffer, Object o){
+            int start = byteBuffer.position();
             if(debug){
-                lastPos = byteBuffer.position();
+                lastPos = start;
             }
 
             //write raw buffer
@@ -448,6 +488,8 @@ public class ArcNetProvider implements NetProvider{
                 }
                 uploadAccum += byteBuffer.position() - lastPos;
             }
+
+            bytesSent.addAndGet(byteBuffer.position() - start);
         }
 
         public void writeFramework(ByteBuffer buffer, FrameworkMessage message){
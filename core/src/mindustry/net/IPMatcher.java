@@ -0,0 +1,257 @@
+package mindustry.net;
+
+import arc.struct.*;
+import arc.util.*;
+
+import java.net.*;
+
+/**
+ * Matches IP addresses against a set of addresses and ranges, using a binary trie of prefixes for each address family.
+ * Immutable, so it can be used from any thread; build a new one when the set changes.
+ * <p>
+ * Patterns are either addresses, ranges in CIDR notation (10.0.0.0/8, 2001:db8::/32), or when built with prefixes allowed,
+ * the start of an address (10.0.). The start of an IPv4 address is matched exactly like {@link String#startsWith(String)} would.
+ */
+public class IPMatcher{
+    public static final IPMatcher none = new IPMatcher(new Seq<>(), false);
+
+    private final Trie v4 = new Trie(), v6 = new Trie();
+    /** Prefixes of IPv6 addresses that are not a whole amount of groups; compared as strings. */
+    private final String[] textPrefixes;
+    private final boolean empty;
+
+    /** @param prefixes whether patterns without a range are the start of an address, instead of a single address. */
+    public IPMatcher(Iterable<String> patterns, boolean prefixes){
+        Seq<String> text = new Seq<>();
+        boolean any = false;
+
+        for(String pattern : patterns){
+            if(add(pattern.trim(), prefixes, text)){
+                any = true;
+            }else{
+                Log.warn("Invalid IP address or range: '@'", pattern);
+            }
+        }
+
+        v4.compact();
+        v6.compact();
+        textPrefixes = text.toArray(String.class);
+        empty = !any;
+    }
+
+    public boolean isEmpty(){
+        return empty;
+    }
+
+    /** @return whether this address matches any pattern. Invalid addresses never match. */
+    public boolean matches(String address){
+        if(empty || address == null) return false;
+
+        long v4address = parse4(address, 0, address.length());
+        if(v4address != -1L){
+            return v4.matches((int)v4address);
+        }
+
+        for(String prefix : textPrefixes){
+            if(address.startsWith(prefix)) return true;
+        }
+
+        byte[] bytes = parse6(address);
+        if(bytes == null) return false;
+        //IPv4 addresses mapped to IPv6 are parsed as IPv4 addresses
+        return bytes.length == 4 ? v4.matches(toInt(bytes)) : v6.matches(bytes);
+    }
+
+    private boolean add(String pattern, boolean prefixes, Seq<String> text){
+        int slash = pattern.indexOf('/');
+
+        if(slash != -1){
+            int bits = Strings.parseInt(pattern.substring(slash + 1), -1);
+            String address = pattern.substring(0, slash);
+            long v4address = parse4(address, 0, address.length());
+
+            if(v4address != -1L){
+                if(bits < 0 || bits > 32) return false;
+                v4.insert((int)v4address, bits);
+                return true;
+            }
+
+            byte[] bytes = parse6(address);
+            if(bytes == null || bits < 0 || bits > (bytes.length == 4 ? 32 : 128)) return false;
+            if(bytes.length == 4){
+                v4.insert(toInt(bytes), bits);
+            }else{
+                v6.insert(bytes, bits);
+            }
+            return true;
+        }
+
+        if(prefixes && pattern.indexOf(':') == -1){
+            return addPrefix4(pattern);
+        }
+
+        long v4address = parse4(pattern, 0, pattern.length());
+        if(v4address != -1L){
+            v4.insert((int)v4address, 32);
+            return true;
+        }
+
+        byte[] bytes = parse6(pattern);
+        if(bytes != null){
+            if(bytes.length == 4){
+                v4.insert(toInt(bytes), 32);
+            }else{
+                v6.insert(bytes, 128);
+            }
+            return true;
+        }
+
+        if(prefixes && !pattern.isEmpty()){
+            //start of an IPv6 address; too rare to be worth converting into ranges
+            text.add(pattern);
+            return true;
+        }
+
+        return false;
+    }
+
+    /** Adds the ranges of all IPv4 addresses that start with this text. */
+    private boolean addPrefix4(String prefix){
+        int complete = 0, value = 0, start = 0;
+
+        //whole numbers followed by a dot
+        for(int i = 0; i < prefix.length(); i++){
+            if(prefix.charAt(i) != '.') continue;
+
+            long number = parse4(prefix, start, i, 1);
+            if(number == -1L || complete >= 3) return false;
+            value = (value << 8) | (int)number;
+            complete ++;
+            start = i + 1;
+        }
+
+        String partial = prefix.substring(start);
+        if(partial.isEmpty()){
+            v4.insert(complete == 0 ? 0 : value << (8 * (4 - complete)), complete * 8);
+            return true;
+        }
+
+        if(complete >= 4) return false;
+
+        //the last number is incomplete, so it matches every number that starts with it, e.g. 1 matches 1, 10-19 and 100-199
+        boolean any = false;
+        for(int number = 0; number < 256; number++){
+            if(Integer.toString(number).startsWith(partial)){
+                v4.insert(((value << 8) | number) << (8 * (3 - complete)), (complete + 1) * 8);
+                any = true;
+            }
+        }
+        return any;
+    }
+
+    /** @return the address as an unsigned int, or -1 if this is not an IPv4 address. */
+    static long parse4(String text, int from, int to){
+        return parse4(text, from, to, 4);
+    }
+
+    static long parse4(String text, int from, int to, int parts){
+        long result = 0;
+        int count = 0, number = -1, digits = 0;
+
+        for(int i = from; i <= to; i++){
+            char c = i == to ? '.' : text.charAt(i);
+            if(c == '.'){
+                if(number == -1 || ++count > parts) return -1L;
+                result = (result << 8) | number;
+                number = -1;
+                digits = 0;
+            }else if(c >= '0' && c <= '9'){
+                //no leading zeros, since some parsers read them as octal
+                if(digits > 0 && number == 0) return -1L;
+                number = (number == -1 ? 0 : number * 10) + (c - '0');
+                if(++digits > 3 || number > 255) return -1L;
+            }else{
+                return -1L;
+            }
+        }
+
+        return count == parts ? result : -1L;
+    }
+
+    /** @return the bytes of an IPv6 address, 4 bytes for an IPv4 address mapped to IPv6, or null if this is not an IPv6 address. */
+    static @Nullable byte[] parse6(String text){
+        //anything else may be treated as a host name and looked up
+        if(text.indexOf(':') == -1) return null;
+
+        try{
+            return InetAddress.getByName(text).getAddress();
+        }catch(Exception e){
+            return null;
+        }
+    }
+
+    static int toInt(byte[] bytes){
+        return ((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16) | ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+    }
+
+    /** Binary trie of address prefixes. Node 0 is the root; a child index of 0 means there is no child. */
+    static class Trie{
+        IntSeq children = IntSeq.with(0, 0);
+        Bits ends = new Bits();
+        int[] nodes;
+
+        void insert(int address, int bits){
+            int node = 0;
+            for(int i = 0; i < bits && !ends.get(node); i++){
+                node = child(node, (address >>> (31 - i)) & 1);
+            }
+            ends.set(node);
+        }
+
+        void insert(byte[] address, int bits){
+            int node = 0;
+            for(int i = 0; i < bits && !ends.get(node); i++){
+                node = child(node, (address[i >> 3] >>> (7 - (i & 7))) & 1);
+            }
+            ends.set(node);
+        }
+
+        int child(int node, int bit){
+            int index = node * 2 + bit;
+            int child = children.get(index);
+            if(child == 0){
+                child = children.size / 2;
+                children.add(0, 0);
+                children.set(index, child);
+            }
+            return child;
+        }
+
+        void compact(){
+            nodes = children.toArray();
+            children = null;
+        }
+
+        boolean matches(int address){
+            int[] nodes = this.nodes;
+            int node = 0;
+            for(int i = 0; i < 32; i++){
+                if(ends.get(node)) return true;
+                node = nodes[node * 2 + ((address >>> (31 - i)) & 1)];
+                if(node == 0) return false;
+            }
+            return ends.get(node);
+        }
+
+        boolean matches(byte[] address){
+            int[] nodes = this.nodes;
+            int node = 0;
+            for(int i = 0; i < address.length * 8; i++){
+                if(ends.get(node)) return true;
+                node = nodes[node * 2 + ((address[i >> 3] >>> (7 - (i & 7))) & 1)];
+                if(node == 0) return false;
+            }
+            return ends.get(node);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package mindustry.net;
+
+import arc.*;
+import arc.files.*;
+import arc.struct.*;
+import arc.util.*;
+import arc.util.serialization.*;
+import arc.util.serialization.JsonWriter.*;
+import mindustry.gen.*;
+import mindustry.net.Administration.*;
+
+import java.io.*;
+
+/**
+ * Stores player info in an append-only log with one JSON record per line; the last record of a player wins.
+ * Saving only appends info that changed, and the log is compacted on load once it mostly holds outdated records.
+ * If there is no log yet, player info is migrated from the settings, where it used to be stored as one value.
+ */
+public class LogPlayerStore extends PlayerStore{
+    /** Setting that held all player info before it was moved to a log. */
+    public static final String legacyKey = "player-data";
+
+    final Fi file;
+    final Json json = new Json(OutputType.json);
+    final StringBuilder buffer = new StringBuilder();
+
+    public LogPlayerStore(Fi file){
+        this.file = file;
+        json.setIgnoreUnknownFields(true);
+        json.setElementType(PlayerInfo.class, "ips", String.class);
+        json.setElementType(PlayerInfo.class, "names", String.class);
+    }
+
+    @Override
+    public void load(){
+        clear();
+
+        if(!file.exists()){
+            migrate();
+            return;
+        }
+
+        int records = 0;
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(file.read(), Strings.utf8), 1 << 16)){
+            String line;
+            while((line = reader.readLine()) != null){
+                if(line.isEmpty()) continue;
+                records ++;
+
+                try{
+                    PlayerInfo info = json.fromJson(PlayerInfo.class, line);
+                    if(info.id == null) continue;
+                    info.savedHash = line.hashCode();
+                    add(info);
+                }catch(Throwable e){
+                    //most likely a record that was cut off by a crash; the ones before it are still valid
+                    Log.warn("Skipping damaged record in @: @", file.name(), e.getMessage());
+                }
+            }
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+
+        //loading replaced info with newer records, so nothing has changed yet
+        touched.clear();
+
+        if(records > size() * 2 + 1000){
+            compact();
+        }
+    }
+
+    @Override
+    public void save(){
+        if(touched.isEmpty()) return;
+
+        buffer.setLength(0);
+
+        for(var iter = touched.iterator(); iter.hasNext();){
+            PlayerInfo info = iter.next();
+            String line = json.toJson(info, PlayerInfo.class);
+            int hash = line.hashCode();
+
+            if(hash != info.savedHash){
+                buffer.append(line).append('\n');
+                info.savedHash = hash;
+                index(info);
+            }else if(!online(info)){
+                //unchanged since it was last written; it will be touched again before it changes
+                iter.remove();
+            }
+        }
+
+        if(buffer.length() > 0){
+            try(Writer writer = new OutputStreamWriter(file.write(true), Strings.utf8)){
+                writer.append(buffer);
+            }catch(IOException e){
+                throw new RuntimeException(e);
+            }
+            buffer.setLength(0);
+        }
+    }
+
+    /** Rewrites the log with only the latest record of every player. */
+    public void compact(){
+        Fi temp = file.sibling(file.name() + ".tmp");
+
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(temp.write(false), Strings.utf8), 1 << 16)){
+            each(info -> {
+                String line = json.toJson(info, PlayerInfo.class);
+                info.savedHash = line.hashCode();
+                try{
+                    writer.write(line);
+                    writer.write('\n');
+                }catch(IOException e){
+                    throw new RuntimeException(e);
+                }
+            });
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+
+        temp.moveTo(file);
+    }
+
+    @SuppressWarnings("unchecked")
+    void migrate(){
+        ObjectMap<String, PlayerInfo> legacy = Core.settings.getJson(legacyKey, ObjectMap.class, ObjectMap::new);
+        for(PlayerInfo info : legacy.values()){
+            if(info.id != null) add(info);
+        }
+        touched.clear();
+
+        //write the log before the old data is removed, so nothing is lost if this fails
+        compact();
+
+        if(legacy.size > 0){
+            Core.settings.remove(legacyKey);
+            Log.info("Moved @ player records from the settings to @.", legacy.size, file.name());
+        }
+    }
+
+    boolean online(PlayerInfo info){
+        return Groups.player.contains(player -> !player.isLocal() && info.id.equals(player.uuid()));
+    }
+}
@@ -352,6 +352,16 @@ public class Net{
         return !server && active;
     }
 
+    /** @return total bytes of packets received since startup, if the provider tracks it. */
+    public long bytesReceived(){
+        return provider.bytesReceived();
+    }
+
+    /** @return total bytes of packets sent since startup, if the provider tracks it. */
+    public long bytesSent(){
+        return provider.bytesSent();
+    }
+
     public void dispose(){
         provider.dispose();
         server = false;
@@ -388,6 +398,16 @@ public class Net{
         /** Close the server connection. */
         void closeServer();
 
+        /** @return total bytes of packets received, or 0 if this is not tracked. */
+        default long bytesReceived(){
+            return 0;
+        }
+
+        /** @return total bytes of packets sent, or 0 if this is not tracked. */
+        default long bytesSent(){
+            return 0;
+        }
+
         /** Close all connections. */
         default void dispose(){
             disconnectClient();
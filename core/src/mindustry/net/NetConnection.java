@@ -36,6 +36,11 @@ public abstract class NetConnection{
         this.address = address;
     }
 
+    /** @return amount of packets received from this connection that have not been handled yet. */
+    public int queuedPackets(){
+        return 0;
+    }
+
     /** Kick with a special, localized reason. Use this if possible. */
     public void kick(KickReason reason){
         kick(reason, (reason == KickReason.kick || reason == KickReason.banned || reason == KickReason.vote) ? 30 * 1000 : 0);
@@ -0,0 +1,247 @@
+package mindustry.net;
+
+import arc.func.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.net.Administration.*;
+
+import java.util.*;
+
+/**
+ * Holds all player info in memory, indexed by UUID, IP and name. Subclasses decide how the info is persisted.
+ * Info handed out by any lookup may be changed by the caller; it is checked for changes on the next {@link #save()}.
+ * Names and IPs are only ever added to info, and indexes are never pruned when they are not, so lookups check every candidate they find.
+ */
+public abstract class PlayerStore{
+    private final ObjectMap<String, PlayerInfo> players = new ObjectMap<>();
+    private final ObjectMap<String, Seq<PlayerInfo>> ips = new ObjectMap<>();
+    /** Lowercase names, and lowercase names without colors. */
+    private final ObjectMap<String, Seq<PlayerInfo>> names = new ObjectMap<>();
+    /** Lowercase names without colors, sorted for prefix searches. */
+    private final TreeMap<String, Seq<PlayerInfo>> plainNames = new TreeMap<>();
+    /** Info that was handed out and may have changed since it was last saved. */
+    protected final ObjectSet<PlayerInfo> touched = new ObjectSet<>();
+
+    /** Reads all info and adds it with {@link #add(PlayerInfo)}. */
+    public abstract void load();
+
+    /** Persists the info in {@link #touched} that changed. */
+    public abstract void save();
+
+    public int size(){
+        return players.size;
+    }
+
+    public @Nullable PlayerInfo get(String id){
+        PlayerInfo info = players.get(id);
+        if(info != null) touched.add(info);
+        return info;
+    }
+
+    public PlayerInfo getCreate(String id){
+        PlayerInfo info = get(id);
+        if(info == null){
+            info = new PlayerInfo(id);
+            add(info);
+            touched.add(info);
+        }
+        return info;
+    }
+
+    /** @return all info matching the predicate. Scans every player. */
+    public Seq<PlayerInfo> select(Boolf<PlayerInfo> pred){
+        Seq<PlayerInfo> result = new Seq<>();
+        for(PlayerInfo info : players.values()){
+            if(pred.get(info)){
+                result.add(info);
+            }
+        }
+        touched.addAll(result);
+        return result;
+    }
+
+    /** Runs for every info. Unlike lookups, this does not hand the info out, so changes made here are not saved. */
+    protected void each(Cons<PlayerInfo> cons){
+        for(PlayerInfo info : players.values()){
+            cons.get(info);
+        }
+    }
+
+    /** @return all info that has used this IP. */
+    public Seq<PlayerInfo> findByIP(String ip){
+        Seq<PlayerInfo> result = new Seq<>();
+        Seq<PlayerInfo> candidates = ips.get(ip);
+        if(candidates != null){
+            for(PlayerInfo info : candidates){
+                if(info.ips.contains(ip, false)) result.add(info);
+            }
+        }
+        touched.addAll(result);
+        return result;
+    }
+
+    /** @return the first info that has used this IP, or null. */
+    public @Nullable PlayerInfo firstByIP(String ip){
+        Seq<PlayerInfo> candidates = ips.get(ip);
+        if(candidates != null){
+            for(PlayerInfo info : candidates){
+                if(info.ips.contains(ip, false)){
+                    touched.add(info);
+                    return info;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** @return info with this UUID or IP, that used this name, or whose last name matches it without colors or case. */
+    public ObjectSet<PlayerInfo> findByName(String name){
+        ObjectSet<PlayerInfo> result = new ObjectSet<>();
+
+        PlayerInfo byId = players.get(name);
+        if(byId != null) result.add(byId);
+
+        addMatches(result, ips.get(name), name);
+        addMatches(result, names.get(name.toLowerCase()), name);
+        addMatches(result, names.get(name.trim().toLowerCase()), name);
+
+        touched.addAll(result);
+        return result;
+    }
+
+    /** @return info with a name that contains this text, ignoring case. Scans every distinct name once. */
+    public ObjectSet<PlayerInfo> searchNames(String name){
+        ObjectSet<PlayerInfo> result = new ObjectSet<>();
+        String lower = name.toLowerCase();
+
+        for(var entry : names){
+            if(!entry.key.contains(lower) && !entry.key.contains(name)) continue;
+
+            for(PlayerInfo info : entry.value){
+                if(!result.contains(info) && info.names.contains(n -> n.toLowerCase().contains(lower) || Strings.stripColors(n).trim().toLowerCase().contains(name))){
+                    result.add(info);
+                }
+            }
+        }
+
+        touched.addAll(result);
+        return result;
+    }
+
+    /** @return info with a name that starts with this text, ignoring colors and case. */
+    public ObjectSet<PlayerInfo> searchNamePrefix(String prefix){
+        ObjectSet<PlayerInfo> result = new ObjectSet<>();
+        String key = prefix.trim().toLowerCase();
+
+        for(Seq<PlayerInfo> infos : plainNames.subMap(key, key + Character.MAX_VALUE).values()){
+            result.addAll(infos);
+        }
+
+        touched.addAll(result);
+        return result;
+    }
+
+    /** Adds info to the store, replacing info with the same UUID. */
+    protected void add(PlayerInfo info){
+        PlayerInfo prev = players.put(info.id, info);
+        if(prev != null && prev != info){
+            unindex(prev);
+            touched.remove(prev);
+        }
+        index(info, prev != info);
+    }
+
+    /** Adds the current names and IPs of this info to the indexes. Call after changing them. */
+    public void index(PlayerInfo info){
+        index(info, false);
+    }
+
+    /** @param fresh whether the info is not in any index yet, so that only its own keys can be duplicates. */
+    void index(PlayerInfo info, boolean fresh){
+        for(String ip : info.ips){
+            add(ips, ip, info, fresh);
+        }
+        indexName(info, info.lastName, fresh);
+        for(String name : info.names){
+            indexName(info, name, fresh);
+        }
+    }
+
+    void indexName(PlayerInfo info, String name, boolean fresh){
+        //every new player starts with the same placeholder name
+        if(name == null || name.equals(PlayerInfo.unknownName)) return;
+
+        String plain = Strings.stripColors(name).trim().toLowerCase();
+        add(names, name.toLowerCase(), info, fresh);
+        add(names, plain, info, fresh);
+
+        Seq<PlayerInfo> sorted = plainNames.get(plain);
+        if(sorted == null) plainNames.put(plain, sorted = new Seq<>(1));
+        add(sorted, info, fresh);
+    }
+
+    void unindex(PlayerInfo info){
+        for(String ip : info.ips){
+            remove(ips, ip, info);
+        }
+        unindexName(info, info.lastName);
+        for(String name : info.names){
+            unindexName(info, name);
+        }
+    }
+
+    void unindexName(PlayerInfo info, String name){
+        if(name == null) return;
+
+        String plain = Strings.stripColors(name).trim().toLowerCase();
+        remove(names, name.toLowerCase(), info);
+        remove(names, plain, info);
+
+        Seq<PlayerInfo> sorted = plainNames.get(plain);
+        if(sorted != null){
+            sorted.remove(info, true);
+            if(sorted.isEmpty()) plainNames.remove(plain);
+        }
+    }
+
+    /** Removes all info. */
+    protected void clear(){
+        players.clear();
+        ips.clear();
+        names.clear();
+        plainNames.clear();
+        touched.clear();
+    }
+
+    private void addMatches(ObjectSet<PlayerInfo> result, @Nullable Seq<PlayerInfo> candidates, String name){
+        if(candidates == null) return;
+
+        for(PlayerInfo info : candidates){
+            if(info.lastName.equalsIgnoreCase(name) || info.names.contains(name, false)
+            || Strings.stripColors(info.lastName).equals(name) || info.ips.contains(name, false)){
+                result.add(info);
+            }
+        }
+    }
+
+    private static void add(ObjectMap<String, Seq<PlayerInfo>> map, String key, PlayerInfo info, boolean fresh){
+        Seq<PlayerInfo> seq = map.get(key);
+        if(seq == null) map.put(key, seq = new Seq<>(1));
+        add(seq, info, fresh);
+    }
+
+    private static void add(Seq<PlayerInfo> seq, PlayerInfo info, boolean fresh){
+        //names shared by many players make a full check slow, so only do it for info that may already be indexed
+        if(fresh ? (seq.isEmpty() || seq.peek() != info) : !seq.contains(info, true)){
+            seq.add(info);
+        }
+    }
+
+    private static void remove(ObjectMap<String, Seq<PlayerInfo>> map, String key, PlayerInfo info){
+        Seq<PlayerInfo> seq = map.get(key);
+        if(seq != null){
+            seq.remove(info, true);
+            if(seq.isEmpty()) map.remove(key);
+        }
+    }
+}
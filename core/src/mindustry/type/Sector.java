@@ -177,6 +177,11 @@ public class Sector{
     }
 
     public void addItems(ItemSeq items){
+        addItems(items, true);
+    }
+
+    /** @param save whether to save the info of this sector if it is not being played; otherwise, the caller saves it later. */
+    public void addItems(ItemSeq items, boolean save){
 
         if(isBeingPlayed()){
             if(state.rules.defaultTeam.core() != null){
@@ -187,7 +192,7 @@ public class Sector{
         }else if(hasBase()){
             items.each((item, amount) -> info.items.add(item, Math.min(info.storageCapacity - info.items.get(item), amount)));
             info.items.checkNegative();
-            saveInfo();
+            if(save) saveInfo();
         }
     }
 
@@ -257,6 +262,11 @@ public class Sector{
         /** Project a coordinate into 3D space.
          * Both coordinates should be normalized to floats in the range [0, 1] */
         public Vec3 project(float x, float y){
+            return project(x, y, result);
+        }
+
+        /** Project a coordinate into 3D space, writing the result into a vector. Safe to call from any thread. */
+        public Vec3 project(float x, float y, Vec3 result){
             float nx = (x - 0.5f) * 2f, ny = (y - 0.5f) * 2f;
             return result.set(center).add(right, nx).add(top, ny);
         }
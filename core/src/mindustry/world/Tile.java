@@ -181,9 +181,16 @@ public class Tile implements Position, QuadTreeObject, Displayable{
     public void setTeam(Team team){
         if(build != null){
             build.team(team);
+            getLinkedTiles(world.tiles::updateCache);
         }
     }
 
+    /** Sets the tile data and updates the cell cache of {@link Tiles}, as darkness is stored in it. */
+    public void setData(byte data){
+        this.data = data;
+        world.tiles.updateCache(this);
+    }
+
     public boolean isCenter(){
         return build == null || build.tile() == this;
     }
@@ -206,6 +213,7 @@ public class Tile implements Position, QuadTreeObject, Displayable{
 
     public void setBlock(Block type, Team team, int rotation, Prov<Building> entityprov){
         changing = true;
+        boolean darkened = isDarkened();
 
         if(type.isStatic() || this.block.isStatic()){
             recache();
@@ -246,6 +254,7 @@ public class Tile implements Position, QuadTreeObject, Displayable{
                                     //assign entity and type to blocks, so they act as proxies for this one
                                     other.build = entity;
                                     other.block = block;
+                                    world.tiles.updateCache(other);
                                 }
                             }
                         }
@@ -257,6 +266,13 @@ public class Tile implements Position, QuadTreeObject, Displayable{
             this.block = block;
         }
 
+        world.tiles.updateCache(this);
+
+        //walls around this one may have become lighter or darker
+        if(darkened != isDarkened() && !world.isGenerating()){
+            world.updateDarkness(x, y);
+        }
+
         changed();
         changing = false;
     }
@@ -273,6 +289,7 @@ public class Tile implements Position, QuadTreeObject, Displayable{
     public void setFloor(Floor type){
         this.floor = type;
         this.overlay = (Floor)Blocks.air;
+        world.tiles.updateCache(this);
 
         if(!headless && !world.isGenerating()){
             renderer.blocks.removeFloorIndex(this);
@@ -556,6 +573,7 @@ public class Tile implements Position, QuadTreeObject, Displayable{
 
                                 other.build = null;
                                 other.block = Blocks.air;
+                                world.tiles.updateCache(other);
 
                                 //manually call changed event
                                 other.fireChanged();
@@ -2,6 +2,7 @@ package mindustry.world.blocks.defense.turrets;
 
 import arc.graphics.g2d.*;
 import arc.struct.*;
+import arc.util.*;
 import mindustry.annotations.Annotations.*;
 import mindustry.content.*;
 import mindustry.core.*;
@@ -74,6 +75,9 @@ public class LiquidTurret extends Turret{
     }
 
     public class LiquidTurretBuild extends TurretBuild{
+        /** Target for fires that are not entities; never added. */
+        transient @Nullable Fire fieldTarget;
+
         @Override
         public void draw(){
             super.draw();
@@ -101,7 +105,8 @@ public class LiquidTurret extends Turret{
             if(extinguish && liquids.current().canExtinguish()){
                 int tx = World.toTile(x), ty = World.toTile(y);
                 Fire result = null;
-                float mindst = 0f;
+                Tile fieldResult = null;
+                float mindst = 0f, fieldDst = 0f;
                 int tr = (int)(range / tilesize);
                 for(int x = -tr; x <= tr; x++){
                     for(int y = -tr; y <= tr; y++){
@@ -112,10 +117,23 @@ public class LiquidTurret extends Turret{
                         if(other != null && fire != null && Fires.has(other.x, other.y) && dst <= range * range && (result == null || dst < mindst) && (other.build == null || other.team() == team)){
                             result = fire;
                             mindst = dst;
+                        }else if(other != null && fire == null && hazards.hasFire(other.x, other.y) && (other.build == null || other.team() == team)){
+                            dst = dst2(other.worldx(), other.worldy());
+                            if(dst <= range * range && (fieldResult == null || dst < fieldDst)){
+                                fieldResult = other;
+                                fieldDst = dst;
+                            }
                         }
                     }
                 }
 
+                //fires of the hazard field are not entities, so aim at a placeholder on their tile
+                if(fieldResult != null && (result == null || fieldDst < mindst)){
+                    if(fieldTarget == null) fieldTarget = Fire.create();
+                    fieldTarget.set(fieldResult.worldx(), fieldResult.worldy());
+                    result = fieldTarget;
+                }
+
                 if(result != null){
                     target = result;
                     //don't run standard targeting
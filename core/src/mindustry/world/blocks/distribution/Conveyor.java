@@ -135,6 +135,10 @@ public class Conveyor extends Block implements Autotiler{
         public int blendsclx = 1, blendscly = 1;
 
         public float clogHeat = 0f;
+        /** Line of {@link ConveyorLines} that this conveyor is part of, or null if it updates by itself. */
+        transient @Nullable ConveyorLines.Line line;
+        /** Whether this conveyor is queued for a rebuild in {@link ConveyorLines}. */
+        transient boolean lineChanged;
 
         @Override
         public void draw(){
@@ -213,6 +217,13 @@ public class Conveyor extends Block implements Autotiler{
             next = front();
             nextc = next instanceof ConveyorBuild && next.team == team ? (ConveyorBuild)next : null;
             aligned = nextc != null && rotation == next.rotation;
+            conveyorLines.invalidate(this);
+        }
+
+        @Override
+        public void onRemoved(){
+            super.onRemoved();
+            conveyorLines.invalidate(this);
         }
 
         @Override
@@ -244,6 +255,17 @@ public class Conveyor extends Block implements Autotiler{
 
         @Override
         public void updateTile(){
+            //conveyors in a line are moved by ConveyorLines
+            if(line == null){
+                updateConveyor(false);
+            }
+        }
+
+        /**
+         * Moves items forward and passes them to the next building.
+         * @param linked whether the next conveyor is in the same line, so that items can be handed over directly.
+         */
+        public void updateConveyor(boolean linked){
             minitem = 1f;
             mid = 0;
 
@@ -267,7 +289,7 @@ public class Conveyor extends Block implements Autotiler{
                 if(ys[i] > 0.5 && i > 0) mid = i - 1;
                 xs[i] = Mathf.approach(xs[i], 0, moved*2);
 
-                if(ys[i] >= 1f && pass(ids[i])){
+                if(ys[i] >= 1f && (linked ? passLinked(ids[i]) : pass(ids[i]))){
                     //align X position if passing forwards
                     if(aligned){
                         nextc.xs[nextc.lastInserted] = xs[i];
@@ -297,6 +319,20 @@ public class Conveyor extends Block implements Autotiler{
             return false;
         }
 
+        /** Same as {@link #pass(Item)} for an aligned conveyor of the same line, without the checks that always pass. */
+        final boolean passLinked(Item item){
+            ConveyorBuild n = nextc;
+            if(item == null || n.len >= capacity || n.minitem < itemSpace) return false;
+
+            n.noSleep();
+            n.items.add(item, 1);
+            n.add(0);
+            n.xs[0] = 0;
+            n.ys[0] = 0;
+            n.ids[0] = item;
+            return true;
+        }
+
         @Override
         public int removeStack(Item item, int amount){
             noSleep();
@@ -403,7 +439,7 @@ public class Conveyor extends Block implements Autotiler{
             }
 
             //this updates some state
-            updateTile();
+            updateConveyor(false);
         }
 
 
@@ -0,0 +1,208 @@
+package mindustry.world.blocks.distribution;
+
+import arc.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.game.EventType.*;
+import mindustry.gen.*;
+import mindustry.world.blocks.distribution.ArmoredConveyor.*;
+import mindustry.world.blocks.distribution.Conveyor.*;
+
+/**
+ * Updates straight runs of conveyors as lines, instead of letting each conveyor update itself.
+ * Each line is stored in the direction items move, so conveyors update in the same order as a line placed from start to end.
+ * Items are handed over between conveyors of a line directly; only the end of a line passes items to other buildings.
+ * <p>
+ * Items stay in the arrays of each conveyor, which saving, drawing and unloading read directly. Stack conveyors are not part of lines:
+ * they move whole stacks on a cooldown of their own, so there is no per-item work to batch.
+ * <p>
+ * Lines are rebuilt when one of their conveyors changes; only lines that contain or touch a changed conveyor are rebuilt.
+ */
+public class ConveyorLines{
+    /** Whether lines are used. Conveyors update by themselves when this is false. */
+    public boolean enabled;
+
+    private final Seq<Line> lines = new Seq<>(false, 16, Line.class);
+    /** Conveyors that changed since the last update. */
+    private final Seq<ConveyorBuild> changed = new Seq<>(false, 16, ConveyorBuild.class);
+    //state of a rebuild
+    private final Seq<ConveyorBuild> candidates = new Seq<>(false, 64, ConveyorBuild.class), members = new Seq<>(false, 64, ConveyorBuild.class);
+    /** Whether all conveyors of the world have to be collected again, which is the case after loading or enabling lines. */
+    private boolean full = true;
+
+    public ConveyorLines(){
+        Events.on(ResetEvent.class, e -> clear());
+        Events.on(WorldLoadEvent.class, e -> clear());
+        Events.on(BuildTeamChangeEvent.class, e -> {
+            if(e.build instanceof ConveyorBuild conveyor) invalidate(conveyor);
+        });
+    }
+
+    /** @return whether a conveyor can be part of a line. */
+    public static boolean lined(@Nullable Building build){
+        //only the base conveyor types; subclasses may change how items move
+        return build != null && (build.getClass() == ConveyorBuild.class || build.getClass() == ArmoredConveyorBuild.class);
+    }
+
+    /** Rebuilds the line of a conveyor and the lines of its neighbors before the next update. Called when the conveyor is added, removed or its neighbors change. */
+    public void invalidate(ConveyorBuild build){
+        if(enabled && !full && !build.lineChanged){
+            build.lineChanged = true;
+            changed.add(build);
+        }
+    }
+
+    /** @return the amount of lines. */
+    public int lines(){
+        return lines.size;
+    }
+
+    public void update(){
+        if(!enabled){
+            if(!full) clear();
+            return;
+        }
+
+        if(full){
+            full = false;
+            for(Building build : Groups.build){
+                if(build instanceof ConveyorBuild conveyor && lined(build)){
+                    candidates.add(conveyor);
+                }
+            }
+            rebuild();
+        }else if(changed.size > 0){
+            for(int i = 0; i < changed.size; i++){
+                ConveyorBuild build = changed.items[i];
+                build.lineChanged = false;
+                candidate(build);
+
+                //conveyors that fed into this one, or that it feeds into now
+                for(int j = 0; j < build.proximity.size; j++){
+                    if(build.proximity.items[j] instanceof ConveyorBuild other) candidate(other);
+                }
+            }
+            changed.clear();
+            rebuild();
+        }
+
+        for(int l = 0; l < lines.size; l++){
+            Line line = lines.items[l];
+            ConveyorBuild[] items = line.conveyors;
+            for(int i = 0, last = line.conveyors.length - 1; i <= last; i++){
+                ConveyorBuild build = items[i];
+                //sleeping conveyors are empty, and would not update by themselves either
+                if(!build.sleeping()){
+                    build.updateConveyor(i < last);
+                }
+            }
+        }
+    }
+
+    /** Adds a conveyor to the current rebuild, along with the rest of its line. */
+    private void candidate(ConveyorBuild build){
+        if(build.line != null){
+            remove(build.line);
+        }else{
+            candidates.add(build);
+        }
+    }
+
+    /** Removes a line; its conveyors become candidates of the current rebuild. */
+    private void remove(Line line){
+        for(ConveyorBuild build : line.conveyors){
+            build.line = null;
+            candidates.add(build);
+        }
+
+        //unordered removal
+        Line last = lines.pop();
+        if(last != line){
+            lines.items[line.index] = last;
+            last.index = line.index;
+        }
+    }
+
+    /** Builds lines from every candidate that starts one. Conveyors that another conveyor feeds into from behind are not the start of a line. */
+    private void rebuild(){
+        //candidates can grow while this runs, when a line next to them is removed
+        for(int c = 0; c < candidates.size; c++){
+            ConveyorBuild start = candidates.items[c];
+            if(start.line != null || !valid(start)) continue;
+
+            ConveyorBuild feeder = feeder(start);
+            if(feeder != null){
+                //the line that feeds this conveyor has to be extended; conveyors in a loop are never part of a line
+                if(feeder.line != null) remove(feeder.line);
+                continue;
+            }
+
+            members.clear();
+            ConveyorBuild current = start;
+            //a line is straight, so it always ends
+            while(true){
+                current.line = Line.building;
+                members.add(current);
+
+                ConveyorBuild next = current.aligned && lined(current.nextc) && current.nextc.isValid() ? current.nextc : null;
+                if(next == null || next.line == Line.building) break;
+                if(next.line != null) remove(next.line);
+                current = next;
+            }
+
+            Line line = new Line(members);
+            line.index = lines.size;
+            lines.add(line);
+        }
+
+        candidates.clear();
+        members.clear();
+    }
+
+    /** @return a conveyor of a line that feeds into this one from behind, or null. */
+    private static @Nullable ConveyorBuild feeder(ConveyorBuild build){
+        for(int i = 0; i < build.proximity.size; i++){
+            if(build.proximity.items[i] instanceof ConveyorBuild other && other.nextc == build && other.aligned && valid(other)){
+                return other;
+            }
+        }
+        return null;
+    }
+
+    static boolean valid(ConveyorBuild build){
+        return build.isValid() && lined(build);
+    }
+
+    public void clear(){
+        for(int l = 0; l < lines.size; l++){
+            for(ConveyorBuild build : lines.items[l].conveyors){
+                build.line = null;
+            }
+        }
+        for(int i = 0; i < changed.size; i++){
+            changed.items[i].lineChanged = false;
+        }
+        lines.clear();
+        changed.clear();
+        candidates.clear();
+        members.clear();
+        full = true;
+    }
+
+    /** A straight run of conveyors, in the direction items move. */
+    static class Line{
+        /** Marks conveyors of the line that is being built. */
+        static final Line building = new Line(new Seq<>(ConveyorBuild.class));
+
+        final ConveyorBuild[] conveyors;
+        /** Index in the list of lines. */
+        int index;
+
+        Line(Seq<ConveyorBuild> members){
+            conveyors = members.toArray(ConveyorBuild.class);
+            for(ConveyorBuild build : conveyors){
+                build.line = this;
+            }
+        }
+    }
+}
@@ -99,6 +99,11 @@ public class Conduit extends LiquidBlock implements Autotiler{
         public float smoothLiquid;
         public int blendbits, xscl = 1, yscl = 1, blending;
         public boolean capped;
+        /** Index of this conduit in its {@link LiquidSolver} network, or -1 if it moves liquid by itself. */
+        public transient int solverIndex = -1;
+        transient @Nullable LiquidSolver.Network network;
+        /** Whether this conduit is waiting for its network to be rebuilt. */
+        transient boolean solverChanged;
 
         @Override
         public void draw(){
@@ -145,6 +150,13 @@ public class Conduit extends LiquidBlock implements Autotiler{
 
             Building next = front();
             capped = next == null || next.team != team || !next.block.hasLiquids;
+            liquidSolver.invalidate(this);
+        }
+
+        @Override
+        public void onRemoved(){
+            super.onRemoved();
+            liquidSolver.invalidate(this);
         }
 
         @Override
@@ -158,7 +170,14 @@ public class Conduit extends LiquidBlock implements Autotiler{
         public void updateTile(){
             smoothLiquid = Mathf.lerpDelta(smoothLiquid, liquids.currentAmount() / liquidCapacity, 0.05f);
 
-            if(liquids.total() > 0.001f && timer(timerFlow, 1)){
+            if(solverIndex != -1){
+                //liquid is moved by the solver
+                if(liquids.total() > 0.001f){
+                    noSleep();
+                }else{
+                    sleep();
+                }
+            }else if(liquids.total() > 0.001f && timer(timerFlow, 1)){
                 moveLiquidForward(leaks, liquids.current());
                 noSleep();
             }else{
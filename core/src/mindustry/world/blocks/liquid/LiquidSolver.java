@@ -0,0 +1,267 @@
+package mindustry.world.blocks.liquid;
+
+import arc.*;
+import arc.math.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.game.EventType.*;
+import mindustry.gen.*;
+import mindustry.type.*;
+import mindustry.world.blocks.liquid.ArmoredConduit.*;
+import mindustry.world.blocks.liquid.Conduit.*;
+
+import java.util.*;
+
+/**
+ * Moves liquid through networks of connected conduits in one pass, instead of letting each conduit update itself.
+ * Transfers between two conduits use capacities cached in flat arrays and skip the virtual calls of {@link Building#moveLiquid(Building, Liquid)}.
+ * Only conduits that do not flow into another conduit of the network use the regular code path, so bridges, routers
+ * and all other buildings are only ever touched at the ends of a network.
+ * <p>
+ * Conduits of a network move liquid in update order, so liquid spreads through a network exactly as fast as it would
+ * if every conduit updated itself. The difference is that all networks move liquid before any other building updates.
+ * <p>
+ * Networks are rebuilt when one of their conduits changes; only networks that contain or touch a changed conduit are rebuilt.
+ */
+public class LiquidSolver{
+    /** Conduits are added to groups in order of creation, which is the order they update in. */
+    static final Comparator<ConduitBuild> updateOrder = (a, b) -> Integer.compare(a.id, b.id);
+
+    /** Whether the solver is used. Conduits move liquid by themselves when this is false. */
+    public boolean enabled;
+
+    private final Seq<Network> networks = new Seq<>(false, 16, Network.class);
+    /** Conduits that changed since the last update. */
+    private final Seq<ConduitBuild> changed = new Seq<>(false, 16, ConduitBuild.class);
+    //state of a rebuild
+    private final Seq<ConduitBuild> candidates = new Seq<>(false, 64, ConduitBuild.class), queue = new Seq<>(false, 64, ConduitBuild.class);
+    private final ObjectSet<ConduitBuild> visited = new ObjectSet<>();
+    /** Whether all conduits of the world have to be collected again, which is the case after loading or enabling the solver. */
+    private boolean full = true;
+    private float lastFlow;
+
+    public LiquidSolver(){
+        Events.on(ResetEvent.class, e -> clear());
+        Events.on(WorldLoadEvent.class, e -> clear());
+        Events.on(BuildTeamChangeEvent.class, e -> {
+            if(e.build instanceof ConduitBuild conduit) invalidate(conduit);
+        });
+    }
+
+    /** @return whether a building moves liquid through the solver. */
+    public static boolean solved(Building build){
+        //only the base conduit types; subclasses may change how liquid flows
+        return build.getClass() == ConduitBuild.class || build.getClass() == ArmoredConduitBuild.class;
+    }
+
+    /** Rebuilds the network of a conduit and of its neighbors before the next update. Called when the conduit is added, removed or its neighbors change. */
+    public void invalidate(ConduitBuild build){
+        if(enabled && !full && !build.solverChanged){
+            build.solverChanged = true;
+            changed.add(build);
+        }
+    }
+
+    public void update(){
+        if(!enabled){
+            if(!full) clear();
+            return;
+        }
+
+        if(full){
+            full = false;
+            for(Building build : Groups.build){
+                if(build instanceof ConduitBuild conduit && solved(build)){
+                    candidates.add(conduit);
+                }
+            }
+            rebuild();
+        }else if(changed.size > 0){
+            for(int i = 0; i < changed.size; i++){
+                ConduitBuild build = changed.items[i];
+                build.solverChanged = false;
+                candidate(build);
+
+                //conduits that flowed into this one, or that it flows into now
+                for(int j = 0; j < build.proximity.size; j++){
+                    if(build.proximity.items[j] instanceof ConduitBuild other) candidate(other);
+                }
+            }
+            changed.clear();
+            rebuild();
+        }
+
+        //same rate as the flow timer of conduits
+        if(Time.time - lastFlow < 1f && Time.time >= lastFlow) return;
+        lastFlow = Time.time;
+
+        for(int n = 0; n < networks.size; n++){
+            networks.items[n].update();
+        }
+    }
+
+    /** Adds a conduit to the current rebuild, along with the rest of its network. */
+    private void candidate(ConduitBuild build){
+        if(build.network != null){
+            remove(build.network);
+        }else{
+            candidates.add(build);
+        }
+    }
+
+    /** Removes a network; its conduits become candidates of the current rebuild. */
+    private void remove(Network network){
+        for(int i = 0; i < network.size; i++){
+            ConduitBuild build = network.conduits[i];
+            build.network = null;
+            build.solverIndex = -1;
+            candidates.add(build);
+        }
+
+        //unordered removal
+        Network last = networks.pop();
+        if(last != network){
+            networks.items[network.index] = last;
+            last.index = network.index;
+        }
+    }
+
+    /** Splits all candidates into networks of conduits that are connected through flow. */
+    private void rebuild(){
+        //candidates can grow while this runs, when a network next to them is removed
+        for(int c = 0; c < candidates.size; c++){
+            ConduitBuild start = candidates.items[c];
+            if(start.network != null || !valid(start) || !visited.add(start)) continue;
+
+            queue.clear();
+            queue.add(start);
+
+            for(int q = 0; q < queue.size; q++){
+                ConduitBuild build = queue.items[q];
+
+                ConduitBuild target = link(build);
+                if(target != null) visit(target);
+
+                for(int j = 0; j < build.proximity.size; j++){
+                    if(build.proximity.items[j] instanceof ConduitBuild other && link(other) == build){
+                        visit(other);
+                    }
+                }
+            }
+
+            Network network = new Network(queue);
+            network.index = networks.size;
+            networks.add(network);
+        }
+
+        candidates.clear();
+        visited.clear();
+    }
+
+    private void visit(ConduitBuild build){
+        //networks that were not rebuilt can only be reached if they touch a changed conduit, but remove them anyway in case one was missed
+        if(build.network != null) remove(build.network);
+        if(visited.add(build)) queue.add(build);
+    }
+
+    static boolean valid(ConduitBuild build){
+        return build.isValid() && solved(build);
+    }
+
+    /** @return the conduit of the network that this conduit flows into, or null if it flows into something else. */
+    static @Nullable ConduitBuild link(ConduitBuild build){
+        return build.front() instanceof ConduitBuild other && other.team == build.team && (build.rotation + 2) % 4 != other.rotation &&
+            valid(build) && valid(other) ? other : null;
+    }
+
+    public void clear(){
+        for(int n = 0; n < networks.size; n++){
+            Network network = networks.items[n];
+            for(int i = 0; i < network.size; i++){
+                network.conduits[i].network = null;
+                network.conduits[i].solverIndex = -1;
+            }
+        }
+        for(int i = 0; i < changed.size; i++){
+            changed.items[i].solverChanged = false;
+        }
+        networks.clear();
+        changed.clear();
+        candidates.clear();
+        queue.clear();
+        visited.clear();
+        full = true;
+    }
+
+    /** Conduits that are connected through flow, in update order. Their {@link ConduitBuild#solverIndex} is their index in this network. */
+    static class Network{
+        final ConduitBuild[] conduits;
+        final int size;
+        /** Index of the conduit each conduit flows into, or -1 if it flows into something else. */
+        final int[] next;
+        final float[] capacity, pressure;
+        final boolean[] leaks;
+        /** Index in the list of networks. */
+        int index;
+
+        Network(Seq<ConduitBuild> members){
+            members.sort(updateOrder);
+            size = members.size;
+            conduits = members.toArray(ConduitBuild.class);
+            next = new int[size];
+            capacity = new float[size];
+            pressure = new float[size];
+            leaks = new boolean[size];
+
+            for(int i = 0; i < size; i++){
+                ConduitBuild build = conduits[i];
+                build.network = this;
+                build.solverIndex = i;
+                capacity[i] = build.block.liquidCapacity;
+                pressure[i] = build.block.liquidPressure;
+                leaks[i] = ((Conduit)build.block).leaks;
+            }
+
+            for(int i = 0; i < size; i++){
+                ConduitBuild target = link(conduits[i]);
+                next[i] = target == null ? -1 : target.solverIndex;
+            }
+        }
+
+        void update(){
+            ConduitBuild[] items = conduits;
+            for(int i = 0; i < size; i++){
+                ConduitBuild build = items[i];
+                if(!build.enabled || build.liquids.total() <= 0.001f) continue;
+
+                Liquid liquid = build.liquids.current();
+                int target = next[i];
+
+                if(target == -1){
+                    //end of the network
+                    build.moveLiquidForward(leaks[i], liquid);
+                    continue;
+                }
+
+                //same as moveLiquid, without the checks that always pass inside a network
+                ConduitBuild other = items[target];
+                float amount = build.liquids.get(liquid);
+                if(amount <= 0f) continue;
+
+                float otherAmount = other.liquids.get(liquid), otherCapacity = capacity[target];
+                float ofract = otherAmount / otherCapacity;
+                float fract = amount / capacity[i] * pressure[i];
+                float flow = Math.min(Math.min(Mathf.clamp(fract - ofract) * capacity[i], amount), otherCapacity - otherAmount);
+
+                if(flow > 0f && ofract <= fract && (other.liquids.current() == liquid || other.liquids.currentAmount() < 0.2f)){
+                    other.liquids.add(liquid, flow);
+                    build.liquids.remove(liquid, flow);
+                    other.noSleep();
+                }else if(other.liquids.currentAmount() / otherCapacity > 0.1f && fract > 0.1f){
+                    //different liquids meeting; rare, so use the regular code path for its effects
+                    build.moveLiquid(other, liquid);
+                }
+            }
+        }
+    }
+}
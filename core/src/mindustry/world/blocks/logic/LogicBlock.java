@@ -321,12 +321,13 @@ public class LogicBlock extends Block{
 
                     if(keep){
                         //store any older variables
-                        for(Var var : executor.vars){
-                            boolean unit = var.name.equals("@unit");
-                            if(!var.constant || unit){
-                                BVar dest = asm.getVar(var.name);
+                        for(int i = 0; i < executor.names.length; i++){
+                            String name = executor.names[i];
+                            boolean unit = name.equals("@unit");
+                            if(!executor.constant(i) || unit){
+                                BVar dest = asm.getVar(name);
                                 if(dest != null && (!dest.constant || unit)){
-                                    dest.value = var.isobj ? var.objval : var.numval;
+                                    dest.value = executor.value(i);
                                 }
                             }
                         }
@@ -431,12 +432,9 @@ public class LogicBlock extends Block{
 
                 if(accumulator > maxInstructionScale * instructionsPerTick) accumulator = maxInstructionScale * instructionsPerTick;
 
-                for(int i = 0; i < (int)accumulator; i++){
-                    if(executor.initialized()){
-                        executor.runOnce();
-                    }
-                    accumulator --;
-                }
+                //as many instructions as a loop of (i++ < accumulator--) would run
+                int steps = ((int)accumulator + 1) / 2;
+                accumulator -= logicScheduler.run(this, steps);
             }
         }
 
@@ -525,18 +523,19 @@ public class LogicBlock extends Block{
             write.b(compressed);
 
             //write only the non-constant variables
-            int count = Structs.count(executor.vars, v -> !v.constant);
+            int count = 0;
+            for(int i = 0; i < executor.names.length; i++){
+                if(!executor.constant(i)) count ++;
+            }
 
             write.i(count);
-            for(int i = 0; i < executor.vars.length; i++){
-                Var v = executor.vars[i];
-
-                if(v.constant) continue;
+            for(int i = 0; i < executor.names.length; i++){
+                if(executor.constant(i)) continue;
 
                 //write the name and the object value
-                write.str(v.name);
+                write.str(executor.names[i]);
 
-                Object value = v.isobj ? v.objval : v.numval;
+                Object value = executor.value(i);
                 if(value instanceof Unit) value = null; //do not save units.
                 TypeIO.writeObject(write, value);
             }
@@ -4,6 +4,7 @@ import arc.*;
 import arc.math.*;
 import arc.struct.*;
 import arc.util.*;
+import mindustry.*;
 import mindustry.gen.*;
 import mindustry.world.consumers.*;
 
@@ -219,6 +220,16 @@ public class PowerGraph{
 
         lastFrameUpdated = Core.graphics.getFrameId();
 
+        if(Vars.profiler != null){
+            long start = Time.nanos();
+            updateGraph();
+            Vars.profiler.powerGraphUpdated(this, Time.timeSinceNanos(start));
+        }else{
+            updateGraph();
+        }
+    }
+
+    private void updateGraph(){
         float powerNeeded = getPowerNeeded();
         float powerProduced = getPowerProduced();
 
@@ -288,6 +288,11 @@ public class Drill extends Block{
             }else{
                 lastDrillSpeed = 0f;
                 warmup = Mathf.approachDelta(warmup, 0f, warmupSpeed);
+
+                //full, and nothing could be dumped; nothing changes until the next dump, or until items are taken out
+                if(warmup <= 0f && items.total() >= itemCapacity){
+                    sleepFor(dumpTime);
+                }
                 return;
             }
 
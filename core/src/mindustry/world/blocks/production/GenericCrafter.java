@@ -131,6 +131,11 @@ public class GenericCrafter extends Block{
             }
 
             dumpOutputs();
+
+            //output is full, and nothing could be dumped; nothing changes until the next dump, or until items are taken out
+            if(outputItems != null && outputLiquid == null && enabled && warmup <= 0f && !shouldConsume()){
+                sleepFor(dumpTime / timeScale);
+            }
         }
 
         public void craft(){
@@ -23,12 +23,15 @@ import mindustry.net.Administration.*;
 import mindustry.net.Packets.*;
 import mindustry.net.*;
 import mindustry.type.*;
+import mindustry.world.blocks.logic.LogicBlock.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.charset.*;
 import java.time.*;
 import java.time.format.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static arc.util.ColorCodes.*;
 import static arc.util.Log.*;
@@ -44,6 +47,7 @@ public class ServerControl implements ApplicationListener{
 
     public final CommandHandler handler = new CommandHandler("");
     public final Fi logFolder = Core.settings.getDataDirectory().child("logs/");
+    public final ServerMetrics metrics;
 
     public Runnable serverInput = () -> {
         Scanner scan = new Scanner(System.in);
@@ -63,9 +67,17 @@ public class ServerControl implements ApplicationListener{
     private Thread socketThread;
     private ServerSocket serverSocket;
     private PrintWriter socketOutput;
+    private Thread metricsThread;
+    private ServerSocket metricsSocket;
     private String suggested;
 
+    /** Creates a server with its own metrics, which measure the listeners of the application that were added before it. */
     public ServerControl(String[] args){
+        this(args, ServerMetrics.attach());
+    }
+
+    public ServerControl(String[] args, ServerMetrics metrics){
+        this.metrics = metrics;
         setup(args);
     }
 
@@ -242,6 +254,11 @@ public class ServerControl implements ApplicationListener{
             toggleSocket(Config.socketInput.bool());
         });
 
+        Events.run(Trigger.metricsConfigChanged, () -> {
+            toggleMetrics(false);
+            toggleMetrics(Config.metrics.bool());
+        });
+
         Events.on(PlayEvent.class, e -> {
 
             try{
@@ -261,6 +278,9 @@ public class ServerControl implements ApplicationListener{
         }
 
         toggleSocket(Config.socketInput.bool());
+        toggleMetrics(Config.metrics.bool());
+        Config.applyLogic();
+        Config.applySimulation();
 
         Events.on(ServerLoadEvent.class, e -> {
             Thread thread = new Thread(serverInput, "Server Controls");
@@ -607,7 +627,7 @@ public class ServerControl implements ApplicationListener{
             }
         });
 
-        handler.register("subnet-ban", "[add/remove] [address]", "Ban a subnet. This simply rejects all connections with IPs starting with some string.", arg -> {
+        handler.register("subnet-ban", "[add/remove] [address]", "Ban a subnet, as a CIDR range (10.0.0.0/8) or as the start of an address (10.0.).", arg -> {
             if(arg.length == 0){
                 info("Subnets banned: @", netServer.admins.getSubnetBans().isEmpty() ? "<none>" : "");
                 for(String subnet : netServer.admins.getSubnetBans()){
@@ -622,8 +642,13 @@ public class ServerControl implements ApplicationListener{
                         return;
                     }
 
+                    if(new IPMatcher(Seq.with(arg[1]), true).isEmpty()){
+                        err("That is not a valid subnet.");
+                        return;
+                    }
+
                     netServer.admins.addSubnetBan(arg[1]);
-                    info("Banned @**", arg[1]);
+                    info(arg[1].contains("/") ? "Banned @" : "Banned @**", arg[1]);
                 }else if(arg[0].equals("remove")){
                     if(!netServer.admins.getSubnetBans().contains(arg[1])){
                         err("That subnet isn't banned.");
@@ -631,7 +656,7 @@ public class ServerControl implements ApplicationListener{
                     }
 
                     netServer.admins.removeSubnetBan(arg[1]);
-                    info("Unbanned @**", arg[1]);
+                    info(arg[1].contains("/") ? "Unbanned @" : "Unbanned @**", arg[1]);
                 }else{
                     err("Incorrect usage. Provide add/remove as the second argument.");
                 }
@@ -953,6 +978,73 @@ public class ServerControl implements ApplicationListener{
             }
         });
 
+        handler.register("logic", "[amount]", "Display the logic processors that took the most time during the last second.", arg -> {
+            if(state.isMenu()){
+                err("Not playing. Host first.");
+                return;
+            }
+
+            int amount = arg.length > 0 ? Strings.parseInt(arg[0], 10) : 10;
+
+            info("Logic: @ instructions, @ radar/locate, @ ms in the last second. @% of requested instructions allowed.",
+                logicScheduler.windowInstructions, logicScheduler.windowExpensive, Strings.fixed(logicScheduler.windowNanos / 1000000f, 2), (int)(logicScheduler.scale * 100));
+
+            for(LogicBuild build : logicScheduler.slowest(amount)){
+                var stats = build.executor.stats;
+                info("  &lk@&fr at @, @ (@): @ ms, @ instructions, @ radar/locate",
+                    build.block.name, build.tile.x, build.tile.y, build.team.name, Strings.fixed(stats.lastNanos / 1000000f, 2), stats.lastInstructions, stats.lastExpensive);
+            }
+        });
+
+        handler.register("profile", "[seconds]", "Measure where update time is spent for some seconds, then display the results.", arg -> {
+            if(state.isMenu()){
+                err("Not playing. Host first.");
+                return;
+            }
+
+            if(metrics.profiling()){
+                err("Already profiling.");
+                return;
+            }
+
+            int seconds = arg.length > 0 ? Strings.parseInt(arg[0], -1) : 10;
+            if(seconds <= 0 || seconds > 600){
+                err("Seconds must be a number between 1 and 600.");
+                return;
+            }
+
+            info("Profiling for @ seconds...", seconds);
+
+            metrics.profile(seconds, profile -> {
+                int ticks = profile.ticks.size, sampled = Math.max(profile.sampledTicks, 1);
+                if(ticks == 0){
+                    err("No ticks were measured. Was the game paused?");
+                    return;
+                }
+
+                info("Profiled @ ticks. Tick time: p50 @ ms, p90 @ ms, p99 @ ms, max @ ms.", ticks,
+                    Strings.fixed(profile.quantile(0.5f) / 1e6f, 2), Strings.fixed(profile.quantile(0.9f) / 1e6f, 2),
+                    Strings.fixed(profile.quantile(0.99f) / 1e6f, 2), Strings.fixed(profile.quantile(1f) / 1e6f, 2));
+
+                info("Update time per tick:");
+                for(int i = 0; i < UpdateProfiler.groupNames.length; i++){
+                    if(profile.groups[i] > 0){
+                        info("  &lk@&fr: @ ms", UpdateProfiler.groupNames[i], Strings.fixed(profile.groups[i] / 1e6f / sampled, 3));
+                    }
+                }
+                info("  &lkpower&fr: @ ms, @ graphs", Strings.fixed(profile.power / 1e6f / sampled, 3), Strings.fixed(profile.powerGraphs / (float)sampled, 1));
+
+                info("Slowest types per tick:");
+                for(String type : profile.slowestTypes(10)){
+                    long[] stats = profile.types.get(type);
+                    info("  &lk@&fr: @ ms, @ updates", type, Strings.fixed(stats[0] / 1e6f / sampled, 3), Strings.fixed(stats[1] / (float)sampled, 1));
+                }
+
+                info("Garbage collection: @ collections, @ ms. Main thread allocated @ KB per tick.",
+                    profile.gcCount, profile.gcTime, Strings.fixed(profile.allocated / 1024f / ticks, 1));
+            });
+        });
+
         handler.register("gc", "Trigger a garbage collection. Testing only.", arg -> {
             int pre = (int)(Core.app.getJavaHeap() / 1024 / 1024);
             System.gc();
@@ -1100,4 +1192,77 @@ public class ServerControl implements ApplicationListener{
             socketOutput = null;
         }
     }
+
+    private void toggleMetrics(boolean on){
+        if(on && metricsThread == null){
+            metricsThread = new Thread(() -> {
+                try{
+                    metricsSocket = new ServerSocket();
+                    metricsSocket.bind(new InetSocketAddress(Config.metricsAddress.string(), Config.metricsPort.num()));
+                    info("Serving metrics on &fi@", metricsSocket.getLocalSocketAddress());
+
+                    while(!metricsSocket.isClosed()){
+                        try(Socket client = metricsSocket.accept()){
+                            serveMetrics(client);
+                        }catch(IOException e){
+                            //a failed request must not stop the server
+                            if(!metricsSocket.isClosed()) debug("Metrics request failed: @", e.getMessage());
+                        }
+                    }
+                }catch(BindException b){
+                    err("Metrics port already in use. Is another instance of the server running?");
+                }catch(IOException e){
+                    err("Terminating metrics server.");
+                    err(e);
+                }
+            }, "Metrics");
+            metricsThread.setDaemon(true);
+            metricsThread.start();
+        }else if(metricsThread != null){
+            metricsThread.interrupt();
+            try{
+                metricsSocket.close();
+            }catch(IOException e){
+                err(e);
+            }
+            metricsThread = null;
+        }
+    }
+
+    /** Answers a single HTTP request. Only GET /metrics is supported. */
+    private void serveMetrics(Socket client) throws IOException{
+        client.setSoTimeout(2000);
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+        String request = in.readLine(), line;
+
+        //skip headers
+        while((line = in.readLine()) != null && !line.isEmpty());
+
+        boolean found = request != null && (request.startsWith("GET /metrics ") || request.startsWith("GET / "));
+        byte[] body = (found ? metricsText() : "Not found\n").getBytes(StandardCharsets.UTF_8);
+
+        OutputStream out = client.getOutputStream();
+        out.write(("HTTP/1.0 " + (found ? "200 OK" : "404 Not Found") + "\r\n" +
+            "Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n" +
+            "Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(body);
+        out.flush();
+    }
+
+    /** Collects metrics on the main thread, as game state must not be read from other threads. */
+    private String metricsText() throws IOException{
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Core.app.post(() -> {
+            StringBuilder out = new StringBuilder();
+            metrics.writeMetrics(out);
+            logicScheduler.writeMetrics(out);
+            result.complete(out.toString());
+        });
+
+        try{
+            return result.get(5, TimeUnit.SECONDS);
+        }catch(Exception e){
+            throw new IOException("Timed out collecting metrics", e);
+        }
+    }
 }
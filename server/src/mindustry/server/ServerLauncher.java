@@ -65,11 +65,13 @@ public class ServerLauncher implements ApplicationListener{
 
         bases.load();
 
-        Core.app.addListener(new ApplicationListener(){public void update(){ asyncCore.begin(); }});
+        ServerMetrics metrics = new ServerMetrics();
+
+        Core.app.addListener(new ApplicationListener(){public void update(){ metrics.begin(); asyncCore.begin(); }});
         Core.app.addListener(logic = new Logic());
         Core.app.addListener(netServer = new NetServer());
-        Core.app.addListener(new ServerControl(args));
-        Core.app.addListener(new ApplicationListener(){public void update(){ asyncCore.end(); }});
+        Core.app.addListener(new ServerControl(args, metrics));
+        Core.app.addListener(new ApplicationListener(){public void update(){ asyncCore.end(); metrics.end(); }});
 
         mods.eachClass(Mod::init);
 
@@ -0,0 +1,316 @@
+package mindustry.server;
+
+import arc.*;
+import arc.func.*;
+import arc.math.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.core.*;
+import mindustry.gen.*;
+import mindustry.net.*;
+import mindustry.world.blocks.power.*;
+
+import java.lang.management.*;
+import java.util.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Measures the update loop of the server for the metrics endpoint and the profile command.
+ * Every tick is timed; once every {@link #sampleInterval} ticks, a single tick is profiled per entity group through {@link mindustry.Vars#profiler}.
+ * Nothing is allocated per tick, unless a profile is running.
+ */
+public class ServerMetrics implements UpdateProfiler{
+    /** Amount of recent ticks used for tick time percentiles. */
+    static final int window = 600;
+    /** Ticks between profiled ticks. */
+    static final int sampleInterval = 60;
+    /** Weight of a new profiled tick in the moving averages. */
+    static final float sampleWeight = 0.1f;
+    static final float[] quantiles = {0.5f, 0.9f, 0.99f, 1f};
+
+    final long[] tickTimes = new long[window], sorted = new long[window];
+    int tickIndex, tickCount;
+    long tickStart, totalNanos, totalTicks;
+
+    //profiled tick in progress
+    final long[] sampleGroups = new long[groupNames.length];
+    long samplePower, pendingPower;
+    int sampleGraphs;
+    boolean sampling;
+
+    //moving averages of profiled ticks, in nanoseconds
+    final float[] groupNanos = new float[groupNames.length];
+    float powerNanos, powerGraphs;
+
+    @Nullable Profile profile;
+
+    /**
+     * Creates metrics that time every update, from before the first listener of the application to after the ones added so far.
+     * For launchers that do not call {@link #begin()} and {@link #end()} themselves.
+     */
+    public static ServerMetrics attach(){
+        ServerMetrics metrics = new ServerMetrics();
+        Core.app.getListeners().insert(0, new ApplicationListener(){
+            @Override
+            public void update(){
+                metrics.begin();
+            }
+        });
+        Core.app.addListener(new ApplicationListener(){
+            @Override
+            public void update(){
+                metrics.end();
+            }
+        });
+        return metrics;
+    }
+
+    /** Called at the start of every update, before anything else runs. */
+    public void begin(){
+        tickStart = Time.nanos();
+        sampling = state.isPlaying() && profiler == null && (profile != null || totalTicks % sampleInterval == 0);
+
+        if(sampling){
+            Arrays.fill(sampleGroups, 0);
+            samplePower = pendingPower = 0;
+            sampleGraphs = 0;
+            profiler = this;
+        }
+    }
+
+    /** Called at the end of every update, after everything else ran. */
+    public void end(){
+        long nanos = Time.timeSinceNanos(tickStart);
+        boolean sampled = sampling;
+
+        if(sampled){
+            sampling = false;
+            if(profiler == this) profiler = null;
+
+            for(int i = 0; i < groupNanos.length; i++){
+                groupNanos[i] = Mathf.lerp(groupNanos[i], sampleGroups[i], sampleWeight);
+            }
+            powerNanos = Mathf.lerp(powerNanos, samplePower, sampleWeight);
+            powerGraphs = Mathf.lerp(powerGraphs, sampleGraphs, sampleWeight);
+        }
+
+        if(state.isPlaying()){
+            tickTimes[tickIndex] = nanos;
+            tickIndex = (tickIndex + 1) % window;
+            tickCount = Math.min(tickCount + 1, window);
+            totalNanos += nanos;
+            totalTicks ++;
+
+            if(profile != null){
+                profile.add(this, nanos, sampled);
+            }
+        }
+
+        //a profile ends on time even if the game stopped in the meantime
+        if(profile != null && profile.done()){
+            Profile result = profile;
+            profile = null;
+            result.finish();
+        }
+    }
+
+    @Override
+    public void entityUpdated(Entityc entity, long nanos){
+        int group = UpdateProfiler.group(entity);
+        if(group == 0){
+            //power graphs are updated by a building; count that time separately
+            nanos -= pendingPower;
+            pendingPower = 0;
+        }
+        sampleGroups[group] += nanos;
+
+        if(profile != null){
+            String type = entity instanceof Building build ? build.block.name : entity instanceof Unit unit ? unit.type.name : null;
+            if(type != null){
+                long[] stats = profile.types.get(type, () -> new long[2]);
+                stats[0] += nanos;
+                stats[1] ++;
+            }
+        }
+    }
+
+    @Override
+    public void powerGraphUpdated(PowerGraph graph, long nanos){
+        samplePower += nanos;
+        pendingPower += nanos;
+        sampleGraphs ++;
+    }
+
+    public boolean profiling(){
+        return profile != null;
+    }
+
+    /** Profiles every tick for some time, then runs the callback on the main thread. */
+    public void profile(float seconds, Cons<Profile> done){
+        profile = new Profile(seconds, done);
+    }
+
+    /** Writes all metrics in the Prometheus text format. Main thread only. */
+    public void writeMetrics(StringBuilder out){
+        out.append("# TYPE mindustry_tick_seconds summary\n");
+        if(tickCount > 0){
+            System.arraycopy(tickTimes, 0, sorted, 0, tickCount);
+            Arrays.sort(sorted, 0, tickCount);
+            for(float quantile : quantiles){
+                out.append("mindustry_tick_seconds{quantile=\"").append(quantile).append("\"} ")
+                    .append(sorted[Math.min((int)(quantile * tickCount), tickCount - 1)] / 1e9).append('\n');
+            }
+        }
+        out.append("mindustry_tick_seconds_sum ").append(totalNanos / 1e9).append('\n');
+        out.append("mindustry_tick_seconds_count ").append(totalTicks).append('\n');
+
+        out.append("# TYPE mindustry_update_seconds gauge\n");
+        for(int i = 0; i < groupNames.length; i++){
+            out.append("mindustry_update_seconds{group=\"").append(groupNames[i]).append("\"} ").append(groupNanos[i] / 1e9).append('\n');
+        }
+        gauge(out, "mindustry_power_seconds", powerNanos / 1e9);
+        gauge(out, "mindustry_power_graphs", powerGraphs);
+
+        out.append("# TYPE mindustry_entities gauge\n");
+        entities(out, "build", Groups.build.size());
+        entities(out, "unit", Groups.unit.size());
+        entities(out, "bullet", Groups.bullet.size());
+        entities(out, "fire", Groups.fire.size());
+        entities(out, "puddle", Groups.puddle.size());
+        entities(out, "player", Groups.player.size());
+
+        out.append("# TYPE mindustry_async_seconds gauge\n");
+        for(int i = 0; i < asyncCore.processes.size; i++){
+            out.append("mindustry_async_seconds{process=\"").append(asyncCore.processes.get(i).getClass().getSimpleName()).append("\"} ")
+                .append(asyncCore.processNanos(i) / 1e9).append('\n');
+        }
+
+        gauge(out, "mindustry_pathfinder_fields", pathfinder.fieldCount());
+        gauge(out, "mindustry_pathfinder_frontier", pathfinder.frontierSize());
+
+        counter(out, "mindustry_net_received_bytes_total", net.bytesReceived());
+        counter(out, "mindustry_net_sent_bytes_total", net.bytesSent());
+        out.append("# TYPE mindustry_net_queued_packets gauge\n");
+        for(NetConnection con : net.getConnections()){
+            out.append("mindustry_net_queued_packets{address=\"").append(escape(con.address)).append("\"} ").append(con.queuedPackets()).append('\n');
+        }
+
+        out.append("# TYPE mindustry_snapshot_bytes_total counter\n");
+        snapshots(out, "mindustry_snapshot_bytes_total", "block", netServer.blockSnapshotBytes);
+        snapshots(out, "mindustry_snapshot_bytes_total", "state", netServer.stateSnapshotBytes);
+        snapshots(out, "mindustry_snapshot_bytes_total", "entity", netServer.entitySnapshotBytes);
+        out.append("# TYPE mindustry_snapshots_total counter\n");
+        snapshots(out, "mindustry_snapshots_total", "block", netServer.blockSnapshots);
+        snapshots(out, "mindustry_snapshots_total", "state", netServer.stateSnapshots);
+        snapshots(out, "mindustry_snapshots_total", "entity", netServer.entitySnapshots);
+
+        counter(out, "mindustry_gc_collections_total", gcCount());
+        counter(out, "mindustry_gc_seconds_total", gcTime() / 1e3);
+        counter(out, "mindustry_main_allocated_bytes_total", allocated());
+        gauge(out, "mindustry_heap_bytes", Core.app.getJavaHeap());
+    }
+
+    static void gauge(StringBuilder out, String name, double value){
+        out.append("# TYPE ").append(name).append(" gauge\n").append(name).append(' ').append(value).append('\n');
+    }
+
+    static void counter(StringBuilder out, String name, double value){
+        out.append("# TYPE ").append(name).append(" counter\n").append(name).append(' ').append(value).append('\n');
+    }
+
+    static void entities(StringBuilder out, String group, int amount){
+        out.append("mindustry_entities{group=\"").append(group).append("\"} ").append(amount).append('\n');
+    }
+
+    static void snapshots(StringBuilder out, String name, String type, long value){
+        out.append(name).append("{type=\"").append(type).append("\"} ").append(value).append('\n');
+    }
+
+    static String escape(String label){
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /** @return bytes allocated by the calling thread, or 0 if the VM does not track it. */
+    static long allocated(){
+        //only available on HotSpot-based VMs
+        if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean) || !bean.isThreadAllocatedMemorySupported()) return 0;
+        return Math.max(bean.getThreadAllocatedBytes(Thread.currentThread().getId()), 0);
+    }
+
+    static long gcCount(){
+        long total = 0;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()){
+            total += Math.max(bean.getCollectionCount(), 0);
+        }
+        return total;
+    }
+
+    /** @return total time spent collecting garbage, in milliseconds. */
+    static long gcTime(){
+        long total = 0;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()){
+            total += Math.max(bean.getCollectionTime(), 0);
+        }
+        return total;
+    }
+
+    /** Totals of every tick during a profile command. */
+    public static class Profile{
+        final long duration, start = Time.millis();
+        final Cons<Profile> done;
+        final long startGcCount = gcCount(), startGcTime = gcTime(), startAllocated = allocated();
+
+        public final long[] groups = new long[groupNames.length];
+        /** Total time and update count per block or unit type. */
+        public final ObjectMap<String, long[]> types = new ObjectMap<>();
+        public final LongSeq ticks = new LongSeq();
+        /** Tick times in nanoseconds, sorted once the profile is done. */
+        public long[] sortedTicks = {};
+        public long power, powerGraphs, gcCount, gcTime, allocated;
+        /** Ticks that were profiled per entity group; the other totals are divided by this. */
+        public int sampledTicks;
+
+        Profile(float seconds, Cons<Profile> done){
+            this.duration = (long)(seconds * 1000);
+            this.done = done;
+        }
+
+        void add(ServerMetrics metrics, long nanos, boolean sampled){
+            ticks.add(nanos);
+            if(!sampled) return;
+
+            sampledTicks ++;
+            for(int i = 0; i < groups.length; i++){
+                groups[i] += metrics.sampleGroups[i];
+            }
+            power += metrics.samplePower;
+            powerGraphs += metrics.sampleGraphs;
+        }
+
+        boolean done(){
+            return Time.timeSinceMillis(start) >= duration;
+        }
+
+        void finish(){
+            gcCount = gcCount() - startGcCount;
+            gcTime = gcTime() - startGcTime;
+            allocated = allocated() - startAllocated;
+            sortedTicks = ticks.toArray();
+            Arrays.sort(sortedTicks);
+            done.get(this);
+        }
+
+        /** @return the tick time at this quantile, in nanoseconds. */
+        public long quantile(float quantile){
+            return sortedTicks.length == 0 ? 0 : sortedTicks[Math.min((int)(quantile * sortedTicks.length), sortedTicks.length - 1)];
+        }
+
+        /** @return names of the block and unit types that took the most time, slowest first. */
+        public Seq<String> slowestTypes(int amount){
+            Seq<String> result = types.keys().toSeq().sort(type -> -types.get(type)[0]);
+            result.truncate(Math.min(amount, result.size));
+            return result;
+        }
+    }
+}
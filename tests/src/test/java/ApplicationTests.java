@@ -1,6 +1,7 @@
 import arc.*;
 import arc.backend.headless.*;
 import arc.files.*;
+import arc.math.*;
 import arc.math.geom.*;
 import arc.struct.*;
 import arc.util.*;
@@ -12,20 +13,27 @@ import mindustry.content.*;
 import mindustry.core.*;
 import mindustry.core.GameState.*;
 import mindustry.ctype.*;
+import mindustry.entities.*;
 import mindustry.entities.units.*;
 import mindustry.game.*;
 import mindustry.gen.*;
 import mindustry.io.*;
 import mindustry.io.SaveIO.*;
+import mindustry.logic.*;
 import mindustry.maps.*;
+import mindustry.maps.generators.*;
 import mindustry.mod.*;
 import mindustry.mod.Mods.*;
 import mindustry.net.*;
+import mindustry.net.Administration.*;
 import mindustry.net.Packets.*;
 import mindustry.type.*;
 import mindustry.world.*;
+import mindustry.world.blocks.logic.LogicBlock.*;
+import mindustry.world.blocks.logic.MemoryBlock.*;
 import mindustry.world.blocks.payloads.*;
 import mindustry.world.blocks.storage.*;
+import mindustry.world.meta.*;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.*;
 import org.junit.jupiter.params.provider.*;
@@ -239,6 +247,97 @@ public class ApplicationTests{
         }
     }
 
+    @Test
+    void playerStore(){
+        Fi file = testDataFolder.child("players-test.log");
+        file.delete();
+
+        LogPlayerStore store = new LogPlayerStore(file);
+        store.load();
+        for(int i = 0; i < 100; i++){
+            PlayerInfo info = store.getCreate("id" + i);
+            info.lastName = "[red]Player" + i;
+            info.names.add(info.lastName);
+            info.ips.add("10.0.0." + (i % 10));
+            store.index(info);
+        }
+        store.save();
+
+        store = new LogPlayerStore(file);
+        store.load();
+        assertEquals(100, store.size());
+        assertEquals(10, store.findByIP("10.0.0.3").size);
+        assertEquals(1, store.findByName("Player42").size);
+        assertEquals(1, store.findByName("id7").size);
+        //Player1 and Player10-19
+        assertEquals(11, store.searchNamePrefix("player1").size);
+        assertEquals(11, store.searchNames("er1").size);
+
+        //only changed info is appended
+        long length = file.length();
+        store.get("id5").timesJoined = 3;
+        store.get("id6");
+        store.save();
+        assertEquals(101, file.readString().split("\n").length);
+        assertTrue(file.length() > length);
+
+        store = new LogPlayerStore(file);
+        store.load();
+        assertEquals(3, store.get("id5").timesJoined);
+        assertEquals(100, store.size());
+    }
+
+    @Test
+    void ipMatcher(){
+        IPMatcher subnets = new IPMatcher(Seq.with("10.0.0.0/8", "192.168.1.", "172.1", "2001:db8::/32"), true);
+        assertTrue(subnets.matches("10.255.0.1"));
+        assertTrue(subnets.matches("192.168.1.7"));
+        assertFalse(subnets.matches("192.168.10.7"));
+        assertFalse(subnets.matches("11.0.0.1"));
+        assertTrue(subnets.matches("2001:db8:1::5"));
+        assertTrue(subnets.matches("::ffff:10.1.2.3"));
+        assertFalse(subnets.matches("2001:db9::1"));
+
+        //the start of an address matches like startsWith did, including longer numbers
+        for(String ip : new String[]{"172.1.0.1", "172.16.5.5", "172.199.0.0", "172.2.0.0", "17.1.0.0", "1.1.1.1"}){
+            assertEquals(ip.startsWith("172.1"), subnets.matches(ip), ip);
+        }
+
+        IPMatcher addresses = new IPMatcher(Seq.with("1.2.3.4", "::1"), false);
+        assertTrue(addresses.matches("1.2.3.4"));
+        assertFalse(addresses.matches("1.2.3.40"));
+        assertTrue(addresses.matches("0:0:0:0:0:0:0:1"));
+        assertFalse(addresses.matches("not an address"));
+    }
+
+    @Test
+    void tileBufferPercentile(){
+        int width = 37, height = 23, radius = 3;
+        Rand rand = new Rand(7);
+        short[] src = new short[width * height], dst = new short[src.length];
+        for(int i = 0; i < src.length; i++){
+            src[i] = (short)(rand.random(12) * 5);
+        }
+
+        int[] circle = TileBuffers.circle(radius, false);
+        int[] index = new int[TileBuffers.size(circle) + 1];
+        for(int size = 1; size < index.length; size++){
+            index[size] = Mathf.clamp((int)(size * 0.3), 0, size - 1);
+        }
+        TileBuffers.percentile(src, dst, width, height, circle, false, index);
+
+        //same as sorting every circle
+        IntSeq values = new IntSeq();
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                values.clear();
+                Geometry.circle(x, y, width, height, radius, (cx, cy) -> values.add(src[cx + cy * width]));
+                values.sort();
+                assertEquals(values.get(Mathf.clamp((int)(values.size * 0.3), 0, values.size - 1)), dst[x + y * width], x + ", " + y);
+            }
+        }
+    }
+
     @Test
     void initialization(){
         assertNotNull(logic);
@@ -264,6 +363,87 @@ public class ApplicationTests{
         assertFalse(Groups.unit.isEmpty(), "No enemies spawned.");
     }
 
+    @Test
+    void spawnWavesOverTicks(){
+        world.loadMap(testMap);
+        SpawnGroup group = new SpawnGroup(UnitTypes.dagger);
+        group.unitAmount = 120;
+        group.max = 1000;
+        state.rules.spawns = Seq.with(group);
+        state.wave = 1;
+
+        int planned = spawner.plannedUnits(), before = Groups.unit.size();
+        assertEquals(120 * spawner.countGroundSpawns(), planned);
+
+        int budget = spawner.spawnsPerTick;
+        spawner.spawnsPerTick = 50;
+        try{
+            logic.runWave();
+            assertEquals(before + Math.min(planned, 50), Groups.unit.size());
+            assertTrue(spawner.isSpawning());
+
+            for(int i = 0; i < planned / 50 + 1; i++){
+                spawner.update();
+            }
+            assertEquals(before + planned, Groups.unit.size());
+        }finally{
+            spawner.spawnsPerTick = budget;
+        }
+    }
+
+    @Test
+    void wallDarkness(){
+        Tiles tiles = world.resize(30, 30);
+        world.beginMapLoad();
+        tiles.fill();
+        for(Tile tile : tiles){
+            if(tile.x >= 5 && tile.x < 25 && tile.y >= 5 && tile.y < 25) tile.setBlock(Blocks.stoneWall);
+        }
+        world.endMapLoad();
+
+        assertEquals(0, tiles.getn(5, 10).data);
+        assertEquals(darkRadius, tiles.getn(9, 15).data);
+        assertEquals(darkRadius + 1, tiles.getn(15, 15).data);
+
+        //a hole lights up the walls around it
+        tiles.getn(15, 15).setBlock(Blocks.air);
+        assertEquals(0, tiles.getn(16, 15).data);
+        assertEquals(1, tiles.getn(17, 15).data);
+        assertEquals(darkRadius + 1, tiles.getn(10, 10).data);
+    }
+
+    @Test
+    void sectorSimulation(){
+        SectorInfo info = new SectorInfo();
+        info.pathHealth = new float[16];
+        for(int i = 0; i < info.pathHealth.length; i++){
+            info.pathHealth[i] = 2000f;
+        }
+        //one turret near the spawn, one at the core
+        info.turretDps = new float[]{300f, 200f};
+        info.turretSegments = new int[]{3, 1, 5, 15, 12, 15};
+        info.sumDps = 550f;
+        info.sumRps = 10f;
+        info.segmentTime = 2f;
+        info.waveHealthBase = 500f;
+        info.waveHealthSlope = 40f;
+        info.waveDpsBase = 20f;
+        info.waveDpsSlope = 2f;
+
+        float early = SectorDamage.getDamage(info, 5), later = SectorDamage.getDamage(info, 50);
+        assertTrue(early < 0.999f, "Sector fell to the first waves: " + early);
+        assertTrue(early <= later, "Damage went down: " + early + " > " + later);
+        //far beyond the old limit of simulated waves
+        assertEquals(1f, SectorDamage.getDamage(info, 800));
+        assertEquals(SectorDamage.maxRetWave, SectorDamage.getWavesSurvived(info));
+
+        //nothing happens before a wave has passed, even if the wave in progress would destroy the core
+        info.curEnemyHealth = 1000000f;
+        info.curEnemyDps = 1000000f;
+        assertEquals(1f, SectorDamage.getDamage(info, 1));
+        assertEquals(0f, SectorDamage.getDamage(info, 0));
+    }
+
     @Test
     void createMap(){
         Tiles tiles = world.resize(8, 8);
@@ -288,6 +468,32 @@ public class ApplicationTests{
         }
     }
 
+    @Test
+    void tileStoreSync(){
+        createMap();
+        Tiles tiles = world.tiles;
+        world.tile(4, 4).setBlock(Blocks.coreShard, Team.sharded, 0);
+
+        for(int x = 3; x <= 5; x++){
+            for(int y = 3; y <= 5; y++){
+                int idx = y * tiles.width + x;
+                assertEquals(4 * tiles.width + 4, tiles.buildCenter(idx));
+                assertSame(world.tile(4, 4).build, tiles.build(idx));
+                assertEquals(Team.sharded.id, tiles.teamId(idx));
+                assertTrue(tiles.solid(x, y));
+            }
+        }
+
+        world.tile(4, 4).setAir();
+        assertEquals(-1, tiles.buildCenter(3 * tiles.width + 3));
+        assertEquals(Team.derelict.id, tiles.teamId(3 * tiles.width + 3));
+        assertFalse(tiles.solid(3, 3));
+
+        world.tile(1, 1).setFloor(Blocks.deepwater.asFloor());
+        assertTrue(tiles.deep(1, 1));
+        assertFalse(tiles.waterSolid(1, 1));
+    }
+
     @Test
     void blockInventories(){
         multiblock();
@@ -598,6 +804,698 @@ public class ApplicationTests{
         assertNotEquals(0, itemsa[0]);
     }
 
+    @Test
+    void conveyorLines(){
+        int[] results = new int[2], received = {0};
+
+        Block sink = new Block("___item-sink"){{
+            hasItems = true;
+            destructible = true;
+            buildType = () -> new Building(){
+                @Override
+                public void handleItem(Building source, Item item){
+                    received[0] ++;
+                }
+
+                @Override
+                public boolean acceptItem(Building source, Item item){
+                    return true;
+                }
+            };
+        }};
+
+        for(int mode = 0; mode < 2; mode++){
+            received[0] = 0;
+            world.loadMap(testMap);
+            state.set(State.playing);
+            conveyorLines.enabled = mode == 1;
+
+            int length = 64;
+            world.tile(0, 0).setBlock(Blocks.itemSource, Team.sharded);
+            world.tile(0, 0).build.configureAny(Items.copper);
+
+            Seq<Building> entities = Seq.with(world.tile(0, 0).build);
+
+            //two straight runs joined by a turn
+            for(int i = 0; i < length; i++){
+                world.tile(i + 1, 0).setBlock(i % 3 == 0 ? Blocks.armoredConveyor : Blocks.titaniumConveyor, Team.sharded, 0);
+                entities.add(world.tile(i + 1, 0).build);
+            }
+            world.tile(length + 1, 0).setBlock(Blocks.titaniumConveyor, Team.sharded, 1);
+            entities.add(world.tile(length + 1, 0).build);
+            for(int i = 0; i < length; i++){
+                world.tile(length + 1, i + 1).setBlock(Blocks.titaniumConveyor, Team.sharded, 1);
+                entities.add(world.tile(length + 1, i + 1).build);
+            }
+
+            world.tile(length + 1, length + 1).setBlock(sink, Team.sharded);
+
+            entities.each(Building::updateProximity);
+
+            for(int i = 0; i < 5000; i++){
+                Time.update();
+                conveyorLines.update();
+                entities.each(Building::update);
+            }
+
+            results[mode] = received[0];
+
+            if(mode == 1){
+                assertEquals(2, conveyorLines.lines());
+
+                //removing a conveyor splits its line, without touching the other one
+                world.tile(10, 0).setAir();
+                conveyorLines.update();
+                assertEquals(3, conveyorLines.lines());
+
+                world.tile(10, 0).setBlock(Blocks.titaniumConveyor, Team.sharded, 0);
+                conveyorLines.update();
+                assertEquals(2, conveyorLines.lines());
+
+                //turning the last conveyor of a line away from the next one ends the line there
+                world.tile(length + 1, length).setBlock(Blocks.titaniumConveyor, Team.sharded, 0);
+                conveyorLines.update();
+                assertEquals(3, conveyorLines.lines());
+            }
+        }
+
+        conveyorLines.enabled = false;
+        Log.info("Items received: @ per building, @ in lines", results[0], results[1]);
+        assertTrue(results[0] > 0);
+        assertEquals(results[0], results[1], results[0] * 0.02f);
+    }
+
+    @Test
+    void blockIndexer(){
+        Tiles tiles = world.resize(100, 100);
+        world.beginMapLoad();
+        tiles.fill();
+        tiles.getn(5, 5).setOverlay(Blocks.oreCopper);
+        tiles.getn(60, 62).setOverlay(Blocks.oreCopper);
+        tiles.getn(41, 38).setOverlay(Blocks.oreCopper);
+        world.endMapLoad();
+
+        float x = 50 * tilesize, y = 50 * tilesize;
+        assertEquals(world.tile(41, 38), indexer.findClosestOre(x, y, Items.copper));
+        assertEquals(world.tile(5, 5), indexer.findClosestOre(0, 0, Items.copper));
+
+        //blocked ores are not found until they are free again
+        world.tile(41, 38).setBlock(Blocks.copperWall, Team.sharded);
+        assertEquals(world.tile(60, 62), indexer.findClosestOre(x, y, Items.copper));
+        world.tile(41, 38).setAir();
+        assertEquals(world.tile(41, 38), indexer.findClosestOre(x, y, Items.copper));
+
+        Rand rand = new Rand(1);
+        Seq<Tile> batteries = new Seq<>();
+        for(int i = 0; i < 120; i++){
+            Tile tile = world.tile(rand.random(99), rand.random(99));
+            if(tile.block() == Blocks.air && tile.overlay() == Blocks.air){
+                tile.setBlock(Blocks.battery, i % 2 == 0 ? Team.crux : Team.green);
+                batteries.add(tile);
+            }
+        }
+        for(int i = 0; i < 10; i++){
+            batteries.pop().setAir();
+        }
+
+        int count = 0;
+        for(Tile tile : indexer.eachEnemy(Team.sharded, BlockFlag.battery)){
+            assertEquals(Blocks.battery, tile.block());
+            count ++;
+        }
+        assertEquals(batteries.size, count);
+
+        //the spatial search finds the same distance as checking every battery
+        for(int i = 0; i < 50; i++){
+            float qx = rand.random(-100f, 900f), qy = rand.random(-100f, 900f);
+            Tile expected = Geometry.findClosest(qx, qy, indexer.getEnemy(Team.sharded, BlockFlag.battery));
+            Tile found = indexer.findClosestEnemyFlag(qx, qy, Team.sharded, BlockFlag.battery);
+            assertEquals(expected.dst(qx, qy), found.dst(qx, qy), 0.001f);
+        }
+    }
+
+    @Test
+    void hazardField(){
+        Tiles tiles = world.resize(32, 32);
+        world.beginMapLoad();
+        tiles.fill();
+        world.endMapLoad();
+
+        state.set(State.playing);
+        state.rules.hazardField = true;
+
+        //a large spill spreads over many tiles without creating entities
+        for(int i = 0; i < 60; i++){
+            Time.update();
+            Puddles.deposit(world.tile(16, 16), Liquids.oil, 10f);
+            hazards.update();
+        }
+        assertEquals(0, Groups.puddle.size());
+        assertTrue(hazards.activeSize() > 1);
+        assertEquals(Liquids.oil, hazards.liquid(world.tile(17, 16)));
+
+        Fires.create(world.tile(16, 16));
+        assertEquals(0, Groups.fire.size());
+        assertEquals(1, hazards.fires());
+        assertTrue(Fires.has(16, 16));
+
+        Fires.extinguish(world.tile(16, 16), 100000f);
+        hazards.update();
+        assertFalse(Fires.has(16, 16));
+        assertEquals(0, hazards.fires());
+
+        //everything evaporates eventually
+        for(int i = 0; i < 5000 && hazards.activeSize() > 0; i++){
+            Time.update();
+            hazards.update();
+        }
+        assertEquals(0, hazards.activeSize());
+        state.rules.hazardField = false;
+    }
+
+    @Test
+    void hazardFieldSave(){
+        Tiles tiles = world.resize(32, 32);
+        world.beginMapLoad();
+        tiles.fill();
+        world.endMapLoad();
+
+        state.set(State.playing);
+        state.rules.hazardField = true;
+
+        for(int i = 0; i < 10; i++){
+            Time.update();
+            Puddles.deposit(world.tile(16, 16), Liquids.oil, 10f);
+            hazards.update();
+        }
+        Fires.create(world.tile(4, 4));
+        int active = hazards.activeSize();
+        float amount = hazards.amount(world.tile(16, 16));
+
+        SaveIO.write(saveDirectory.child("hazards.msav"));
+        logic.reset();
+        assertEquals(0, hazards.activeSize());
+        SaveIO.load(saveDirectory.child("hazards.msav"));
+
+        assertTrue(state.rules.hazardField);
+        assertEquals(active, hazards.activeSize());
+        assertEquals(1, hazards.fires());
+        assertTrue(Fires.has(4, 4));
+        assertEquals(Liquids.oil, hazards.liquid(world.tile(16, 16)));
+        assertEquals(amount, hazards.amount(world.tile(16, 16)));
+
+        hazards.clear();
+        state.rules.hazardField = false;
+    }
+
+    @Test
+    void drillSleepsWhenFull(){
+        Tiles tiles = world.resize(8, 8);
+        world.beginMapLoad();
+        for(int x = 0; x < tiles.width; x++){
+            for(int y = 0; y < tiles.height; y++){
+                tiles.set(x, y, new Tile(x, y, Blocks.stone, Blocks.oreCopper, Blocks.air));
+            }
+        }
+        world.endMapLoad();
+        state.set(State.playing);
+
+        tiles.getn(3, 3).setBlock(Blocks.mechanicalDrill, Team.sharded);
+        Building drill = tiles.getn(3, 3).build;
+        drill.updateProximity();
+
+        //nothing takes the items, so the drill fills up and goes to sleep
+        for(int i = 0; i < 100000 && !drill.sleeping(); i++){
+            Time.update();
+            buildScheduler.update();
+            drill.update();
+        }
+        assertTrue(drill.sleeping());
+        assertEquals(drill.block.itemCapacity, drill.items.total());
+        //sleeping buildings are not updated, but can still be found
+        assertFalse(Groups.all.contains(e -> e == drill));
+        assertTrue(Groups.build.contains(e -> e == drill));
+
+        //woken up by the scheduler to try dumping again, and sent back to sleep by its own update
+        boolean woke = false;
+        for(int i = 0; i < 10; i++){
+            Time.update();
+            buildScheduler.update();
+            woke |= !drill.sleeping();
+            drill.update();
+        }
+        assertTrue(woke);
+        assertTrue(drill.sleeping());
+
+        //taking items out wakes it up right away
+        drill.removeStack(Items.copper, 1);
+        assertFalse(drill.sleeping());
+        assertEquals(1, Groups.all.count(e -> e == drill));
+    }
+
+    @Test
+    void liquidSolver(){
+        float[] received = {0f};
+
+        Block sink = new Block("___liquid-sink"){{
+            hasLiquids = true;
+            destructible = true;
+            buildType = () -> new Building(){
+                @Override
+                public void handleLiquid(Building source, Liquid liquid, float amount){
+                    received[0] += amount;
+                }
+
+                @Override
+                public boolean acceptLiquid(Building source, Liquid liquid){
+                    return true;
+                }
+            };
+        }};
+
+        int length = 64;
+
+        //conduits placed from the source to the sink, then from the sink to the source; this changes their update order
+        for(int placement = 0; placement < 2; placement++){
+            float[] results = new float[2];
+            int[] arrival = new int[2];
+
+            for(int mode = 0; mode < 2; mode++){
+                received[0] = 0f;
+                arrival[mode] = -1;
+                world.loadMap(testMap);
+                state.set(State.playing);
+                liquidSolver.enabled = mode == 1;
+
+                world.tile(0, 0).setBlock(Blocks.liquidSource, Team.sharded);
+                world.tile(0, 0).build.configureAny(Liquids.water);
+
+                Seq<Building> entities = Seq.with(world.tile(0, 0).build);
+
+                for(int j = 0; j < length; j++){
+                    int i = placement == 0 ? j : length - 1 - j;
+                    world.tile(i + 1, 0).setBlock(i % 2 == 0 ? Blocks.conduit : Blocks.platedConduit, Team.sharded, 0);
+                    entities.add(world.tile(i + 1, 0).build);
+                }
+
+                world.tile(length + 1, 0).setBlock(sink, Team.sharded);
+
+                entities.each(Building::updateProximity);
+
+                for(int i = 0; i < 2000; i++){
+                    Time.update();
+                    liquidSolver.update();
+                    entities.each(Building::update);
+
+                    if(arrival[mode] == -1 && received[0] > 0f) arrival[mode] = i;
+                }
+
+                results[mode] = received[0];
+            }
+
+            Log.info("Liquid received: @ per building, @ batched; arrived after @ and @ ticks", results[0], results[1], arrival[0], arrival[1]);
+            assertTrue(results[0] > 0f);
+            //the solver moves conduits in the same order they update in, before the source adds more liquid
+            assertEquals(arrival[0], arrival[1], 1);
+            assertEquals(results[0], results[1], results[0] * 0.01f);
+
+            if(placement == 1){
+                //each conduit updates before the one behind it, so liquid only moves one conduit per tick
+                assertTrue(arrival[0] >= length - 1, "Liquid crossed the conduits too fast: " + arrival[0]);
+            }
+        }
+
+        liquidSolver.enabled = false;
+    }
+
+    @Test
+    void buildingRaycaster(){
+        int size = 64;
+        Tiles tiles = world.resize(size, size);
+
+        world.beginMapLoad();
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                tiles.set(x, y, new Tile(x, y, Blocks.stone, Blocks.air, Blocks.air));
+            }
+        }
+        for(int x = 1; x < size - 1; x += 3){
+            for(int y = 1; y < size - 1; y += 3){
+                tiles.getn(x, y).setBlock((x + y) % 2 == 0 ? Blocks.titaniumWallLarge : Blocks.copperWall, (x / 3) % 2 == 0 ? Team.sharded : Team.crux);
+            }
+        }
+        world.endMapLoad();
+
+        BuildingRaycaster raycaster = new BuildingRaycaster();
+        IntSet legacy = new IntSet();
+        IntSeq legacyHits = new IntSeq();
+        float length = size * tilesize * 0.7f;
+
+        //must find the same buildings in the same order as a traversal of the world
+        for(int i = 0; i < 360; i += 7){
+            float x = size * tilesize / 2f, y = x;
+            Tmp.v1.trnsExact(i, length);
+            legacyHits.clear();
+            legacy.clear();
+            world.raycastEachWorld(x, y, x + Tmp.v1.x, y + Tmp.v1.y, (cx, cy) -> {
+                Building build = world.build(cx, cy);
+                if(build != null && legacy.add(build.pos())) legacyHits.add(build.tile.array());
+                return false;
+            });
+            raycaster.cast(x, y, x + Tmp.v1.x, y + Tmp.v1.y, null, false, false, 0);
+            assertEquals(legacyHits, raycaster.hits);
+        }
+    }
+
+    @Test
+    void logicCompiler(){
+        String code =
+        "set i 0\n" +
+        "set sum null\n" +
+        "op add sum sum i\n" +
+        "op mul sq i i\n" +
+        "op div inv 1 i\n" +
+        "op max top sq sum\n" +
+        "jump 8 strictEqual inv null\n" +
+        "op sin wave i 0\n" +
+        "op add i i 1\n" +
+        "jump 2 lessThan i 50\n" +
+        "print sum\n" +
+        "op mod i i 7.5\n" +
+        "end";
+
+        assertCompiledSame(code, true);
+    }
+
+    @Test
+    void logicCompilerInstructions(){
+        //a holds a number and b holds null; both are kept in JVM locals
+        String header = "set a 7\nset b null\n";
+        String[][] pairs = {{"a", "b"}, {"b", "a"}, {"a", "a"}, {"b", "b"}, {"3", "-2.5"}, {"null", "a"}, {"0", "0"}, {"a", "0.5"}};
+
+        //every operator, with operands in locals, constants and null; rand uses a shared generator, so it gives different results each run
+        for(LogicOp op : LogicOp.all){
+            if(op == LogicOp.rand) continue;
+
+            StringBuilder code = new StringBuilder(header);
+            for(int i = 0; i < pairs.length; i++){
+                code.append("op ").append(op.name()).append(" r").append(i).append(" ").append(pairs[i][0]).append(" ").append(pairs[i][1]).append("\n");
+            }
+            code.append("end");
+            assertCompiledSame(code.toString(), true);
+        }
+
+        //every condition; each jump skips the set after it
+        for(ConditionOp op : ConditionOp.all){
+            StringBuilder code = new StringBuilder(header);
+            for(int i = 0; i < pairs.length; i++){
+                code.append("jump ").append(4 + i * 2).append(" ").append(op.name()).append(" ").append(pairs[i][0]).append(" ").append(pairs[i][1]).append("\n");
+                code.append("set r").append(i).append(" 1\n");
+            }
+            code.append("end");
+            assertCompiledSame(code.toString(), true);
+        }
+
+        //set, with and without known numbers, and copies of null
+        assertCompiledSame(header + "set c a\nset d b\nset e 2\nset f null\nset g c\nop add a a 1\nend", true);
+
+        //jumps to the first and last case of the dispatch, past the end, backwards and through the counter
+        assertCompiledSame(
+        "op add c c 1\n" +
+        "jump 7 always\n" +
+        "op add a a 1\n" +
+        "jump 0 lessThan a 5\n" +
+        "jump 2 always\n" +
+        "set @counter 1\n" +
+        "jump 99 always\n" +
+        "jump 2 lessThan c 3\n" +
+        "jump 5 greaterThan a 100\n" +
+        "op mul a a -1", true);
+
+        //a counter that is not a whole number has to be left to the interpreter
+        assertCompiledSame("op add i i 1\nset @counter 1.5\nop add j j 1", true);
+
+        //jumps that are never taken, and instructions that only run in the interpreter
+        assertCompiledSame("jump -1 always\nnoop\nop add i i 1\nprint i\nprint \"-\"\nop add j j i", true);
+
+        //end continues at the start, or yields to the interpreter
+        for(boolean yield : new boolean[]{false, true}){
+            LExecutor.yieldOnEnd = yield;
+            assertCompiledSame("op add i i 1\nend\nop add j j 1", true);
+        }
+        LExecutor.yieldOnEnd = false;
+
+        //long programs dispatch over many cases; once branches are too far for the JVM, the program is not compiled
+        for(int size : new int[]{500, 2000}){
+            StringBuilder code = new StringBuilder();
+            for(int i = 0; i < size; i++){
+                code.append(i % 50 == 49 ? "jump " + (i * 7 % size) + " lessThan a " + i : "op add a a " + (i % 3)).append("\n");
+            }
+            assertCompiledSame(code.toString(), size == 500);
+        }
+    }
+
+    /**
+     * Runs a program in the interpreter and as compiled code, and checks that both end with the same variables and text buffer.
+     * Budgets are odd, so that compiled code has to stop and resume in the middle of loops.
+     */
+    static void assertCompiledSame(String code, boolean compiles){
+        LExecutor interpreted = new LExecutor(), compiled = new LExecutor();
+        interpreted.load(code);
+        compiled.load(code);
+
+        LCompiler.Program program = LCompiler.compile(compiled);
+        assertEquals(compiles, program != null, code);
+
+        for(int steps : new int[]{1, 7, 333, 1000, 3}){
+            for(int i = 0; i < steps; i++){
+                interpreted.runOnce();
+            }
+
+            int ran = program == null ? 0 : program.run(compiled, steps);
+            for(int i = ran; i < steps; i++){
+                compiled.runOnce();
+            }
+        }
+
+        for(int i = 0; i < interpreted.names.length; i++){
+            assertEquals(interpreted.value(i), compiled.value(i), interpreted.names[i] + " in:\n" + code);
+        }
+        assertEquals(interpreted.textBuffer.toString(), compiled.textBuffer.toString());
+    }
+
+    @Test
+    void logicCompilesHotPrograms(){
+        Tiles tiles = world.resize(8, 8);
+        world.beginMapLoad();
+        tiles.fill();
+        world.endMapLoad();
+        tiles.getn(2, 2).setBlock(Blocks.memoryCell, Team.derelict);
+        tiles.getn(4, 2).setBlock(Blocks.memoryCell, Team.derelict);
+
+        //sorts a memory cell filled in descending order, which mixes compiled code with instructions the interpreter runs
+        String code =
+        "set i 0\n" +
+        "fill:\n" +
+        "op sub v 64 i\n" +
+        "write v cell1 i\n" +
+        "op add i i 1\n" +
+        "jump fill lessThan i 64\n" +
+        "set i 0\n" +
+        "outer:\n" +
+        "set j 0\n" +
+        "op sub lim 63 i\n" +
+        "inner:\n" +
+        "read a cell1 j\n" +
+        "op add k j 1\n" +
+        "read b cell1 k\n" +
+        "jump skip lessThanEq a b\n" +
+        "write b cell1 j\n" +
+        "write a cell1 k\n" +
+        "skip:\n" +
+        "op add j j 1\n" +
+        "jump inner lessThan j lim\n" +
+        "op add i i 1\n" +
+        "jump outer lessThan i 63\n" +
+        "end";
+
+        LExecutor[] execs = new LExecutor[2];
+        for(int mode = 0; mode < 2; mode++){
+            LCompiler.enabled = mode == 1;
+
+            LAssembler asm = LAssembler.assemble(code);
+            asm.putConst("cell1", tiles.getn(2 + mode * 2, 2).build);
+            LExecutor exec = execs[mode] = new LExecutor();
+            exec.load(asm);
+
+            //past the threshold, and through more than one sort
+            exec.run(LCompiler.compileThreshold);
+            exec.run(LCompiler.compileThreshold * 2);
+            assertEquals(mode == 1, exec.compiled != null);
+        }
+        LCompiler.enabled = true;
+
+        double[] interpreted = ((MemoryBuild)tiles.getn(2, 2).build).memory, compiled = ((MemoryBuild)tiles.getn(4, 2).build).memory;
+        assertArrayEquals(interpreted, compiled);
+        for(int i = 0; i < execs[0].names.length; i++){
+            //each program has its own cell
+            if(execs[0].names[i].equals("cell1")) continue;
+            assertEquals(execs[0].value(i), execs[1].value(i), execs[0].names[i]);
+        }
+    }
+
+    @Test
+    void logicParallel(){
+        Tiles tiles = world.resize(8, 8);
+        world.beginMapLoad();
+        tiles.fill();
+        world.endMapLoad();
+
+        tiles.getn(1, 1).setBlock(Blocks.memoryCell, Team.sharded);
+        tiles.getn(2, 1).setBlock(Blocks.memoryCell, Team.sharded);
+        tiles.getn(1, 3).setBlock(Blocks.microProcessor, Team.sharded);
+        tiles.getn(2, 3).setBlock(Blocks.microProcessor, Team.sharded);
+        MemoryBuild shared = (MemoryBuild)tiles.getn(1, 1).build, own = (MemoryBuild)tiles.getn(2, 1).build;
+        LogicBuild writer = (LogicBuild)tiles.getn(1, 3).build, reader = (LogicBuild)tiles.getn(2, 3).build;
+
+        LAssembler asm = LAssembler.assemble("read v cell1 0\nop add v v 1\nwrite v cell1 0");
+        asm.putConst("cell1", shared);
+        writer.executor.load(asm);
+        writer.executor.team = Team.sharded;
+
+        asm = LAssembler.assemble("read v cell1 0\nop add v v 1\nwrite v cell2 0");
+        asm.putConst("cell1", shared);
+        asm.putConst("cell2", own);
+        reader.executor.load(asm);
+        reader.executor.team = Team.sharded;
+
+        logicScheduler.clear();
+        logicScheduler.threads = 2;
+
+        for(int tick = 1; tick <= 3; tick++){
+            logicScheduler.run(writer, 3);
+            logicScheduler.run(reader, 3);
+            //both processors are queued, so nothing has run yet
+            assertEquals(tick - 1, shared.memory[0]);
+            logicScheduler.flush();
+
+            //the reader runs after the writer, so it sees the value written in the same tick, like it would without the parallel phase
+            assertEquals(tick, shared.memory[0]);
+            assertEquals(tick + 1, own.memory[0]);
+        }
+
+        logicScheduler.threads = 0;
+    }
+
+    @Test
+    void logicDefaultOrder(){
+        Tiles tiles = world.resize(8, 8);
+        world.beginMapLoad();
+        tiles.fill();
+        world.endMapLoad();
+
+        tiles.getn(1, 1).setBlock(Blocks.memoryCell, Team.sharded);
+        tiles.getn(1, 3).setBlock(Blocks.microProcessor, Team.sharded);
+        MemoryBuild cell = (MemoryBuild)tiles.getn(1, 1).build;
+        LogicBuild processor = (LogicBuild)tiles.getn(1, 3).build;
+
+        LAssembler asm = LAssembler.assemble("read x cell1 0\nop add x x 1\nwrite x cell1 0");
+        asm.putConst("cell1", cell);
+        processor.executor.load(asm);
+        processor.executor.team = Team.sharded;
+
+        LogicScheduler scheduler = new LogicScheduler();
+        assertTrue(scheduler.threads <= 1);
+
+        for(int tick = 1; tick <= 3; tick++){
+            scheduler.update();
+            //without the parallel phase, the processor runs during its own update, so buildings that update after it see its writes
+            scheduler.run(processor, 3);
+            assertEquals(tick, cell.memory[0]);
+
+            scheduler.flush();
+            assertEquals(tick, cell.memory[0]);
+        }
+    }
+
+    @Test
+    void logicParallelIncrement(){
+        Tiles tiles = world.resize(8, 8);
+        world.beginMapLoad();
+        tiles.fill();
+        world.endMapLoad();
+
+        tiles.getn(1, 1).setBlock(Blocks.memoryCell, Team.sharded);
+        tiles.getn(1, 3).setBlock(Blocks.microProcessor, Team.sharded);
+        tiles.getn(2, 3).setBlock(Blocks.microProcessor, Team.sharded);
+        MemoryBuild cell = (MemoryBuild)tiles.getn(1, 1).build;
+        LogicBuild[] processors = {(LogicBuild)tiles.getn(1, 3).build, (LogicBuild)tiles.getn(2, 3).build};
+
+        //both processors read their own writes back, and each other's
+        for(LogicBuild processor : processors){
+            LAssembler asm = LAssembler.assemble("read x cell1 0\nop add x x 1\nwrite x cell1 0");
+            asm.putConst("cell1", cell);
+            processor.executor.load(asm);
+            processor.executor.team = Team.sharded;
+        }
+
+        logicScheduler.clear();
+        logicScheduler.threads = 2;
+
+        for(int tick = 1; tick <= 3; tick++){
+            //two increments each
+            for(LogicBuild processor : processors){
+                logicScheduler.run(processor, 6);
+            }
+            logicScheduler.flush();
+
+            //no increment is lost, like when the processors run one after another
+            assertEquals(tick * 4, cell.memory[0]);
+        }
+
+        logicScheduler.threads = 0;
+    }
+
+    @Test
+    void logicRadarCache(){
+        Tiles tiles = world.resize(100, 100);
+        world.beginMapLoad();
+        tiles.fill();
+        world.endMapLoad();
+
+        Rand rand = new Rand(3);
+        Team[] teams = {Team.sharded, Team.crux, Team.malis};
+        for(int i = 0; i < 300; i++){
+            Unit unit = (i % 5 == 0 ? UnitTypes.flare : UnitTypes.dagger).create(teams[i % teams.length]);
+            unit.set(rand.random(800f), rand.random(800f));
+            unit.add();
+        }
+        state.teams.updateTeamStats();
+
+        LogicCache cache = new LogicCache();
+        for(int i = 0; i < 100; i++){
+            float x = rand.random(-50f, 850f), y = rand.random(-50f, 850f), range = rand.random(20f, 300f);
+            cache.clear();
+            Unit found = cache.radar(Team.sharded, x, y, range, RadarTarget.enemy, RadarTarget.ground, RadarTarget.any, RadarSort.distance, 1);
+
+            //brute force search from the same quantized position
+            float qx = (int)x, qy = (int)y, bestDst = Float.MAX_VALUE;
+            Unit expected = null;
+            for(Unit unit : Groups.unit){
+                float dst = unit.dst2(qx, qy);
+                if(unit.team != Team.sharded && unit.isGrounded() && unit.within(qx, qy, range) && dst < bestDst){
+                    bestDst = dst;
+                    expected = unit;
+                }
+            }
+
+            assertEquals(expected == null ? -1f : bestDst, found == null ? -1f : found.dst2(qx, qy), "Wrong unit at " + x + ", " + y);
+            //the second search is answered from the cache
+            assertSame(found, cache.radar(Team.sharded, x, y, range, RadarTarget.enemy, RadarTarget.ground, RadarTarget.any, RadarSort.distance, 1));
+            assertEquals(1, cache.hits);
+        }
+    }
+
     @Test
     void load77Save(){
         resetWorld();